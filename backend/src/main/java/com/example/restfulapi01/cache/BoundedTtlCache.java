@@ -0,0 +1,130 @@
+package com.example.restfulapi01.cache;
+
+import com.example.restfulapi01.payload.CacheStatsResponse;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache trong bộ nhớ có giới hạn kích thước (LRU) và thời gian sống (TTL) cho từng entry.
+ * Đơn giản, dùng một lock duy nhất — các thao tác đều O(1) nên không cần phức tạp hơn.
+ */
+public class BoundedTtlCache<K, V> {
+
+    private final int maxSize;
+    private final Duration defaultTtl;
+
+    // accessOrder = true để LinkedHashMap tự sắp xếp theo thứ tự truy cập (LRU)
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    public BoundedTtlCache(int maxSize, Duration defaultTtl) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+        this.defaultTtl = defaultTtl;
+    }
+
+    public V get(K key) {
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            if (entry.expiresAtNanos - now <= 0) {
+                entries.remove(key);
+                expirations.incrementAndGet();
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.value;
+        }
+    }
+
+    public void put(K key, V value) {
+        put(key, value, defaultTtl);
+    }
+
+    public void put(K key, V value, Duration ttl) {
+        if (ttl == null || ttl.isZero() || ttl.isNegative()) {
+            return; // TTL = 0 nghĩa là không cache loại kết quả này
+        }
+        long expiresAt = System.nanoTime() + ttl.toNanos();
+        synchronized (entries) {
+            entries.put(key, new Entry<>(value, expiresAt));
+            evictIfNeeded();
+        }
+    }
+
+    public void invalidate(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public CacheStatsResponse stats() {
+        long h = hits.get();
+        long m = misses.get();
+        long total = h + m;
+        return new CacheStatsResponse(
+                size(),
+                maxSize,
+                h,
+                m,
+                evictions.get(),
+                expirations.get(),
+                total == 0 ? 0.0 : (double) h / total
+        );
+    }
+
+    // Gọi trong lock: bỏ các entry hết hạn trước, sau đó mới đẩy entry ít dùng nhất ra ngoài
+    private void evictIfNeeded() {
+        if (entries.size() <= maxSize) {
+            return;
+        }
+        long now = System.nanoTime();
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (it.hasNext() && entries.size() > maxSize) {
+            Map.Entry<K, Entry<V>> eldest = it.next();
+            it.remove();
+            if (eldest.getValue().expiresAtNanos - now <= 0) {
+                expirations.incrementAndGet();
+            } else {
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAtNanos;
+
+        private Entry(V value, long expiresAtNanos) {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
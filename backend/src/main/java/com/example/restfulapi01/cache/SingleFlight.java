@@ -0,0 +1,62 @@
+package com.example.restfulapi01.cache;
+
+import com.example.restfulapi01.payload.SingleFlightStatsResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Gộp các lời gọi đồng thời có cùng khóa thành một lời gọi thật (single-flight).
+ * Caller đầu tiên ("leader") chạy lời gọi; các caller tới trong lúc lời gọi đó chưa xong
+ * chỉ chờ cùng một future. Khi có kết quả, khóa được gỡ ra nên lần sau sẽ gọi lại (hoặc trúng cache).
+ * Khác với cache: chỉ chặn "thundering herd" trước khi kết quả đầu tiên tồn tại, không giữ kết quả lại.
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong leaders = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public Mono<V> execute(K key, Supplier<Mono<V>> call) {
+        return Mono.defer(() -> {
+            CompletableFuture<V> created = new CompletableFuture<>();
+            CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+            if (existing != null) {
+                coalesced.incrementAndGet();
+                // suppressCancel: một caller hủy không được làm hủy kết quả của những caller khác
+                return Mono.fromFuture(existing, true);
+            }
+            leaders.incrementAndGet();
+            // Lời gọi thật chạy độc lập với caller; gỡ khóa trước khi hoàn thành future
+            // để caller đến sau thời điểm này không nhận lại một future đã xong
+            Mono<V> source;
+            try {
+                source = call.get();
+            } catch (RuntimeException e) {
+                source = Mono.error(e);
+            }
+            source.subscribe(
+                    value -> {
+                        inFlight.remove(key, created);
+                        created.complete(value);
+                    },
+                    error -> {
+                        inFlight.remove(key, created);
+                        created.completeExceptionally(error);
+                    },
+                    () -> {
+                        inFlight.remove(key, created);
+                        created.complete(null); // Mono rỗng -> mọi caller nhận Mono rỗng
+                    });
+            return Mono.fromFuture(created, true);
+        });
+    }
+
+    public SingleFlightStatsResponse stats() {
+        return new SingleFlightStatsResponse(inFlight.size(), leaders.get(), coalesced.get());
+    }
+}
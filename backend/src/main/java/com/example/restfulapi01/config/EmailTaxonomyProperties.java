@@ -0,0 +1,41 @@
+package com.example.restfulapi01.config;
+
+import com.example.restfulapi01.payload.EmailLabel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cây nhãn cho chế độ phân loại hai tầng (analysis.cascade.*): tầng 1 chọn giữa các nhánh thô,
+ * tầng 2 chỉ đánh giá các nhãn chi tiết (EmailLabel) thuộc nhánh thắng.
+ * Mặc định bên dưới được dùng khi application.properties không khai báo analysis.cascade.branches.
+ */
+@Component
+@ConfigurationProperties(prefix = "analysis.cascade")
+@Data
+public class EmailTaxonomyProperties {
+
+    private boolean enabled = false;
+
+    // Hai nhánh đầu cách nhau ít hơn mức này thì tầng 2 đánh giá nhãn của cả hai nhánh
+    private double ambiguityMargin = 0.15;
+
+    private List<Branch> branches = new ArrayList<>(List.of(
+            new Branch("fraudulent or malicious email", List.of(EmailLabel.PHISHING, EmailLabel.SPAM, EmailLabel.SUSPICIOUS)),
+            new Branch("commercial or marketing email", List.of(EmailLabel.PROMOTIONAL, EmailLabel.NEWSLETTER)),
+            new Branch("legitimate personal or business email", List.of(EmailLabel.HAM, EmailLabel.TRANSACTIONAL, EmailLabel.SOCIAL_MEDIA))
+    ));
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Branch {
+        private String label; // Nhãn zero-shot của nhánh thô
+        private List<EmailLabel> labels = new ArrayList<>(); // Nhãn chi tiết thuộc nhánh
+    }
+}
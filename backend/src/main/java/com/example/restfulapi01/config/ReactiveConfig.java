@@ -0,0 +1,25 @@
+package com.example.restfulapi01.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@Configuration
+public class ReactiveConfig {
+
+    // Scheduler giới hạn cho các lời gọi JPA (blocking) trong pipeline reactive.
+    // Số thread nên bằng kích thước pool kết nối Hikari (mặc định 10) vì nhiều hơn cũng chỉ phải chờ connection.
+    // Khi bật spring.threads.virtual.enabled, các worker là virtual thread (vẫn giới hạn bởi threads).
+    @Bean(destroyMethod = "dispose")
+    public Scheduler jpaScheduler(@Value("${analysis.reactive.jpa-threads:10}") int threads,
+                                  @Value("${analysis.reactive.jpa-queue-size:10000}") int queueSize,
+                                  @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            return Schedulers.newBoundedElastic(threads, queueSize,
+                    Thread.ofVirtual().name("jpa-", 0).factory(), 60);
+        }
+        return Schedulers.newBoundedElastic(threads, queueSize, "jpa");
+    }
+}
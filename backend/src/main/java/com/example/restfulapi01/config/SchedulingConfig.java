@@ -0,0 +1,10 @@
+package com.example.restfulapi01.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Bật @Scheduled (warm-up định kỳ cho các model Hugging Face); dùng TaskScheduler mặc định của Spring Boot
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
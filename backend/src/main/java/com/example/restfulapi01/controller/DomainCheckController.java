@@ -1,10 +1,16 @@
 package com.example.restfulapi01.controller;
 
+import com.example.restfulapi01.payload.CacheStatsResponse;
 import com.example.restfulapi01.payload.DomainCheckRequest;
 import com.example.restfulapi01.payload.DomainCheckResponse;
+import com.example.restfulapi01.payload.DomainListStatsResponse;
+import com.example.restfulapi01.payload.SingleFlightStatsResponse;
 import com.example.restfulapi01.service.DomainCheckService;
+import com.example.restfulapi01.service.DomainListIndex;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
 
 @RestController
 @RequestMapping("/api/domain")
@@ -12,15 +18,50 @@ import org.springframework.web.bind.annotation.*;
 public class DomainCheckController {
 
     private final DomainCheckService domainCheckService;
+    private final DomainListIndex domainListIndex;
 
-    public DomainCheckController(DomainCheckService domainCheckService) {
+    public DomainCheckController(DomainCheckService domainCheckService, DomainListIndex domainListIndex) {
         this.domainCheckService = domainCheckService;
+        this.domainListIndex = domainListIndex;
     }
 
     @PostMapping("/check")
     public ResponseEntity<DomainCheckResponse> checkDomain(@RequestBody DomainCheckRequest request) {
         // Gọi service để kiểm tra domain/text
         DomainCheckResponse response = domainCheckService.checkDomainSafety(request.getDomain());
-        return ResponseEntity.ok(response);
+        return ResponseEntity.status(statusFor(response)).body(response);
     }
-}
\ No newline at end of file
+
+    // Phiên bản non-blocking: trả về Mono, không giữ thread của Tomcat trong lúc chờ model
+    @PostMapping("/check/reactive")
+    public Mono<ResponseEntity<DomainCheckResponse>> checkDomainReactive(@RequestBody DomainCheckRequest request) {
+        return domainCheckService.checkDomainSafetyReactive(request.getDomain())
+                .map(response -> ResponseEntity.status(statusFor(response)).body(response));
+    }
+
+    @GetMapping("/cache/stats") // Thống kê cache kết quả: hit ratio, eviction...
+    public ResponseEntity<CacheStatsResponse> getCacheStats() {
+        return ResponseEntity.ok(domainCheckService.getCacheStats());
+    }
+
+    @GetMapping("/coalescing/stats") // Số request được gộp vào lần kiểm tra đang chạy của request khác
+    public ResponseEntity<SingleFlightStatsResponse> getCoalescingStats() {
+        return ResponseEntity.ok(domainCheckService.getCoalescingStats());
+    }
+
+    @GetMapping("/lists/stats") // Số domain trong blocklist/allowlist và số lần khớp
+    public ResponseEntity<DomainListStatsResponse> getDomainListStats() {
+        return ResponseEntity.ok(domainListIndex.stats());
+    }
+
+    // Biên dịch lại file danh sách (nếu có thay đổi) và tráo index mà không cần khởi động lại
+    @PostMapping("/lists/reload")
+    public ResponseEntity<DomainListStatsResponse> reloadDomainLists() {
+        return ResponseEntity.ok(domainListIndex.reload());
+    }
+
+    // Quá tải -> 503 để client biết nên thử lại sau; các trạng thái khác giữ 200 như trước
+    private HttpStatus statusFor(DomainCheckResponse response) {
+        return "OVERLOADED".equals(response.getStatus()) ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.OK;
+    }
+}
@@ -1,28 +1,41 @@
 package com.example.restfulapi01.controller; // Đảm bảo package này khớp với dự án của bạn
 
+import com.example.restfulapi01.payload.AnalysisJob;
 import com.example.restfulapi01.payload.EmailAnalyzeRequest;
 import com.example.restfulapi01.payload.EmailAnalyzeResponse;
 import com.example.restfulapi01.dto.HistoryEmailDTO; // Import HistoryEmailDTO
+import com.example.restfulapi01.dto.HistoryPageDTO;
+import com.example.restfulapi01.payload.CacheStatsResponse;
+import com.example.restfulapi01.payload.LocalModelStatsResponse;
+import com.example.restfulapi01.payload.NearDuplicateStatsResponse;
+import com.example.restfulapi01.payload.SenderReputationStatsResponse;
+import com.example.restfulapi01.payload.SingleFlightStatsResponse;
+import com.example.restfulapi01.service.AnalysisJobService;
+import com.example.restfulapi01.service.EmailAnalysisService;
 import com.example.restfulapi01.service.HistoryEmailService; // Import HistoryEmailService
 import com.example.restfulapi01.service.UserService; // Import UserService
 import com.example.restfulapi01.model.User; // Import User model
+
 import com.fasterxml.jackson.databind.ObjectMapper; // Import ObjectMapper
+import jakarta.servlet.http.HttpServletRequest;
 
 import org.springframework.beans.factory.annotation.Autowired; // Import Autowired
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpHeaders;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus; // Import HttpStatus
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.reactive.function.client.WebClient;
-
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Comparator;
-import java.util.HashMap;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.URI;
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -30,16 +43,7 @@ import java.util.Optional;
 @CrossOrigin(origins = "*") // Bỏ dấu '/' cuối cùng để khớp tốt hơn
 public class EmailAnalyzerController {
 
-    @Value("${huggingface.api.url}")
-    private String huggingFaceApiBaseUrl;
-
-    @Value("${huggingface.api.token}")
-    private String huggingFaceApiToken;
-
-    @Value("${huggingface.model.id.multilabel}")
-    private String multiLabelModelId; // facebook/bart-large-mnli
-
-    private final WebClient webClient;
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
 
     @Autowired // Inject UserService để tìm người dùng
     private UserService userService;
@@ -47,133 +51,97 @@ public class EmailAnalyzerController {
     @Autowired // Inject HistoryEmailService để lưu lịch sử
     private HistoryEmailService historyEmailService;
 
-    @Autowired // Inject ObjectMapper để xử lý JSON (cho detailedPredictions)
+    @Autowired // Inject ObjectMapper để đọc body NDJSON
     private ObjectMapper objectMapper;
 
+    @Autowired // Inject EmailAnalysisService: pipeline phân tích email (cache, gọi AI, lưu lịch sử)
+    private EmailAnalysisService emailAnalysisService;
 
-    // Constructor để inject WebClient.
-    // Các @Value và @Autowired sẽ được Spring tự động inject sau khi constructor chạy.
-    public EmailAnalyzerController(WebClient.Builder webClientBuilder) {
-        this.webClient = webClientBuilder.build();
-    }
+    @Autowired // Inject AnalysisJobService: job phân tích bất đồng bộ, kết quả đẩy qua SSE
+    private AnalysisJobService analysisJobService;
 
     @PostMapping("/{userId}") // Endpoint POST mới: bao gồm userId trong URL
     public ResponseEntity<EmailAnalyzeResponse> analyzeEmail(
             @PathVariable Long userId, // Lấy userId từ URL path
             @RequestBody EmailAnalyzeRequest request) {
+        EmailAnalyzeResponse response = emailAnalysisService.analyze(userId, request);
+        return ResponseEntity.status(statusFor(response)).body(response);
+    }
+
+    // Phiên bản non-blocking: trả về Mono, thread của Tomcat được giải phóng trong lúc chờ Hugging Face
+    @PostMapping("/{userId}/reactive")
+    public Mono<ResponseEntity<EmailAnalyzeResponse>> analyzeEmailReactive(
+            @PathVariable Long userId,
+            @RequestBody EmailAnalyzeRequest request) {
+        return emailAnalysisService.analyzeReactive(userId, request)
+                .map(response -> ResponseEntity.status(statusFor(response)).body(response));
+    }
 
-        // 1. Tìm người dùng theo userId
+    // Phân tích hàng loạt: body là mảng JSON, mỗi kết quả được stream về ngay khi có (NDJSON hoặc SSE)
+    @PostMapping(value = "/{userId}/bulk", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public ResponseEntity<Flux<EmailAnalyzeResponse>> analyzeBulk(
+            @PathVariable Long userId,
+            @RequestBody List<EmailAnalyzeRequest> requests) {
         Optional<User> userOptional = userService.findById(userId);
         if (userOptional.isEmpty()) {
-            // Trả về lỗi nếu không tìm thấy người dùng
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new EmailAnalyzeResponse(
-                    request.getSender(), request.getSubject(), request.getBody(),
-                    "USER_NOT_FOUND", 0.0, null, "User with ID " + userId + " not found."
-            ));
-        }
-        User user = userOptional.get(); // Lấy đối tượng User
-
-        String textToAnalyze = request.getSubject() + " " + request.getBody();
-
-        List<String> candidateLabels = Arrays.asList(
-                "spam email",
-                "phishing attempt",
-                "promotional offer",
-                "newsletter",
-                "transactional message",
-                "legitimate communication",
-                "suspicious email",
-                "social media notification"
-        );
-
-        Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("inputs", textToAnalyze);
-        requestBody.put("parameters", Map.of("candidate_labels", candidateLabels, "multi_label", true));
-
-        Map<String, Object> aiResponseRaw = null;
-        try {
-            aiResponseRaw = webClient.post()
-                    .uri(huggingFaceApiBaseUrl + multiLabelModelId)
-                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + huggingFaceApiToken)
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(requestBody)
-                    .retrieve()
-                    .bodyToMono(Map.class)
-                    .block();
-        } catch (Exception e) {
-            System.err.println("Error calling multi-label AI API: " + e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new EmailAnalyzeResponse( // Dùng HttpStatus.INTERNAL_SERVER_ERROR
-                    request.getSender(), request.getSubject(), request.getBody(),
-                    "API_ERROR", 0.0, null, "Failed to analyze email with AI: " + e.getMessage()
-            ));
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
+        return ResponseEntity.ok(emailAnalysisService.analyzeBulk(userOptional.get(), Flux.fromIterable(requests)));
+    }
 
-        String primaryPredictionLabel = "UNKNOWN";
-        Double primaryPredictionScore = 0.0;
-        List<Map<String, Object>> detailedPredictions = new ArrayList<>();
-
-        if (aiResponseRaw != null && aiResponseRaw.containsKey("labels") && aiResponseRaw.containsKey("scores")) {
-            List<String> labels = (List<String>) aiResponseRaw.get("labels");
-            List<Double> scores = (List<Double>) aiResponseRaw.get("scores");
-
-            List<Map<String, Object>> rawPredictions = new ArrayList<>();
-            for (int i = 0; i < labels.size(); i++) {
-                Map<String, Object> predictionMap = new HashMap<>();
-                predictionMap.put("label", labels.get(i));
-                predictionMap.put("score", scores.get(i));
-                rawPredictions.add(predictionMap);
-            }
-
-            rawPredictions.sort(Comparator.comparingDouble(map -> (Double) ((Map<String, Object>) map).get("score")).reversed());
-
-            if (!rawPredictions.isEmpty()) {
-                primaryPredictionLabel = mapZeroShotLabelToCustomLabel((String) rawPredictions.get(0).get("label"));
-                primaryPredictionScore = (Double) rawPredictions.get(0).get("score");
-
-                for (Map<String, Object> prediction : rawPredictions) {
-                    String currentLabel = (String) prediction.get("label");
-                    Double currentScore = (Double) prediction.get("score");
-
-                    if (currentScore > 0.4) {
-                        Map<String, Object> mappedPrediction = new HashMap<>();
-                        mappedPrediction.put("label", mapZeroShotLabelToCustomLabel(currentLabel));
-                        mappedPrediction.put("score", currentScore);
-                        detailedPredictions.add(mappedPrediction);
-                    }
-                }
-            }
-
-            if (detailedPredictions.isEmpty()) {
-                primaryPredictionLabel = "UNCLEAR";
-                primaryPredictionScore = 0.0;
-                Map<String, Object> noPredictionMap = new HashMap<>();
-                noPredictionMap.put("label", "No clear prediction above threshold");
-                noPredictionMap.put("score", 0.0);
-                detailedPredictions.add(noPredictionMap);
-            }
-        } else {
-            primaryPredictionLabel = "AI_PARSE_ERROR";
-            primaryPredictionScore = 0.0;
-            Map<String, Object> errorMap = new HashMap<>();
-            errorMap.put("label", "AI response structure invalid");
-            errorMap.put("score", 0.0);
-            detailedPredictions.add(errorMap);
+    // Body NDJSON (mỗi dòng một EmailAnalyzeRequest): các dòng được đọc dần trong lúc những email trước đang được phân tích
+    @PostMapping(value = "/{userId}/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public ResponseEntity<Flux<EmailAnalyzeResponse>> analyzeBulkStream(
+            @PathVariable Long userId,
+            HttpServletRequest servletRequest) throws IOException {
+        Optional<User> userOptional = userService.findById(userId);
+        if (userOptional.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
+        BufferedReader reader = servletRequest.getReader();
+        Flux<EmailAnalyzeRequest> requests = Flux.fromStream(reader::lines)
+                .filter(line -> !line.isBlank())
+                .<EmailAnalyzeRequest>handle((line, sink) -> {
+                    try {
+                        sink.next(objectMapper.readValue(line, EmailAnalyzeRequest.class));
+                    } catch (IOException e) {
+                        sink.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid NDJSON line: " + e.getMessage(), e));
+                    }
+                })
+                // Đọc request body là thao tác blocking
+                .subscribeOn(Schedulers.boundedElastic());
+        return ResponseEntity.ok(emailAnalysisService.analyzeBulk(userOptional.get(), requests));
+    }
 
-        EmailAnalyzeResponse response = new EmailAnalyzeResponse(
-                request.getSender(),
-                request.getSubject(),
-                request.getBody(),
-                primaryPredictionLabel,
-                primaryPredictionScore,
-                detailedPredictions,
-                "Email analysis complete."
-        );
+    // Job bất đồng bộ: trả về jobId ngay (202), kết quả được đẩy qua /{userId}/jobs/events hoặc lấy bằng poll
+    @PostMapping("/{userId}/jobs")
+    public ResponseEntity<AnalysisJob> submitJob(@PathVariable Long userId, @RequestBody EmailAnalyzeRequest request) {
+        if (!userService.existsById(userId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        return analysisJobService.submit(userId, request)
+                .map(job -> ResponseEntity.accepted()
+                        .location(URI.create("/api/analyze/" + userId + "/jobs/" + job.getJobId()))
+                        .body(job))
+                // Hàng đợi job đầy: từ chối ngay, client thử lại sau
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+    }
 
-        // 2. LƯU LỊCH SỬ VÀO DATABASE
-        historyEmailService.saveHistory(user, response); // Lưu ý: response ở đây là EmailAnalyzeResponse, không phải HistoryEmailDTO
+    @GetMapping(value = "/{userId}/jobs/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE) // Sự kiện "job" khi một job xong
+    public ResponseEntity<SseEmitter> streamJobs(@PathVariable Long userId) {
+        if (!userService.existsById(userId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        return ResponseEntity.ok(analysisJobService.subscribe(userId));
+    }
 
-        return ResponseEntity.ok(response);
+    @GetMapping("/{userId}/jobs/{jobId}") // Poll trạng thái job (dự phòng khi không dùng được SSE)
+    public ResponseEntity<AnalysisJob> getJob(@PathVariable Long userId, @PathVariable String jobId) {
+        return analysisJobService.find(userId, jobId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).build());
     }
 
     @GetMapping("/history/{userId}") // Endpoint GET để lấy lịch sử của người dùng
@@ -186,25 +154,73 @@ public class EmailAnalyzerController {
         return ResponseEntity.ok(history);
     }
 
-    // Helper để ánh xạ nhãn từ Zero-shot sang nhãn tùy chỉnh của bạn
-    private String mapZeroShotLabelToCustomLabel(String zeroShotLabel) {
-        if ("phishing attempt".equalsIgnoreCase(zeroShotLabel)) {
-            return "PHISHING";
-        } else if ("spam email".equalsIgnoreCase(zeroShotLabel)) {
-            return "SPAM";
-        } else if ("promotional offer".equalsIgnoreCase(zeroShotLabel)) {
-            return "PROMOTIONAL";
-        } else if ("legitimate communication".equalsIgnoreCase(zeroShotLabel)) {
-            return "HAM";
-        } else if ("suspicious email".equalsIgnoreCase(zeroShotLabel)) {
-            return "SUSPICIOUS";
-        } else if ("newsletter".equalsIgnoreCase(zeroShotLabel)) {
-            return "NEWSLETTER";
-        } else if ("transactional message".equalsIgnoreCase(zeroShotLabel)) {
-            return "TRANSACTIONAL";
-        } else if ("social media notification".equalsIgnoreCase(zeroShotLabel)) {
-            return "SOCIAL_MEDIA";
+    // Lịch sử phân trang keyset: truyền nextBeforeTime/nextBeforeId của trang trước để lấy trang kế tiếp
+    @GetMapping("/history/{userId}/page")
+    public ResponseEntity<HistoryPageDTO> getUserHistoryPage(
+            @PathVariable Long userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeTime,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(defaultValue = "20") int limit) {
+        if (!userService.existsById(userId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_HISTORY_PAGE_SIZE));
+        return ResponseEntity.ok(historyEmailService.getHistoryPage(userId, beforeTime, beforeId, pageSize));
+    }
+
+    @GetMapping("/history/{userId}/{historyId}") // Chi tiết một dòng lịch sử (có body và detailedPredictions)
+    public ResponseEntity<HistoryEmailDTO> getUserHistoryDetail(@PathVariable Long userId, @PathVariable Long historyId) {
+        return historyEmailService.getHistoryDetail(userId, historyId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+    }
+
+    @GetMapping("/cache/stats") // Thống kê cache kết quả: hit/miss/eviction
+    public ResponseEntity<CacheStatsResponse> getCacheStats() {
+        return ResponseEntity.ok(emailAnalysisService.getCacheStats());
+    }
+
+    @GetMapping("/coalescing/stats") // Số email được gộp vào lời gọi Hugging Face đang chạy của request khác
+    public ResponseEntity<SingleFlightStatsResponse> getCoalescingStats() {
+        return ResponseEntity.ok(emailAnalysisService.getCoalescingStats());
+    }
+
+    @GetMapping("/local-model/stats") // Trạng thái model cục bộ: chế độ, số mẫu huấn luyện, số lần dùng thay Hugging Face
+    public ResponseEntity<LocalModelStatsResponse> getLocalModelStats() {
+        return ResponseEntity.ok(emailAnalysisService.getLocalModelStats());
+    }
+
+    @GetMapping("/near-duplicates/stats") // Chỉ mục email gần trùng: số fingerprint đang giữ, số lần dùng lại kết quả
+    public ResponseEntity<NearDuplicateStatsResponse> getNearDuplicateStats() {
+        return ResponseEntity.ok(emailAnalysisService.getNearDuplicateStats());
+    }
+
+    @GetMapping("/sender-reputation/stats") // Uy tín người gửi: số dòng lịch sử đã nạp, số email được kết luận ngay
+    public ResponseEntity<SenderReputationStatsResponse> getSenderReputationStats() {
+        return ResponseEntity.ok(emailAnalysisService.getSenderReputationStats());
+    }
+
+    // Huấn luyện lại model cục bộ từ lịch sử phân tích ở thread nền (202); theo dõi tiến độ qua /local-model/stats
+    @PostMapping("/local-model/train")
+    public ResponseEntity<LocalModelStatsResponse> trainLocalModel() {
+        return emailAnalysisService.trainLocalModel()
+                .map(stats -> ResponseEntity.accepted()
+                        .location(URI.create("/api/analyze/local-model/stats"))
+                        .body(stats))
+                // Đang huấn luyện: từ chối, không chạy thêm lần nữa
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.CONFLICT).build());
+    }
+
+    private HttpStatus statusFor(EmailAnalyzeResponse response) {
+        if ("USER_NOT_FOUND".equals(response.getPrimaryPredictionLabel())) {
+            return HttpStatus.NOT_FOUND; // Trả về lỗi nếu không tìm thấy người dùng
+        }
+        if ("OVERLOADED".equals(response.getPrimaryPredictionLabel())) {
+            return HttpStatus.SERVICE_UNAVAILABLE; // Quá tải: từ chối nhanh, client thử lại sau
+        }
+        if ("API_ERROR".equals(response.getPrimaryPredictionLabel())) {
+            return HttpStatus.INTERNAL_SERVER_ERROR;
         }
-        return "OTHER";
+        return HttpStatus.OK;
     }
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.example.restfulapi01.controller;
+
+import com.example.restfulapi01.payload.InferenceClientStatsResponse;
+import com.example.restfulapi01.service.HuggingFaceInferenceClient;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/inference")
+@CrossOrigin(origins = "*")
+public class InferenceClientController {
+
+    private final HuggingFaceInferenceClient inferenceClient;
+
+    public InferenceClientController(HuggingFaceInferenceClient inferenceClient) {
+        this.inferenceClient = inferenceClient;
+    }
+
+    @GetMapping("/stats") // Trạng thái pool kết nối và độ trễ gọi Hugging Face theo từng model
+    public ResponseEntity<InferenceClientStatsResponse> getStats() {
+        return ResponseEntity.ok(inferenceClient.stats());
+    }
+}
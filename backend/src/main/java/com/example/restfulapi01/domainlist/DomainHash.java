@@ -0,0 +1,109 @@
+package com.example.restfulapi01.domainlist;
+
+import java.util.Locale;
+
+/**
+ * Hash 64-bit (FNV-1a) cho domain và các hàm tách host dùng chung cho lúc biên dịch danh sách và lúc tra cứu.
+ * Với vài chục triệu domain, xác suất trùng hash 64-bit vẫn nhỏ hơn 1e-4 nên không cần lưu chuỗi gốc.
+ */
+public final class DomainHash {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private DomainHash() {
+    }
+
+    /** Hash của host.substring(from) mà không tạo chuỗi con. Host phải đã được hạ chữ thường. */
+    public static long hash(CharSequence host, int from) {
+        long h = FNV_OFFSET;
+        for (int i = from; i < host.length(); i++) {
+            char c = host.charAt(i);
+            h ^= (c & 0xff);
+            h *= FNV_PRIME;
+            if (c > 0xff) {
+                h ^= (c >>> 8);
+                h *= FNV_PRIME;
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Tách host từ input của người dùng: bỏ scheme, userinfo, port, path, dấu '.' cuối; hạ chữ thường.
+     * Trả về null nếu không có host.
+     */
+    public static String hostOf(String input) {
+        if (input == null) {
+            return null;
+        }
+        String value = input.trim();
+        int start = 0;
+        int schemeEnd = value.indexOf("://");
+        if (schemeEnd > 0) {
+            start = schemeEnd + 3;
+        }
+        int end = value.length();
+        int hostStart = start;
+        for (int i = start; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '/' || c == '?' || c == '#') {
+                end = i;
+                break;
+            }
+            if (c == '@') {
+                hostStart = i + 1; // userinfo: http://paypal.com@evil.example -> evil.example
+            }
+        }
+        int hostEnd = end;
+        if (hostStart < hostEnd && value.charAt(hostStart) != '[') {
+            int colon = value.lastIndexOf(':', hostEnd - 1);
+            if (colon >= hostStart) {
+                hostEnd = colon;
+            }
+        }
+        while (hostEnd > hostStart && value.charAt(hostEnd - 1) == '.') {
+            hostEnd--;
+        }
+        if (hostEnd <= hostStart) {
+            return null;
+        }
+        return value.substring(hostStart, hostEnd).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Chuẩn hóa một dòng trong file danh sách. Hỗ trợ các định dạng thường gặp:
+     * "evil.com", "*.evil.com", ".evil.com", URL đầy đủ và dòng kiểu hosts file ("0.0.0.0 evil.com").
+     * Dòng trống và comment ('#', '!') trả về null.
+     */
+    public static String normalizeEntry(String line) {
+        String value = line.trim();
+        if (value.isEmpty() || value.charAt(0) == '#' || value.charAt(0) == '!') {
+            return null;
+        }
+        int comment = value.indexOf('#');
+        if (comment > 0) {
+            value = value.substring(0, comment).trim();
+        }
+        int space = lastWhitespace(value);
+        if (space >= 0) {
+            value = value.substring(space + 1); // hosts file: lấy cột cuối cùng
+        }
+        if (value.startsWith("*.")) {
+            value = value.substring(2);
+        } else if (value.startsWith(".")) {
+            value = value.substring(1);
+        }
+        String host = hostOf(value);
+        return host == null || host.isEmpty() ? null : host;
+    }
+
+    private static int lastWhitespace(String value) {
+        for (int i = value.length() - 1; i >= 0; i--) {
+            if (Character.isWhitespace(value.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.restfulapi01.domainlist;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Biên dịch file danh sách domain dạng text (mỗi dòng một domain) thành file index nhị phân:
+ * header 16 byte (magic, version, số phần tử) + mảng hash 64-bit đã sắp xếp, không trùng lặp.
+ * File được ghi ra file tạm rồi đổi tên nguyên tử, nên tiến trình đang map file cũ không bị ảnh hưởng.
+ */
+public final class DomainListCompiler {
+
+    public static final int MAGIC = 0x444c4958; // "DLIX"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 16;
+
+    private static final int WRITE_CHUNK = 1 << 16;
+
+    private DomainListCompiler() {
+    }
+
+    /** Trả về số domain (không trùng lặp) đã ghi vào index. */
+    public static int compile(Path source, Path target) throws IOException {
+        long[] hashes = new long[1 << 16];
+        int count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String host = DomainHash.normalizeEntry(line);
+                if (host == null) {
+                    continue;
+                }
+                if (count == hashes.length) {
+                    hashes = Arrays.copyOf(hashes, hashes.length * 2);
+                }
+                hashes[count++] = DomainHash.hash(host, 0);
+            }
+        }
+
+        Arrays.sort(hashes, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || hashes[unique - 1] != hashes[i]) {
+                hashes[unique++] = hashes[i];
+            }
+        }
+
+        Path parent = target.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putLong(unique).flip();
+            writeFully(channel, header);
+
+            ByteBuffer chunk = ByteBuffer.allocate(WRITE_CHUNK * Long.BYTES);
+            for (int i = 0; i < unique; i += WRITE_CHUNK) {
+                int end = Math.min(unique, i + WRITE_CHUNK);
+                chunk.clear();
+                chunk.asLongBuffer().put(hashes, i, end - i);
+                chunk.limit((end - i) * Long.BYTES);
+                writeFully(channel, chunk);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return unique;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.restfulapi01.domainlist;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Tập domain chỉ đọc, map trực tiếp file index vào bộ nhớ (off-heap, không tạo object cho từng phần tử).
+ * Tra cứu bằng tìm kiếm nhị phân trên mảng hash đã sắp xếp; chỉ dùng get tuyệt đối nên an toàn đa luồng.
+ */
+public final class MappedDomainSet {
+
+    public static final MappedDomainSet EMPTY = new MappedDomainSet(null, null, 0);
+
+    private final Path file;
+    private final ByteBuffer buffer;
+    private final int size;
+
+    private MappedDomainSet(Path file, ByteBuffer buffer, int size) {
+        this.file = file;
+        this.buffer = buffer;
+        this.size = size;
+    }
+
+    public static MappedDomainSet open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < DomainListCompiler.HEADER_BYTES) {
+                throw new IOException("Domain index file is too small: " + file);
+            }
+            // Mapping vẫn còn hiệu lực sau khi đóng channel
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            int magic = mapped.getInt(0);
+            int version = mapped.getInt(4);
+            long count = mapped.getLong(8);
+            if (magic != DomainListCompiler.MAGIC || version != DomainListCompiler.VERSION) {
+                throw new IOException("Not a domain index file (bad magic/version): " + file);
+            }
+            if (count < 0 || DomainListCompiler.HEADER_BYTES + count * Long.BYTES != fileSize) {
+                throw new IOException("Domain index file is truncated or corrupted: " + file);
+            }
+            return new MappedDomainSet(file, mapped, (int) count);
+        }
+    }
+
+    public boolean contains(long hash) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = buffer.getLong(DomainListCompiler.HEADER_BYTES + mid * Long.BYTES);
+            if (value < hash) {
+                low = mid + 1;
+            } else if (value > hash) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+}
@@ -1,12 +1,12 @@
 package com.example.restfulapi01.dto;
 
+import com.example.restfulapi01.payload.EmailPrediction;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
 
 @Data
 @NoArgsConstructor
@@ -18,7 +18,7 @@ public class HistoryEmailDTO {
     private String body;
     private String primaryPredictionLabel;
     private Double primaryPredictionScore;
-    private List<Map<String, Object>> detailedPredictions; // Đã parse từ JSON string
+    private List<EmailPrediction> detailedPredictions; // Đã parse từ JSON string
     private LocalDateTime analysisTime;
     private Long userId; // ID của người dùng sở hữu lịch sử này
 }
\ No newline at end of file
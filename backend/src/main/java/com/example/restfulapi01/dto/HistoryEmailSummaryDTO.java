@@ -0,0 +1,20 @@
+package com.example.restfulapi01.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Bản tóm tắt một dòng lịch sử cho danh sách phân trang (không có body và detailedPredictions)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HistoryEmailSummaryDTO {
+    private Long id;
+    private String sender;
+    private String subject;
+    private String primaryPredictionLabel;
+    private Double primaryPredictionScore;
+    private LocalDateTime analysisTime;
+}
@@ -0,0 +1,18 @@
+package com.example.restfulapi01.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Một trang lịch sử theo keyset (analysisTime, id). nextBeforeTime/nextBeforeId = null nghĩa là hết dữ liệu.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HistoryPageDTO {
+    private List<HistoryEmailSummaryDTO> items;
+    private LocalDateTime nextBeforeTime;
+    private Long nextBeforeId;
+}
@@ -0,0 +1,137 @@
+package com.example.restfulapi01.localmodel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Multinomial naive Bayes trên feature đã băm. Toàn bộ tham số nằm trong hai mảng float:
+ * logPrior[class] và logLikelihood[bucket * classes + class] (các class của cùng một ô nằm liền nhau
+ * nên mỗi feature chỉ chạm một cache line). Model không đổi sau khi tạo nên dùng chung giữa các thread.
+ */
+public final class NaiveBayesModel {
+
+    private static final int MAGIC = 0x4e424d31; // "NBM1"
+
+    private final String[] labels;
+    private final int bucketBits;
+    private final float[] logPrior;
+    private final float[] logLikelihood;
+    private final int trainedSamples;
+    private final long trainedAtMillis;
+
+    NaiveBayesModel(String[] labels, int bucketBits, float[] logPrior, float[] logLikelihood,
+                    int trainedSamples, long trainedAtMillis) {
+        this.labels = labels;
+        this.bucketBits = bucketBits;
+        this.logPrior = logPrior;
+        this.logLikelihood = logLikelihood;
+        this.trainedSamples = trainedSamples;
+        this.trainedAtMillis = trainedAtMillis;
+    }
+
+    /** Xác suất hậu nghiệm của từng nhãn, cùng thứ tự với getLabels(). */
+    public double[] predict(String text) {
+        int classes = labels.length;
+        double[] scores = new double[classes];
+        for (int c = 0; c < classes; c++) {
+            scores[c] = logPrior[c];
+        }
+        TextFeatureHasher.forEachFeature(text, (1 << bucketBits) - 1, bucket -> {
+            int offset = bucket * classes;
+            for (int c = 0; c < classes; c++) {
+                scores[c] += logLikelihood[offset + c];
+            }
+        });
+
+        // Softmax ổn định số học
+        double max = Double.NEGATIVE_INFINITY;
+        for (double score : scores) {
+            max = Math.max(max, score);
+        }
+        double sum = 0.0;
+        for (int c = 0; c < classes; c++) {
+            scores[c] = Math.exp(scores[c] - max);
+            sum += scores[c];
+        }
+        for (int c = 0; c < classes; c++) {
+            scores[c] /= sum;
+        }
+        return scores;
+    }
+
+    public String[] getLabels() {
+        return labels.clone();
+    }
+
+    public int getBucketBits() {
+        return bucketBits;
+    }
+
+    public int getTrainedSamples() {
+        return trainedSamples;
+    }
+
+    public long getTrainedAtMillis() {
+        return trainedAtMillis;
+    }
+
+    // Ghi ra file tạm rồi đổi tên, để tiến trình khác không bao giờ đọc phải file ghi dở
+    public void writeTo(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(bucketBits);
+            out.writeInt(trainedSamples);
+            out.writeLong(trainedAtMillis);
+            out.writeInt(labels.length);
+            for (String label : labels) {
+                out.writeUTF(label);
+            }
+            for (float value : logPrior) {
+                out.writeFloat(value);
+            }
+            for (float value : logLikelihood) {
+                out.writeFloat(value);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static NaiveBayesModel readFrom(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a local email model file: " + file);
+            }
+            int bucketBits = in.readInt();
+            int trainedSamples = in.readInt();
+            long trainedAtMillis = in.readLong();
+            int classes = in.readInt();
+            if (bucketBits < 1 || bucketBits > 24 || classes < 1 || classes > 64) {
+                throw new IOException("Corrupted local email model header: " + file);
+            }
+            String[] labels = new String[classes];
+            for (int c = 0; c < classes; c++) {
+                labels[c] = in.readUTF();
+            }
+            float[] logPrior = new float[classes];
+            for (int c = 0; c < classes; c++) {
+                logPrior[c] = in.readFloat();
+            }
+            float[] logLikelihood = new float[(1 << bucketBits) * classes];
+            for (int i = 0; i < logLikelihood.length; i++) {
+                logLikelihood[i] = in.readFloat();
+            }
+            return new NaiveBayesModel(labels, bucketBits, logPrior, logLikelihood, trainedSamples, trainedAtMillis);
+        }
+    }
+}
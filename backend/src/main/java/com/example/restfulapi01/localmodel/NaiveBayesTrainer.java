@@ -0,0 +1,65 @@
+package com.example.restfulapi01.localmodel;
+
+/**
+ * Đếm tần suất feature theo nhãn rồi tạo NaiveBayesModel với làm trơn Laplace (alpha).
+ * Không thread-safe: mỗi lần huấn luyện dùng một trainer riêng.
+ */
+public final class NaiveBayesTrainer {
+
+    private final String[] labels;
+    private final int bucketBits;
+    private final int[] featureCounts; // [bucket * classes + class]
+    private final long[] classFeatureTotals;
+    private final int[] classDocuments;
+    private int samples;
+
+    public NaiveBayesTrainer(String[] labels, int bucketBits) {
+        this.labels = labels.clone();
+        this.bucketBits = bucketBits;
+        this.featureCounts = new int[(1 << bucketBits) * labels.length];
+        this.classFeatureTotals = new long[labels.length];
+        this.classDocuments = new int[labels.length];
+    }
+
+    public void add(String text, int classIndex) {
+        int classes = labels.length;
+        TextFeatureHasher.forEachFeature(text, (1 << bucketBits) - 1, bucket -> {
+            featureCounts[bucket * classes + classIndex]++;
+            classFeatureTotals[classIndex]++;
+        });
+        classDocuments[classIndex]++;
+        samples++;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    public int[] getClassDocuments() {
+        return classDocuments.clone();
+    }
+
+    public NaiveBayesModel build(double alpha) {
+        int classes = labels.length;
+        int buckets = 1 << bucketBits;
+
+        float[] logPrior = new float[classes];
+        for (int c = 0; c < classes; c++) {
+            // Làm trơn prior để nhãn chưa có mẫu nào vẫn có xác suất khác 0
+            logPrior[c] = (float) Math.log((classDocuments[c] + 1.0) / (samples + classes));
+        }
+
+        double[] logDenominator = new double[classes];
+        for (int c = 0; c < classes; c++) {
+            logDenominator[c] = Math.log(classFeatureTotals[c] + alpha * buckets);
+        }
+        float[] logLikelihood = new float[buckets * classes];
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int offset = bucket * classes;
+            for (int c = 0; c < classes; c++) {
+                logLikelihood[offset + c] = (float) (Math.log(featureCounts[offset + c] + alpha) - logDenominator[c]);
+            }
+        }
+        return new NaiveBayesModel(labels.clone(), bucketBits, logPrior, logLikelihood, samples, System.currentTimeMillis());
+    }
+}
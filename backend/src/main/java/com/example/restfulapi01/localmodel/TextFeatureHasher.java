@@ -0,0 +1,74 @@
+package com.example.restfulapi01.localmodel;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Feature hashing cho text email: unigram và bigram từ, cộng trigram ký tự trong từng từ
+ * (bắt được các biến thể như "paypa1", "verifcation"). Duyệt chuỗi một lần, không tạo chuỗi con
+ * và không cần từ điển: mỗi feature được băm thẳng vào một trong 2^bucketBits ô.
+ */
+public final class TextFeatureHasher {
+
+    private static final int FNV_OFFSET = 0x811c9dc5;
+    private static final int FNV_PRIME = 0x01000193;
+
+    private static final int SEED_UNIGRAM = 0x9e3779b9;
+    private static final int SEED_BIGRAM = 0x85ebca6b;
+    private static final int SEED_TRIGRAM = 0xc2b2ae35;
+
+    // Token dài hơn thế này gần như chắc chắn là base64/mã tracking, không dùng làm feature từ
+    private static final int MAX_WORD_LENGTH = 40;
+
+    private TextFeatureHasher() {
+    }
+
+    public static void forEachFeature(String text, int bucketMask, IntConsumer sink) {
+        if (text == null) {
+            return;
+        }
+        int n = text.length();
+        int wordHash = FNV_OFFSET;
+        int wordLength = 0;
+        int previousWord = 0;
+        boolean hasPrevious = false;
+        char c1 = 0;
+        char c2 = 0;
+
+        for (int i = 0; i <= n; i++) {
+            char c = i < n ? Character.toLowerCase(text.charAt(i)) : ' ';
+            if (Character.isLetterOrDigit(c) || c == '$' || c == '@') {
+                wordHash = (wordHash ^ c) * FNV_PRIME;
+                wordLength++;
+                if (wordLength >= 3 && wordLength <= MAX_WORD_LENGTH) {
+                    sink.accept(mix(((c2 * 31) + c1) * 31 + c, SEED_TRIGRAM) & bucketMask);
+                }
+                c2 = c1;
+                c1 = c;
+            } else if (wordLength > 0) {
+                if (wordLength <= MAX_WORD_LENGTH) {
+                    sink.accept(mix(wordHash, SEED_UNIGRAM) & bucketMask);
+                    if (hasPrevious) {
+                        sink.accept(mix(previousWord * 31 + wordHash, SEED_BIGRAM) & bucketMask);
+                    }
+                    previousWord = wordHash;
+                    hasPrevious = true;
+                }
+                wordHash = FNV_OFFSET;
+                wordLength = 0;
+                c1 = 0;
+                c2 = 0;
+            }
+        }
+    }
+
+    // Bước finalizer của MurmurHash3 để các bit thấp (dùng làm chỉ số ô) phân bố đều
+    private static int mix(int h, int seed) {
+        h ^= seed;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -9,7 +9,9 @@ import lombok.AllArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "history_email_created")
+// Index (user_id, analysis_time, id) phục vụ phân trang keyset lịch sử theo người dùng
+@Table(name = "history_email_created",
+        indexes = @Index(name = "idx_history_user_time_id", columnList = "user_id, analysis_time, id"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -40,6 +42,9 @@ public class HistoryEmailCreated {
     @Column(nullable = false)
     private LocalDateTime analysisTime;
 
+    @Column(length = 32)
+    private String verdictSource; // MODEL, LOCAL_MODEL...; null với dữ liệu cũ (coi như MODEL)
+
     // Constructor cho việc tạo mới từ kết quả phân tích
     public HistoryEmailCreated(User user, String sender, String subject, String body,
                                String primaryPredictionLabel, Double primaryPredictionScore,
@@ -0,0 +1,153 @@
+package com.example.restfulapi01.neardup;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Chỉ mục fingerprint SimHash có kích thước cố định, tra cứu theo band: với ngưỡng maxDistance, 64 bit được chia thành
+ * maxDistance + 1 band (ít nhất 4, mỗi band tối đa 16 bit), mỗi band có một bảng băm trỏ vào danh sách liên kết các entry.
+ * Hai fingerprint khác nhau không quá maxDistance bit chắc chắn trùng nhau ở ít nhất một band (nguyên lý Dirichlet)
+ * nên tra theo band không bỏ sót. Entry được ghi vòng tròn (entry cũ nhất bị ghi đè khi đầy) và bị bỏ qua khi quá ttl,
+ * nên bộ nhớ không tăng theo thời gian.
+ */
+public final class NearDuplicateIndex<V> {
+
+    public static final int MAX_DISTANCE_LIMIT = 15; // 16 band x 4 bit
+    private static final int NONE = -1;
+
+    public record Match<V>(V value, int distance) {
+    }
+
+    private final int capacity;
+    private final long ttlMillis;
+    private final int maxDistance;
+
+    private final int bands;
+    private final int bandBits;
+    private final int bandMask;
+    private final int[][] heads;
+    private final int[][] next;
+    private final long[] fingerprints;
+    private final long[] insertedAt;
+    private final Object[] values;
+    private int cursor;
+    private int size;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    public NearDuplicateIndex(int capacity, long ttlMillis, int maxDistance) {
+        this.capacity = capacity;
+        this.ttlMillis = ttlMillis;
+        this.maxDistance = maxDistance;
+        if (capacity <= 0 || maxDistance < 0 || maxDistance > MAX_DISTANCE_LIMIT) {
+            throw new IllegalArgumentException("capacity must be > 0 and maxDistance in [0, " + MAX_DISTANCE_LIMIT + "]");
+        }
+        this.bands = Math.max(4, maxDistance + 1);
+        this.bandBits = 64 / bands;
+        this.bandMask = (1 << bandBits) - 1;
+        this.heads = new int[bands][1 << bandBits];
+        this.next = new int[bands][capacity];
+        this.fingerprints = new long[capacity];
+        this.insertedAt = new long[capacity];
+        this.values = new Object[capacity];
+        for (int[] band : heads) {
+            Arrays.fill(band, NONE);
+        }
+    }
+
+    /** Entry còn hạn gần nhất (khoảng cách Hamming nhỏ nhất, tối đa maxDistance) với fingerprint. */
+    @SuppressWarnings("unchecked")
+    public Optional<Match<V>> find(long fingerprint, long nowMillis) {
+        lookups.increment();
+        long oldest = nowMillis - ttlMillis;
+        int best = NONE;
+        int bestDistance = maxDistance + 1;
+        lock.readLock().lock();
+        try {
+            for (int band = 0; band < bands && bestDistance > 0; band++) {
+                for (int e = heads[band][bandKey(fingerprint, band)]; e != NONE; e = next[band][e]) {
+                    if (insertedAt[e] < oldest) {
+                        continue;
+                    }
+                    int distance = Long.bitCount(fingerprint ^ fingerprints[e]);
+                    if (distance < bestDistance) {
+                        best = e;
+                        bestDistance = distance;
+                    }
+                }
+            }
+            if (best == NONE) {
+                return Optional.empty();
+            }
+            hits.increment();
+            return Optional.of(new Match<>((V) values[best], bestDistance));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(long fingerprint, V value, long nowMillis) {
+        lock.writeLock().lock();
+        try {
+            int slot = cursor;
+            if (values[slot] != null) {
+                unlink(slot);
+            } else {
+                size++;
+            }
+            fingerprints[slot] = fingerprint;
+            insertedAt[slot] = nowMillis;
+            values[slot] = value;
+            for (int band = 0; band < bands; band++) {
+                int key = bandKey(fingerprint, band);
+                next[band][slot] = heads[band][key];
+                heads[band][key] = slot;
+            }
+            cursor = (cursor + 1) % capacity;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Gỡ entry khỏi danh sách của từng band (trung bình capacity / 2^bandBits phần tử)
+    private void unlink(int slot) {
+        for (int band = 0; band < bands; band++) {
+            int key = bandKey(fingerprints[slot], band);
+            if (heads[band][key] == slot) {
+                heads[band][key] = next[band][slot];
+                continue;
+            }
+            for (int e = heads[band][key]; e != NONE; e = next[band][e]) {
+                if (next[band][e] == slot) {
+                    next[band][e] = next[band][slot];
+                    break;
+                }
+            }
+        }
+    }
+
+    // Các bit dư (64 không chia hết cho số band) không thuộc band nào, không ảnh hưởng tới đảm bảo trên
+    private int bandKey(long fingerprint, int band) {
+        return (int) (fingerprint >>> (band * bandBits)) & bandMask;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long lookups() {
+        return lookups.sum();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+}
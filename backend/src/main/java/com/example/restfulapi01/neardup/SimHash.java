@@ -0,0 +1,81 @@
+package com.example.restfulapi01.neardup;
+
+import java.util.OptionalLong;
+
+/**
+ * SimHash 64 bit trên shingle 3 từ liên tiếp. Chữ số được coi như nhau ('0') nên tên khác, số tiền khác,
+ * mã đơn hàng khác vẫn cho cùng shingle; token quá dài (mã tracking, base64) bị bỏ qua.
+ * Hai email gần giống nhau có fingerprint chỉ khác vài bit (khoảng cách Hamming nhỏ).
+ */
+public final class SimHash {
+
+    // Ít shingle quá thì fingerprint không ổn định, hai email ngắn bất kỳ dễ trùng nhau
+    public static final int MIN_SHINGLES = 8;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final int MAX_WORD_LENGTH = 40;
+
+    private SimHash() {
+    }
+
+    public static OptionalLong fingerprint(String text) {
+        if (text == null) {
+            return OptionalLong.empty();
+        }
+        int[] weights = new int[64];
+        int shingles = 0;
+        long w1 = 0;
+        long w2 = 0;
+        int words = 0;
+        long wordHash = FNV_OFFSET;
+        int wordLength = 0;
+        int n = text.length();
+        for (int i = 0; i <= n; i++) {
+            char c = i < n ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                char folded = Character.isDigit(c) ? '0' : Character.toLowerCase(c);
+                wordHash = (wordHash ^ folded) * FNV_PRIME;
+                wordLength++;
+                continue;
+            }
+            if (wordLength > 0 && wordLength <= MAX_WORD_LENGTH) {
+                words++;
+                if (words >= 3) {
+                    addShingle(weights, mix(w1 * 31 * 31 + w2 * 31 + wordHash));
+                    shingles++;
+                }
+                w1 = w2;
+                w2 = wordHash;
+            }
+            wordHash = FNV_OFFSET;
+            wordLength = 0;
+        }
+        if (shingles < MIN_SHINGLES) {
+            return OptionalLong.empty();
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return OptionalLong.of(fingerprint);
+    }
+
+    private static void addShingle(int[] weights, long hash) {
+        for (int bit = 0; bit < 64; bit++) {
+            weights[bit] += ((hash >>> bit) & 1L) != 0 ? 1 : -1;
+        }
+    }
+
+    // Finalizer 64 bit của MurmurHash3 (fmix64)
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
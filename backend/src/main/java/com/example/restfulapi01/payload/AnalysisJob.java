@@ -0,0 +1,21 @@
+package com.example.restfulapi01.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Trạng thái một job phân tích email bất đồng bộ (mỗi lần đổi trạng thái là một object mới)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalysisJob {
+    private String jobId;
+    private Long userId;
+    private String status; // PENDING, RUNNING, DONE hoặc FAILED
+    private LocalDateTime submittedAt;
+    private LocalDateTime completedAt;
+    private EmailAnalyzeResponse result; // Có khi status = DONE (có thể là API_ERROR/OVERLOADED như endpoint đồng bộ)
+    private String error; // Có khi status = FAILED
+}
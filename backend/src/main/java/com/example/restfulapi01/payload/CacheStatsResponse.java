@@ -0,0 +1,18 @@
+package com.example.restfulapi01.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheStatsResponse {
+    private int size;
+    private int maxSize;
+    private long hits;
+    private long misses;
+    private long evictions; // Số entry bị đẩy ra do vượt quá kích thước
+    private long expirations; // Số entry bị bỏ do hết TTL
+    private double hitRatio;
+}
@@ -0,0 +1,19 @@
+package com.example.restfulapi01.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Trạng thái pool kết nối Reactor Netty tới một địa chỉ (host:port) của Hugging Face
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConnectionPoolStats {
+    private String remoteAddress;
+    private int acquired; // Kết nối đang được dùng
+    private int allocated; // Tổng số kết nối đã mở
+    private int idle;
+    private int pendingAcquire; // Request đang chờ lấy kết nối
+    private int maxAllocated;
+    private int maxPendingAcquire;
+}
@@ -9,7 +9,7 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class DomainCheckResponse {
     private String domain;
-    private String status; // Ví dụ: SAFE, MALICIOUS, INVALID_FORMAT, ERROR, UNKNOWN
+    private String status; // Ví dụ: SAFE, MALICIOUS, INVALID_FORMAT, ERROR, UNKNOWN, OVERLOADED
     private String message;
     private double confidence; // Điểm tin cậy từ model AI
 }
\ No newline at end of file
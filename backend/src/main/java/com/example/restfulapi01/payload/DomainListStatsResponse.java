@@ -0,0 +1,19 @@
+package com.example.restfulapi01.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DomainListStatsResponse {
+    private boolean enabled;
+    private int blocklistEntries;
+    private int allowlistEntries;
+    private long blocklistHits;
+    private long allowlistHits;
+    private LocalDateTime lastReload; // Thời điểm nạp lại index gần nhất
+}
@@ -1,10 +1,10 @@
 package com.example.restfulapi01.payload;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 
 import java.util.List;
-import java.util.Map;
 
 @Data
 @NoArgsConstructor
@@ -15,6 +15,16 @@ public class EmailAnalyzeResponse {
     private String body;
     private String primaryPredictionLabel; // Nhãn chính (tóm tắt)
     private Double primaryPredictionScore; // Điểm của nhãn chính
-    private List<Map<String, Object>> detailedPredictions; // Danh sách chi tiết các nhãn và điểm số
+    private List<EmailPrediction> detailedPredictions; // Danh sách chi tiết các nhãn và điểm số
     private String message; // Thông báo trạng thái
+    private String verdictSource; // Nguồn kết luận: MODEL (Hugging Face) hoặc LOCAL_MODEL; null nếu không có kết luận
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<LinkCheckResult> links; // Kết quả kiểm tra các link trong email; không có trong JSON nếu email không có link
+
+    public EmailAnalyzeResponse(String sender, String subject, String body, String primaryPredictionLabel,
+                                Double primaryPredictionScore, List<EmailPrediction> detailedPredictions,
+                                String message, String verdictSource) {
+        this(sender, subject, body, primaryPredictionLabel, primaryPredictionScore, detailedPredictions,
+                message, verdictSource, null);
+    }
 }
\ No newline at end of file
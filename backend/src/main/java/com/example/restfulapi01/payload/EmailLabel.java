@@ -0,0 +1,66 @@
+package com.example.restfulapi01.payload;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Nhãn email của hệ thống và nhãn zero-shot tương ứng gửi cho model.
+ * Thứ tự khai báo là thứ tự candidate_labels gửi cho Hugging Face (dùng trong cache key và model cục bộ),
+ * không được đổi nếu không muốn làm mất hiệu lực cache và model đã huấn luyện.
+ */
+public enum EmailLabel {
+    SPAM("spam email"),
+    PHISHING("phishing attempt"),
+    PROMOTIONAL("promotional offer"),
+    NEWSLETTER("newsletter"),
+    TRANSACTIONAL("transactional message"),
+    HAM("legitimate communication"),
+    SUSPICIOUS("suspicious email"),
+    SOCIAL_MEDIA("social media notification"),
+    OTHER(null); // Nhãn model trả về mà hệ thống không biết
+
+    private static final List<String> ZERO_SHOT_LABELS;
+    private static final Map<String, EmailLabel> BY_ZERO_SHOT_LABEL = new HashMap<>();
+
+    static {
+        List<String> zeroShotLabels = new ArrayList<>();
+        for (EmailLabel label : values()) {
+            if (label.zeroShotLabel != null) {
+                zeroShotLabels.add(label.zeroShotLabel);
+                BY_ZERO_SHOT_LABEL.put(label.zeroShotLabel, label);
+            }
+        }
+        ZERO_SHOT_LABELS = Collections.unmodifiableList(zeroShotLabels);
+    }
+
+    private final String zeroShotLabel;
+
+    EmailLabel(String zeroShotLabel) {
+        this.zeroShotLabel = zeroShotLabel;
+    }
+
+    public String getZeroShotLabel() {
+        return zeroShotLabel;
+    }
+
+    /** candidate_labels gửi cho model zero-shot, theo thứ tự khai báo. */
+    public static List<String> zeroShotLabels() {
+        return ZERO_SHOT_LABELS;
+    }
+
+    // Model trả lại đúng chuỗi đã gửi nên thường chỉ cần một lần tra HashMap; không phân biệt hoa thường như trước
+    public static EmailLabel fromZeroShotLabel(String zeroShotLabel) {
+        if (zeroShotLabel == null) {
+            return OTHER;
+        }
+        EmailLabel label = BY_ZERO_SHOT_LABEL.get(zeroShotLabel);
+        if (label == null) {
+            label = BY_ZERO_SHOT_LABEL.getOrDefault(zeroShotLabel.toLowerCase(Locale.ROOT), OTHER);
+        }
+        return label;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.restfulapi01.payload;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Một dòng trong detailedPredictions: nhãn (PHISHING, SPAM... hoặc thông báo như "No clear prediction above threshold")
+ * và điểm số. JSON giữ nguyên dạng {"score":..., "label":...} như khi còn dùng Map.
+ */
+@JsonPropertyOrder({"score", "label"})
+public record EmailPrediction(String label, double score) {
+}
@@ -0,0 +1,15 @@
+package com.example.restfulapi01.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InferenceClientStatsResponse {
+    private List<ConnectionPoolStats> pools;
+    private List<ModelLatencyStats> models;
+}
@@ -0,0 +1,16 @@
+package com.example.restfulapi01.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Kết quả kiểm tra một link trong email (mỗi host một kết quả)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LinkCheckResult {
+    private String host;
+    private String url; // Link đầu tiên trong email có host này, là input gửi cho bước kiểm tra domain
+    private String status; // Như DomainCheckResponse.status, thêm TIMEOUT khi chưa có kết quả lúc hết hạn
+    private double confidence;
+}
@@ -0,0 +1,21 @@
+package com.example.restfulapi01.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocalModelStatsResponse {
+    private String mode; // off, fallback hoặc primary
+    private boolean ready; // Đã có model được huấn luyện hay chưa
+    private int trainedSamples;
+    private LocalDateTime trainedAt;
+    private int bucketBits;
+    private long localPredictions; // Số email được phân loại bằng model cục bộ
+    private long upstreamFallbacks; // Trong đó số lần thay cho Hugging Face bị lỗi/quá tải
+    private boolean training; // Đang huấn luyện lại ở thread nền
+}
@@ -0,0 +1,26 @@
+package com.example.restfulapi01.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Độ trễ các lần gọi Inference API theo từng model
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ModelLatencyStats {
+    private String modelId;
+    private long requests;
+    private long errors;
+    private long timeouts;
+    private double avgMs;
+    private double maxMs;
+    private double lastMs;
+    private int concurrencyLimit; // Giới hạn đồng thời hiện tại (AIMD)
+    private int inFlight;
+    private String circuitState; // CLOSED, OPEN, HALF_OPEN
+    private long rejected; // Số lời gọi bị từ chối ngay do quá tải
+    private long retries;
+    private boolean ready; // false khi model đang nạp (cold start) và request đang phải chờ
+    private long parked; // Số lần request chờ model nạp xong thay vì nhận lỗi 503
+}
@@ -0,0 +1,17 @@
+package com.example.restfulapi01.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearDuplicateStatsResponse {
+    private boolean enabled;
+    private int size; // Số fingerprint đang giữ (kể cả entry đã hết hạn nhưng chưa bị ghi đè)
+    private int capacity;
+    private int maxDistance; // Khoảng cách Hamming tối đa để coi là gần trùng
+    private long lookups;
+    private long hits; // Số email dùng lại kết quả của email gần giống trước đó
+}
@@ -0,0 +1,22 @@
+package com.example.restfulapi01.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SenderReputationStatsResponse {
+    private boolean enabled;
+    private long warmedRows; // Số dòng lịch sử đã nạp lúc khởi động
+    private long recorded; // Số kết luận mới của model được ghi nhận
+    private long lookups;
+    private long senderHits; // Số email được kết luận ngay theo uy tín người gửi
+    private long domainHits; // ... theo uy tín domain người gửi
+    private long memoryBytes; // Bộ nhớ cố định của hai sketch
+    private int trackedSenders; // Số người gửi trong bảng đếm chính xác
+    private int trackedDomains;
+    private long tableEvictions; // Số khóa bị loại khỏi bảng vì đầy (LRU)
+    private long tableMemoryBytes; // Ước lượng bộ nhớ của hai bảng
+}
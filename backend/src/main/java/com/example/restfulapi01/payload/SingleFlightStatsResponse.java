@@ -0,0 +1,14 @@
+package com.example.restfulapi01.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SingleFlightStatsResponse {
+    private int inFlight; // Số khóa đang có lời gọi chưa xong
+    private long upstreamCalls; // Số lời gọi thật đã chạy
+    private long coalesced; // Số request được gộp vào lời gọi của request khác
+}
@@ -0,0 +1,17 @@
+package com.example.restfulapi01.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Kết quả thô từ model zero-shot: danh sách nhãn và điểm số tương ứng (cùng thứ tự)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ZeroShotResult {
+    private List<String> labels;
+    private List<Double> scores;
+    private String source; // MODEL hoặc LOCAL_MODEL
+}
@@ -0,0 +1,123 @@
+package com.example.restfulapi01.preprocess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ước lượng số token BPE (BART/RoBERTa) mà không cần vocab: mỗi từ ASCII tính 1 token cho mỗi 6 ký tự,
+ * mỗi ký tự chữ ngoài ASCII và mỗi dấu câu/ký hiệu tính 1 token, khoảng trắng không tính.
+ * Với văn bản tiếng Anh thường ước lượng hơi dư so với tokenizer thật, tức là cắt an toàn hơn giới hạn của model.
+ */
+public final class ApproximateTokenizer {
+
+    private static final int CHARS_PER_WORD_TOKEN = 6;
+
+    private ApproximateTokenizer() {
+    }
+
+    public static int countTokens(String text) {
+        int tokens = 0;
+        int i = skipWhitespace(text, 0);
+        while (i < text.length()) {
+            int end = unitEnd(text, i);
+            tokens += unitCost(text, i, end);
+            i = skipWhitespace(text, end);
+        }
+        return tokens;
+    }
+
+    /** Cắt text tại ranh giới token cuối cùng còn nằm trong ngân sách maxTokens. */
+    public static String truncate(String text, int maxTokens) {
+        int tokens = 0;
+        int i = skipWhitespace(text, 0);
+        while (i < text.length()) {
+            int end = unitEnd(text, i);
+            tokens += unitCost(text, i, end);
+            if (tokens > maxTokens) {
+                return text.substring(0, i).stripTrailing();
+            }
+            i = skipWhitespace(text, end);
+        }
+        return text;
+    }
+
+    /**
+     * Chia text thành các đoạn tối đa chunkTokens token; mỗi đoạn (trừ đoạn đầu) lặp lại khoảng overlapTokens token
+     * cuối của đoạn trước để câu bị cắt ngang ranh giới vẫn được model đọc trọn ở một trong hai đoạn.
+     */
+    public static List<String> split(String text, int chunkTokens, int overlapTokens) {
+        int[] starts = new int[64];
+        int[] ends = new int[64];
+        int[] costs = new int[64];
+        int count = 0;
+        int i = skipWhitespace(text, 0);
+        while (i < text.length()) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+                costs = Arrays.copyOf(costs, count * 2);
+            }
+            int end = unitEnd(text, i);
+            starts[count] = i;
+            ends[count] = end;
+            costs[count] = unitCost(text, i, end);
+            count++;
+            i = skipWhitespace(text, end);
+        }
+
+        List<String> chunks = new ArrayList<>();
+        int first = 0;
+        while (first < count) {
+            int tokens = 0;
+            int last = first;
+            while (last < count && (last == first || tokens + costs[last] <= chunkTokens)) {
+                tokens += costs[last];
+                last++;
+            }
+            chunks.add(text.substring(starts[first], ends[last - 1]));
+            if (last == count) {
+                break;
+            }
+            // Lùi lại tối đa overlapTokens token, nhưng luôn tiến ít nhất một đơn vị so với đoạn trước
+            int next = last;
+            int overlap = 0;
+            while (next - 1 > first && overlap + costs[next - 1] <= overlapTokens) {
+                next--;
+                overlap += costs[next];
+            }
+            first = next;
+        }
+        return chunks;
+    }
+
+    // Một "đơn vị" là một dãy chữ/số ASCII liền nhau, hoặc một ký tự (code point) khác khoảng trắng
+    private static int unitEnd(String text, int start) {
+        if (!isAsciiWordChar(text.charAt(start))) {
+            return start + Character.charCount(text.codePointAt(start));
+        }
+        int i = start + 1;
+        while (i < text.length() && isAsciiWordChar(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int unitCost(String text, int start, int end) {
+        if (!isAsciiWordChar(text.charAt(start))) {
+            return 1;
+        }
+        return (end - start + CHARS_PER_WORD_TOKEN - 1) / CHARS_PER_WORD_TOKEN;
+    }
+
+    private static int skipWhitespace(String text, int i) {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isAsciiWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+}
@@ -0,0 +1,328 @@
+package com.example.restfulapi01.preprocess;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Làm sạch nội dung email trước khi gửi cho model phân loại: bỏ markup HTML, ký tự ẩn của email marketing,
+ * phần trích dẫn thư cũ, chữ ký, blob base64 và query string theo dõi trong URL, rồi chuẩn hóa Unicode/khoảng trắng.
+ * Chỉ giữ lại phần chữ mà người nhận thực sự đọc được.
+ */
+public final class EmailTextCleaner {
+
+    // Thẻ bị bỏ cả nội dung
+    private static final Set<String> SKIPPED_ELEMENTS = Set.of("script", "style", "head", "title");
+    private static final Set<String> LINE_BREAK_ELEMENTS = Set.of("br", "p", "div", "tr", "li", "table", "h1", "h2", "h3", "h4", "h5", "h6");
+    private static final Pattern HTML_MARKER = Pattern.compile("(?i)<(html|body|div|p|br|table|span|a|img|td)\\b");
+    private static final Pattern HTML_ENTITY = Pattern.compile("&(#[xX][0-9a-fA-F]{1,6}|#[0-9]{1,7}|[a-zA-Z]{2,8});");
+    private static final Map<String, String> NAMED_ENTITIES = Map.of(
+            "nbsp", " ", "amp", "&", "lt", "<", "gt", ">", "quot", "\"",
+            "apos", "'", "zwnj", "", "zwj", "", "shy", "", "copy", "©");
+
+    // Dòng mở đầu phần trích dẫn khi trả lời (Gmail/Apple Mail tiếng Anh và tiếng Việt, Outlook)
+    private static final Pattern REPLY_HEADER = Pattern.compile(
+            "(?i)^(on\\s.{1,200}\\swrote:|vào\\s.{1,200}\\sđã viết:|-{2,}\\s*original message\\s*-{2,})$");
+    private static final Pattern MOBILE_SIGNATURE = Pattern.compile("(?i)^(sent from my .{1,40}|get outlook for .{1,40}|được gửi từ .{1,40})$");
+    private static final Pattern URL = Pattern.compile("(?i)\\bhttps?://[^\\s<>\"']+");
+
+    private static final int MIN_BASE64_CHARS = 100;
+    private static final int MAX_URL_CHARS = 80;
+    // Phần còn lại sau khi cắt trích dẫn mà ngắn hơn thế này ("FYI", "Cái này có phải lừa đảo?") thì giữ cả thư được trích/chuyển tiếp
+    private static final int MIN_REPLY_CHARS = 40;
+    // Phần sau "--" chỉ được coi là chữ ký (và bị bỏ) khi đủ ngắn; dài hơn thì vẫn là nội dung thư
+    private static final int MAX_SIGNATURE_LINES = 4;
+    private static final int MAX_SIGNATURE_LINE_CHARS = 72;
+    private static final int MAX_SIGNATURE_CHARS = 200;
+
+    private EmailTextCleaner() {
+    }
+
+    public static String clean(String text) {
+        return clean(text, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Như clean(text), nhưng phần chữ sau khi bỏ HTML chỉ giữ tối đa maxChars ký tự đầu trước các bước còn lại:
+     * email marketing vài trăm KB không tốn thời gian xử lý phần sẽ bị cắt bỏ theo ngân sách token.
+     */
+    public static String clean(String text, int maxChars) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String cleaned = text;
+        if (HTML_MARKER.matcher(cleaned).find()) {
+            cleaned = stripHtml(cleaned, maxChars);
+        } else if (cleaned.indexOf('&') >= 0) {
+            cleaned = decodeEntities(cleaned);
+        }
+        if (cleaned.length() > maxChars) {
+            cleaned = cleaned.substring(0, maxChars);
+        }
+        // NFKC: dựng sẵn dấu tiếng Việt, đổi ký tự full-width/ligature và NBSP về dạng thường
+        cleaned = Normalizer.normalize(cleaned, Normalizer.Form.NFKC);
+        cleaned = removeInvisible(cleaned);
+        cleaned = dropQuotedHistory(cleaned);
+        cleaned = shortenUrls(cleaned);
+        cleaned = removeBase64Blobs(cleaned);
+        return collapseWhitespace(cleaned);
+    }
+
+    // Duyệt HTML đúng một lần: bỏ comment, thẻ và nội dung của SKIPPED_ELEMENTS, thẻ khối thành xuống dòng,
+    // thẻ khác thành khoảng trắng; entity được giải mã ở cuối. Dừng khi đã có đủ maxChars ký tự.
+    // Nội dung blockquote (thư cũ được trích) được giữ dưới dạng dòng "> ..." để dropQuotedHistory xử lý như email text:
+    // bỏ đi khi thư trả lời đủ dài, giữ lại khi thư chỉ có phần trích dẫn/chuyển tiếp
+    static String stripHtml(String html, int maxChars) {
+        StringBuilder out = new StringBuilder(Math.min(html.length() / 2, maxChars));
+        int n = html.length();
+        int i = 0;
+        int quoteDepth = 0;
+        while (i < n && out.length() < maxChars) {
+            char c = html.charAt(i);
+            if (c != '<' || i + 1 >= n || !isTagStart(html.charAt(i + 1))) {
+                out.append(c);
+                if (c == '\n' && quoteDepth > 0) {
+                    out.append("> ");
+                }
+                i++;
+                continue;
+            }
+            if (html.startsWith("<!--", i)) {
+                int end = html.indexOf("-->", i + 4);
+                i = end < 0 ? n : end + 3;
+                out.append(' ');
+                continue;
+            }
+            boolean closing = html.charAt(i + 1) == '/';
+            int nameStart = closing ? i + 2 : i + 1;
+            int nameEnd = nameStart;
+            while (nameEnd < n && Character.isLetterOrDigit(html.charAt(nameEnd))) {
+                nameEnd++;
+            }
+            String name = html.substring(nameStart, nameEnd).toLowerCase(Locale.ROOT);
+            int tagEnd = html.indexOf('>', nameEnd);
+            i = tagEnd < 0 ? n : tagEnd + 1;
+            boolean selfClosing = tagEnd > 0 && html.charAt(tagEnd - 1) == '/';
+            if (name.equals("blockquote") && !selfClosing) {
+                quoteDepth = Math.max(0, quoteDepth + (closing ? -1 : 1));
+                out.append(quoteDepth > 0 ? "\n> " : "\n");
+                continue;
+            }
+            if (closing || selfClosing || !SKIPPED_ELEMENTS.contains(name)) {
+                if (!LINE_BREAK_ELEMENTS.contains(name)) {
+                    out.append(' ');
+                } else {
+                    out.append(quoteDepth > 0 ? "\n> " : "\n");
+                }
+                continue;
+            }
+            // Thẻ mở của phần bị bỏ: nhảy tới sau thẻ đóng tương ứng (không xét lồng nhau)
+            int close = indexOfIgnoreCase(html, "</" + name, i);
+            if (close < 0) {
+                i = n;
+            } else {
+                int closeEnd = html.indexOf('>', close);
+                i = closeEnd < 0 ? n : closeEnd + 1;
+            }
+            out.append('\n');
+        }
+        return decodeEntities(out.toString());
+    }
+
+    private static boolean isTagStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '/' || c == '!';
+    }
+
+    private static int indexOfIgnoreCase(String text, String needle, int from) {
+        for (int i = from; i <= text.length() - needle.length(); i++) {
+            if (text.regionMatches(true, i, needle, 0, needle.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static String decodeEntities(String text) {
+        if (text.indexOf('&') < 0) {
+            return text;
+        }
+        Matcher matcher = HTML_ENTITY.matcher(text);
+        return matcher.replaceAll(match -> Matcher.quoteReplacement(decodeEntity(match.group(1), match.group())));
+    }
+
+    private static String decodeEntity(String name, String original) {
+        if (name.charAt(0) == '#') {
+            boolean hex = name.length() > 1 && (name.charAt(1) == 'x' || name.charAt(1) == 'X');
+            int codePoint = Integer.parseInt(name.substring(hex ? 2 : 1), hex ? 16 : 10);
+            return Character.isValidCodePoint(codePoint) ? Character.toString(codePoint) : " ";
+        }
+        return NAMED_ENTITIES.getOrDefault(name.toLowerCase(Locale.ROOT), original);
+    }
+
+    // Bỏ ký tự định dạng vô hình (zero-width, soft hyphen, BOM...) hay dùng để độn preheader hoặc né bộ lọc;
+    // ký tự điều khiển thành khoảng trắng, \r thành \n
+    static String removeInvisible(String text) {
+        StringBuilder out = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int type = Character.getType(c);
+            if (type == Character.FORMAT || c == '\u034F') {
+                continue;
+            }
+            if (c == '\r') {
+                out.append('\n');
+            } else if (type == Character.CONTROL && c != '\n') {
+                out.append(' ');
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    // Cắt từ dòng "On ... wrote:" trở đi, bỏ chữ ký ngắn sau "-- ", các dòng "> ..." và chữ ký di động
+    static String dropQuotedHistory(String text) {
+        String[] lines = text.split("\n", -1);
+        StringBuilder reply = new StringBuilder(text.length());
+        boolean dropped = false;
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].strip();
+            if (REPLY_HEADER.matcher(line).matches() || isOutlookHeader(lines, i)) {
+                dropped = true;
+                break;
+            }
+            if (line.equals("--") || line.equals("__")) {
+                int end = signatureEnd(lines, i + 1);
+                if (end >= 0) {
+                    dropped = true;
+                    i = end - 1;
+                }
+                continue;
+            }
+            if (line.startsWith(">") || MOBILE_SIGNATURE.matcher(line).matches()) {
+                dropped = true;
+                continue;
+            }
+            reply.append(line).append('\n');
+        }
+        if (dropped && reply.toString().strip().length() < MIN_REPLY_CHARS) {
+            // Thư chuyển tiếp để hỏi ý kiến: nội dung cần phân loại chính là phần được trích
+            StringBuilder all = new StringBuilder(text.length());
+            for (String line : lines) {
+                all.append(stripQuoteMarkers(line)).append('\n');
+            }
+            return all.toString();
+        }
+        return reply.toString();
+    }
+
+    // Dòng đầu tiên sau chữ ký (dòng mở đầu trích dẫn hoặc hết thư); -1 nếu phần này quá dài để là chữ ký,
+    // để "--" không thành cách giấu nội dung lừa đảo khỏi model
+    private static int signatureEnd(String[] lines, int from) {
+        int nonBlank = 0;
+        int chars = 0;
+        for (int j = from; j < lines.length; j++) {
+            String line = lines[j].strip();
+            if (REPLY_HEADER.matcher(line).matches() || isOutlookHeader(lines, j)) {
+                return j;
+            }
+            if (line.isEmpty()) {
+                continue;
+            }
+            nonBlank++;
+            chars += line.length();
+            if (nonBlank > MAX_SIGNATURE_LINES || line.length() > MAX_SIGNATURE_LINE_CHARS || chars > MAX_SIGNATURE_CHARS) {
+                return -1;
+            }
+        }
+        return lines.length;
+    }
+
+    // Outlook không có dòng "wrote:", phần trích bắt đầu bằng khối "From: ... / Sent: ..."
+    private static boolean isOutlookHeader(String[] lines, int i) {
+        return lines[i].strip().startsWith("From:") && i + 1 < lines.length && lines[i + 1].strip().startsWith("Sent:");
+    }
+
+    private static String stripQuoteMarkers(String line) {
+        int i = 0;
+        while (i < line.length() && (line.charAt(i) == '>' || line.charAt(i) == ' ')) {
+            i++;
+        }
+        return line.substring(i);
+    }
+
+    // Giữ scheme + host + path (tối đa MAX_URL_CHARS), bỏ query/fragment: host mới là thông tin có ích cho model,
+    // còn tham số utm_*/mã theo dõi chỉ làm dài payload
+    static String shortenUrls(String text) {
+        if (!text.contains("://")) {
+            return text;
+        }
+        return URL.matcher(text).replaceAll(match -> {
+            String url = match.group();
+            int cut = url.length();
+            int query = url.indexOf('?');
+            int fragment = url.indexOf('#');
+            if (query >= 0) {
+                cut = query;
+            }
+            if (fragment >= 0 && fragment < cut) {
+                cut = fragment;
+            }
+            return Matcher.quoteReplacement(url.substring(0, Math.min(cut, MAX_URL_CHARS)));
+        });
+    }
+
+    // Dãy ký tự base64 dài (ảnh/tệp đính kèm nhúng inline) không mang nội dung cho model
+    static String removeBase64Blobs(String text) {
+        StringBuilder out = null;
+        int copied = 0;
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            if (!isBase64Char(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < n && isBase64Char(text.charAt(i))) {
+                i++;
+            }
+            if (i - start >= MIN_BASE64_CHARS) {
+                while (i < n && text.charAt(i) == '=') {
+                    i++;
+                }
+                if (out == null) {
+                    out = new StringBuilder(text.length());
+                }
+                out.append(text, copied, start).append(' ');
+                copied = i;
+            }
+        }
+        return out == null ? text : out.append(text, copied, n).toString();
+    }
+
+    private static boolean isBase64Char(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '+' || c == '/';
+    }
+
+    static String collapseWhitespace(String text) {
+        StringBuilder out = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = out.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    out.append(' ');
+                    pendingSpace = false;
+                }
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.restfulapi01.preprocess;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Tìm các link trong nội dung email (text hoặc HTML, kể cả trong href) bằng một lần duyệt, không dùng regex.
+ * Mỗi host chỉ giữ link xuất hiện đầu tiên; dừng khi đã đủ maxLinks host khác nhau.
+ */
+public final class LinkExtractor {
+
+    private static final int MAX_URL_CHARS = 2048;
+    private static final String TRAILING_PUNCTUATION = ".,;:!?)]}'\"";
+
+    public record Link(String host, String url) {
+    }
+
+    private LinkExtractor() {
+    }
+
+    public static List<Link> extract(String text, int maxLinks) {
+        if (text == null || text.isEmpty() || maxLinks <= 0) {
+            return List.of();
+        }
+        Map<String, Link> byHost = new LinkedHashMap<>();
+        int n = text.length();
+        int i = 0;
+        while (i < n && byHost.size() < maxLinks) {
+            int authorityStart = linkStart(text, i);
+            if (authorityStart < 0) {
+                i++;
+                continue;
+            }
+            int end = authorityStart;
+            while (end < n && end - i < MAX_URL_CHARS && !isUrlTerminator(text.charAt(end))) {
+                end++;
+            }
+            while (end > authorityStart && TRAILING_PUNCTUATION.indexOf(text.charAt(end - 1)) >= 0) {
+                end--;
+            }
+            String host = host(text, authorityStart, end);
+            if (host != null) {
+                byHost.putIfAbsent(host, new Link(host, text.substring(i, end).replace("&amp;", "&")));
+            }
+            i = Math.max(end, i + 1);
+        }
+        return new ArrayList<>(byHost.values());
+    }
+
+    // Vị trí bắt đầu phần host nếu tại i có "http://", "https://" hoặc "www." (đứng sau ký tự không phải chữ/số/dấu chấm)
+    private static int linkStart(String text, int i) {
+        char c = text.charAt(i);
+        if (c != 'h' && c != 'H' && c != 'w' && c != 'W') {
+            return -1;
+        }
+        if (i > 0) {
+            char before = text.charAt(i - 1);
+            if (Character.isLetterOrDigit(before) || before == '.') {
+                return -1;
+            }
+        }
+        if (text.regionMatches(true, i, "https://", 0, 8)) {
+            return i + 8;
+        }
+        if (text.regionMatches(true, i, "http://", 0, 7)) {
+            return i + 7;
+        }
+        if (text.regionMatches(true, i, "www.", 0, 4)) {
+            return i;
+        }
+        return -1;
+    }
+
+    private static boolean isUrlTerminator(char c) {
+        return Character.isWhitespace(c) || c == '"' || c == '\'' || c == '<' || c == '>' || c == '`';
+    }
+
+    // Host đã chuẩn hóa (bỏ user-info và cổng, chữ thường) hoặc null nếu không giống tên miền/IP
+    private static String host(String text, int start, int end) {
+        int hostEnd = start;
+        while (hostEnd < end && "/?#\\".indexOf(text.charAt(hostEnd)) < 0) {
+            hostEnd++;
+        }
+        int at = text.lastIndexOf('@', hostEnd - 1);
+        int hostStart = at >= start ? at + 1 : start;
+        int colon = text.indexOf(':', hostStart);
+        if (colon >= 0 && colon < hostEnd) {
+            hostEnd = colon;
+        }
+        while (hostEnd > hostStart && text.charAt(hostEnd - 1) == '.') {
+            hostEnd--;
+        }
+        if (hostEnd - hostStart < 3) {
+            return null;
+        }
+        boolean dot = false;
+        for (int k = hostStart; k < hostEnd; k++) {
+            char c = text.charAt(k);
+            if (c == '.') {
+                dot = true;
+            } else if (c != '-' && !Character.isLetterOrDigit(c)) {
+                return null;
+            }
+        }
+        return dot ? text.substring(hostStart, hostEnd).toLowerCase(Locale.ROOT) : null;
+    }
+}
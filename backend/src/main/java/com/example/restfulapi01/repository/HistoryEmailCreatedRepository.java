@@ -1,15 +1,62 @@
 package com.example.restfulapi01.repository;
 
 
+import com.example.restfulapi01.dto.HistoryEmailSummaryDTO;
 import com.example.restfulapi01.model.HistoryEmailCreated;
 import com.example.restfulapi01.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface HistoryEmailCreatedRepository extends JpaRepository<HistoryEmailCreated, Long> {
     List<HistoryEmailCreated> findByUser(User user);
     List<HistoryEmailCreated> findByUserId(Long userId); // Tìm lịch sử theo ID của người dùng
-}
\ No newline at end of file
+
+    // Trang đầu tiên của lịch sử, mới nhất trước. h.user.id đọc thẳng cột user_id, không join bảng users.
+    @Query("select new com.example.restfulapi01.dto.HistoryEmailSummaryDTO(" +
+            "h.id, h.sender, h.subject, h.primaryPredictionLabel, h.primaryPredictionScore, h.analysisTime) " +
+            "from HistoryEmailCreated h where h.user.id = :userId " +
+            "order by h.analysisTime desc, h.id desc")
+    List<HistoryEmailSummaryDTO> findSummaries(@Param("userId") Long userId, Pageable pageable);
+
+    // Các trang tiếp theo: keyset (analysisTime, id) < (beforeTime, beforeId), dùng index thay vì OFFSET
+    @Query("select new com.example.restfulapi01.dto.HistoryEmailSummaryDTO(" +
+            "h.id, h.sender, h.subject, h.primaryPredictionLabel, h.primaryPredictionScore, h.analysisTime) " +
+            "from HistoryEmailCreated h where h.user.id = :userId " +
+            "and (h.analysisTime < :beforeTime or (h.analysisTime = :beforeTime and h.id < :beforeId)) " +
+            "order by h.analysisTime desc, h.id desc")
+    List<HistoryEmailSummaryDTO> findSummariesBefore(@Param("userId") Long userId,
+                                                     @Param("beforeTime") LocalDateTime beforeTime,
+                                                     @Param("beforeId") Long beforeId,
+                                                     Pageable pageable);
+
+    @Query("select h.id as id, h.sender as sender, h.subject as subject, h.body as body, " +
+            "h.primaryPredictionLabel as primaryPredictionLabel, h.primaryPredictionScore as primaryPredictionScore, " +
+            "h.detailedPredictionsJson as detailedPredictionsJson, h.analysisTime as analysisTime, h.user.id as userId " +
+            "from HistoryEmailCreated h where h.id = :id and h.user.id = :userId")
+    Optional<HistoryEmailDetailView> findDetailById(@Param("id") Long id, @Param("userId") Long userId);
+
+    // Dữ liệu huấn luyện model cục bộ: chỉ các kết luận từ model Hugging Face, đọc theo keyset id để không nạp hết vào RAM
+    @Query("select h.id as id, h.subject as subject, h.body as body, h.primaryPredictionLabel as primaryPredictionLabel " +
+            "from HistoryEmailCreated h where h.id > :afterId and h.primaryPredictionLabel in :labels " +
+            "and (h.verdictSource is null or h.verdictSource = 'MODEL') order by h.id")
+    List<HistoryTrainingView> findTrainingRows(@Param("afterId") Long afterId,
+                                               @Param("labels") List<String> labels,
+                                               Pageable pageable);
+
+    // Khởi tạo uy tín người gửi: kết luận của model Hugging Face từ thời điểm since, đọc theo keyset id
+    @Query("select h.id as id, h.user.id as userId, h.sender as sender, h.primaryPredictionLabel as primaryPredictionLabel, " +
+            "h.analysisTime as analysisTime from HistoryEmailCreated h " +
+            "where h.id > :afterId and h.analysisTime >= :since and h.sender is not null " +
+            "and (h.verdictSource is null or h.verdictSource = 'MODEL') order by h.id")
+    List<HistoryReputationView> findReputationRows(@Param("afterId") Long afterId,
+                                                   @Param("since") LocalDateTime since,
+                                                   Pageable pageable);
+}
@@ -0,0 +1,16 @@
+package com.example.restfulapi01.repository;
+
+import java.time.LocalDateTime;
+
+// Projection cho chi tiết một dòng lịch sử: chỉ đọc các cột cần thiết, không nạp entity User
+public interface HistoryEmailDetailView {
+    Long getId();
+    String getSender();
+    String getSubject();
+    String getBody();
+    String getPrimaryPredictionLabel();
+    Double getPrimaryPredictionScore();
+    String getDetailedPredictionsJson();
+    LocalDateTime getAnalysisTime();
+    Long getUserId();
+}
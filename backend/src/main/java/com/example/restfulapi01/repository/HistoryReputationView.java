@@ -0,0 +1,12 @@
+package com.example.restfulapi01.repository;
+
+import java.time.LocalDateTime;
+
+// Projection dùng để khởi tạo uy tín người gửi: người dùng, người gửi, nhãn chính và thời điểm phân tích
+public interface HistoryReputationView {
+    Long getId();
+    Long getUserId();
+    String getSender();
+    String getPrimaryPredictionLabel();
+    LocalDateTime getAnalysisTime();
+}
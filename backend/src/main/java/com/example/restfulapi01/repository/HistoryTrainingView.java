@@ -0,0 +1,9 @@
+package com.example.restfulapi01.repository;
+
+// Projection dùng để huấn luyện model phân loại cục bộ: chỉ subject, body và nhãn
+public interface HistoryTrainingView {
+    Long getId();
+    String getSubject();
+    String getBody();
+    String getPrimaryPredictionLabel();
+}
@@ -0,0 +1,124 @@
+package com.example.restfulapi01.reputation;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Count-min sketch đếm số lần mỗi khóa (người gửi, domain) được gán từng nhãn, có suy giảm theo thời gian.
+ * Bộ nhớ cố định: depth * 2^widthBits * labels số float, bất kể có bao nhiêu khóa.
+ * <p>
+ * Suy giảm theo chu kỳ bán rã: thay vì giảm mọi ô định kỳ, sự kiện ở thời điểm t được cộng với trọng số
+ * 2^((t - epoch) / halfLife) (tăng dần), lúc đọc chia lại cho trọng số hiện tại. Khi trọng số quá lớn thì
+ * chia mọi ô một lần và dời epoch. Cập nhật kiểu conservative update: chỉ nâng các ô đang bằng ước lượng nhỏ nhất,
+ * nên va chạm làm sai lệch ít hơn. Va chạm chỉ có thể làm số đếm lớn hơn thực tế, không bao giờ nhỏ hơn.
+ */
+public final class DecayingCountMinSketch {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final double RESCALE_EXPONENT = 64; // 2^64 vẫn còn xa giới hạn của float
+
+    private final int depth;
+    private final int widthBits;
+    private final int labels;
+    private final double halfLifeMillis;
+    private final float[] counters; // [(row * width + column) * labels + label]
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private long epochMillis;
+
+    public DecayingCountMinSketch(int depth, int widthBits, int labels, long halfLifeMillis, long epochMillis) {
+        if (depth <= 0 || widthBits <= 0 || widthBits > 24 || labels <= 0 || halfLifeMillis <= 0) {
+            throw new IllegalArgumentException("depth, labels and halfLifeMillis must be > 0 and widthBits in [1, 24]");
+        }
+        this.depth = depth;
+        this.widthBits = widthBits;
+        this.labels = labels;
+        this.halfLifeMillis = halfLifeMillis;
+        this.counters = new float[depth * (1 << widthBits) * labels];
+        this.epochMillis = epochMillis;
+    }
+
+    public void add(String key, int label, long timeMillis) {
+        long hash = hash(key);
+        lock.writeLock().lock();
+        try {
+            double exponent = (timeMillis - epochMillis) / halfLifeMillis;
+            if (exponent > RESCALE_EXPONENT) {
+                rescale(timeMillis);
+                exponent = (timeMillis - epochMillis) / halfLifeMillis;
+            }
+            float weight = (float) Math.pow(2, exponent);
+            float current = Float.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                current = Math.min(current, counters[cell(hash, row) + label]);
+            }
+            float target = current + weight;
+            for (int row = 0; row < depth; row++) {
+                int index = cell(hash, row) + label;
+                if (counters[index] < target) {
+                    counters[index] = target;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Số đếm đã suy giảm về thời điểm nowMillis cho từng nhãn của khóa (mỗi nhãn lấy min trên các hàng). */
+    public double[] estimate(String key, long nowMillis) {
+        long hash = hash(key);
+        double[] counts = new double[labels];
+        lock.readLock().lock();
+        try {
+            double scale = Math.pow(2, -(nowMillis - epochMillis) / halfLifeMillis);
+            for (int label = 0; label < labels; label++) {
+                float min = Float.MAX_VALUE;
+                for (int row = 0; row < depth; row++) {
+                    min = Math.min(min, counters[cell(hash, row) + label]);
+                }
+                counts[label] = min * scale;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return counts;
+    }
+
+    // Chia mọi ô cho trọng số của thời điểm mới rồi lấy thời điểm đó làm epoch
+    private void rescale(long newEpochMillis) {
+        float factor = (float) Math.pow(2, -(newEpochMillis - epochMillis) / halfLifeMillis);
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] *= factor;
+        }
+        epochMillis = newEpochMillis;
+    }
+
+    // Mỗi hàng dùng một hàm băm khác nhau (cùng hash gốc, trộn với chỉ số hàng)
+    private int cell(long hash, int row) {
+        long h = mix(hash + row * 0x9e3779b97f4a7c15L);
+        int column = (int) (h >>> (64 - widthBits));
+        return ((row << widthBits) + column) * labels;
+    }
+
+    private static long hash(String key) {
+        long h = FNV_OFFSET;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h = (h ^ (b & 0xff)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public long memoryBytes() {
+        return (long) counters.length * Float.BYTES;
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.restfulapi01.reputation;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Bảng đếm chính xác theo khóa (người gửi, domain) và nhãn, có suy giảm theo chu kỳ bán rã, giới hạn maxKeys khóa (LRU).
+ * Khác DecayingCountMinSketch, số đếm ở đây không bị va chạm làm lệch, nên được dùng để ra kết luận nhanh.
+ * Mỗi khóa nhớ thêm tối đa maxReporters người dùng khác nhau đã gửi email của khóa đó, để một người dùng
+ * không thể tự mình gán uy tín xấu cho địa chỉ của người khác.
+ */
+public final class ReputationTable {
+
+    /** Số đếm đã suy giảm về thời điểm đọc và số người dùng khác nhau đã đóng góp (tối đa maxReporters). */
+    public record Snapshot(double[] counts, int reporters) {
+    }
+
+    private final int labels;
+    private final double halfLifeMillis;
+    private final int maxKeys;
+    private final int maxReporters;
+
+    // accessOrder = true: khóa lâu không được dùng bị loại trước
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long evictions;
+
+    public ReputationTable(int labels, long halfLifeMillis, int maxKeys, int maxReporters) {
+        if (labels <= 0 || halfLifeMillis <= 0 || maxKeys <= 0 || maxReporters <= 0) {
+            throw new IllegalArgumentException("labels, halfLifeMillis, maxKeys and maxReporters must be > 0");
+        }
+        this.labels = labels;
+        this.halfLifeMillis = halfLifeMillis;
+        this.maxKeys = maxKeys;
+        this.maxReporters = maxReporters;
+    }
+
+    /** Cộng một sự kiện, tạo khóa nếu chưa có. */
+    public void add(String key, int label, long reporter, long timeMillis) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(labels, maxReporters, timeMillis);
+                entries.put(key, entry);
+                evictIfNeeded();
+            }
+            entry.add(label, reporter, timeMillis, halfLifeMillis);
+        }
+    }
+
+    /** Cộng một sự kiện nếu khóa đã có trong bảng; false nếu chưa có. */
+    public boolean addIfPresent(String key, int label, long reporter, long timeMillis) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return false;
+            }
+            entry.add(label, reporter, timeMillis, halfLifeMillis);
+            return true;
+        }
+    }
+
+    public Optional<Snapshot> get(String key, long nowMillis) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return Optional.empty();
+            }
+            double scale = nowMillis > entry.updatedMillis
+                    ? Math.pow(2, -(nowMillis - entry.updatedMillis) / halfLifeMillis) : 1.0;
+            double[] counts = new double[labels];
+            for (int i = 0; i < labels; i++) {
+                counts[i] = entry.counts[i] * scale;
+            }
+            return Optional.of(new Snapshot(counts, entry.reporterCount));
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long evictions() {
+        synchronized (entries) {
+            return evictions;
+        }
+    }
+
+    // Ước lượng thô: node của LinkedHashMap + entry + mảng đếm + mảng người dùng + chuỗi khóa (~40 ký tự)
+    public long memoryBytes() {
+        return (long) size() * (64 + 32 + 16 + labels * Float.BYTES + 16 + maxReporters * Long.BYTES + 80);
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > maxKeys && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    private static final class Entry {
+        private final float[] counts;
+        private final long[] reporters;
+        private int reporterCount;
+        private long updatedMillis;
+
+        private Entry(int labels, int maxReporters, long timeMillis) {
+            this.counts = new float[labels];
+            this.reporters = new long[maxReporters];
+            this.updatedMillis = timeMillis;
+        }
+
+        // Số đếm luôn được giữ ở mốc updatedMillis; sự kiện cũ hơn mốc (nạp lịch sử không theo thứ tự) được cộng với trọng số < 1
+        private void add(int label, long reporter, long timeMillis, double halfLifeMillis) {
+            if (timeMillis > updatedMillis) {
+                float factor = (float) Math.pow(2, -(timeMillis - updatedMillis) / halfLifeMillis);
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] *= factor;
+                }
+                updatedMillis = timeMillis;
+                counts[label] += 1f;
+            } else {
+                counts[label] += (float) Math.pow(2, -(updatedMillis - timeMillis) / halfLifeMillis);
+            }
+            if (reporterCount < reporters.length) {
+                for (int i = 0; i < reporterCount; i++) {
+                    if (reporters[i] == reporter) {
+                        return;
+                    }
+                }
+                reporters[reporterCount++] = reporter;
+            }
+        }
+    }
+}
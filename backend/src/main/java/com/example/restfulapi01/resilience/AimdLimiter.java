@@ -0,0 +1,74 @@
+package com.example.restfulapi01.resilience;
+
+/**
+ * Giới hạn số lời gọi đồng thời theo kiểu AIMD (additive increase, multiplicative decrease),
+ * điều khiển bởi độ trễ quan sát được:
+ * - Lời gọi thành công và nhanh (rtt <= tolerance * rtt nền): tăng giới hạn thêm khoảng 1 sau mỗi "vòng" limit lời gọi.
+ * - Lời gọi bị drop (timeout, 429, 5xx) hoặc chậm bất thường: nhân giới hạn với backoffRatio.
+ * rtt nền là trung bình trượt chậm của các lần gọi thành công, nên giới hạn tự thích nghi khi model chậm dần.
+ * Vượt giới hạn thì tryAcquire() trả false ngay, không xếp hàng.
+ */
+public class AimdLimiter {
+
+    private static final double BASELINE_SMOOTHING = 0.05;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+
+    private double limit;
+    private int inFlight;
+    private double baselineRttNanos;
+
+    public AimdLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio, double latencyTolerance) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    public synchronized void onSuccess(long rttNanos) {
+        inFlight--;
+        if (baselineRttNanos == 0) {
+            baselineRttNanos = rttNanos;
+        }
+        if (rttNanos > latencyTolerance * baselineRttNanos) {
+            decrease();
+        } else {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+        baselineRttNanos += BASELINE_SMOOTHING * (rttNanos - baselineRttNanos);
+    }
+
+    public synchronized void onDropped() {
+        inFlight--;
+        decrease();
+    }
+
+    // Lời gọi kết thúc mà không nói gì về sức khỏe model (bị hủy, lỗi 4xx của chính request)
+    public synchronized void onIgnored() {
+        inFlight--;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private void decrease() {
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.restfulapi01.resilience;
+
+import java.util.Arrays;
+
+/**
+ * Circuit breaker dựa trên tỉ lệ lỗi trong cửa sổ trượt windowSize lời gọi gần nhất.
+ * CLOSED -> OPEN khi tỉ lệ lỗi >= ngưỡng (và đã có ít nhất minimumCalls lời gọi);
+ * OPEN -> HALF_OPEN sau openMillis; HALF_OPEN cho tối đa halfOpenProbes lời gọi thử:
+ * tất cả thành công thì CLOSED, một lời gọi lỗi thì OPEN lại.
+ * tryAcquire() trả về thế hệ (generation) lúc cho phép lời gọi; mỗi lần đổi trạng thái tăng thế hệ,
+ * nên kết quả về muộn của lời gọi được cho phép ở trạng thái trước bị bỏ qua, không tính là lượt thử.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    public static final long REJECTED = -1;
+
+    private final String name;
+    private final boolean[] window; // true = lỗi
+    private final double failureRateThreshold;
+    private final int minimumCalls;
+    private final long openNanos;
+    private final int halfOpenProbes;
+
+    private State state = State.CLOSED;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+    private long openedAt;
+    private int probesInFlight;
+    private int probeSuccesses;
+    private long generation;
+
+    public CircuitBreaker(String name, int windowSize, double failureRateThreshold, int minimumCalls, long openMillis, int halfOpenProbes) {
+        this.name = name;
+        this.window = new boolean[windowSize];
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = minimumCalls;
+        this.openNanos = openMillis * 1_000_000L;
+        this.halfOpenProbes = halfOpenProbes;
+    }
+
+    public synchronized long tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                return REJECTED;
+            }
+            state = State.HALF_OPEN;
+            generation++;
+            probesInFlight = 0;
+            probeSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight + probeSuccesses >= halfOpenProbes) {
+                return REJECTED;
+            }
+            probesInFlight++;
+        }
+        return generation;
+    }
+
+    public synchronized void onSuccess(long permit) {
+        if (permit != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            probesInFlight--;
+            probeSuccesses++;
+            if (probeSuccesses >= halfOpenProbes) {
+                reset();
+            }
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure(long permit) {
+        if (permit != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && windowCount >= minimumCalls
+                && (double) windowFailures / windowCount >= failureRateThreshold) {
+            open();
+        }
+    }
+
+    // Lời gọi được cho phép nhưng không được gửi đi (ví dụ bị limiter từ chối): trả lại lượt thử
+    public synchronized void onIgnored(long permit) {
+        if (permit == generation && state == State.HALF_OPEN && probesInFlight > 0) {
+            probesInFlight--;
+        }
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (windowCount == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        generation++;
+        openedAt = System.nanoTime();
+        System.err.println("Circuit breaker OPEN for " + name + ", rejecting calls for " + openNanos / 1_000_000L + " ms");
+    }
+
+    private void reset() {
+        state = State.CLOSED;
+        generation++;
+        windowIndex = 0;
+        windowCount = 0;
+        windowFailures = 0;
+        Arrays.fill(window, false);
+    }
+}
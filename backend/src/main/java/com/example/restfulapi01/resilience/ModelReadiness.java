@@ -0,0 +1,48 @@
+package com.example.restfulapi01.resilience;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Trạng thái "đã sẵn sàng" của một model Hugging Face (model bị gỡ khỏi bộ nhớ sau một thời gian không dùng
+ * và trả 503 "is currently loading" trong lúc nạp lại). Khi model đang nạp, mọi request dùng chung một future
+ * và chờ trên đó thay vì tự gọi và tự retry; chỉ một probe gọi thử model cho tới khi nạp xong.
+ */
+public class ModelReadiness {
+
+    private final AtomicReference<CompletableFuture<Void>> gate =
+            new AtomicReference<>(CompletableFuture.completedFuture(null));
+    private volatile long lastSuccessNanos;
+    private volatile boolean succeeded;
+
+    public boolean isReady() {
+        return gate.get().isDone();
+    }
+
+    // Future hoàn thành khi model sẵn sàng (hoặc lỗi khi probe bỏ cuộc)
+    public CompletableFuture<Void> awaitReady() {
+        return gate.get();
+    }
+
+    /** Chuyển sang trạng thái đang nạp; true nếu caller là người chuyển (và phải khởi động probe). */
+    public boolean markLoading() {
+        CompletableFuture<Void> current = gate.get();
+        return current.isDone() && gate.compareAndSet(current, new CompletableFuture<>());
+    }
+
+    public void markReady() {
+        lastSuccessNanos = System.nanoTime();
+        succeeded = true;
+        gate.get().complete(null);
+    }
+
+    // Probe hết thời gian hoặc gặp lỗi khác: các request đang chờ nhận lỗi, request sau đó gọi model như bình thường
+    public void giveUp(Throwable cause) {
+        gate.get().completeExceptionally(cause);
+    }
+
+    // Thời gian (ns) kể từ lần gọi thành công gần nhất; Long.MAX_VALUE nếu chưa có lần nào
+    public long idleNanos() {
+        return succeeded ? System.nanoTime() - lastSuccessNanos : Long.MAX_VALUE;
+    }
+}
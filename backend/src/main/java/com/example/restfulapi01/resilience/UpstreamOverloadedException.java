@@ -0,0 +1,19 @@
+package com.example.restfulapi01.resilience;
+
+/**
+ * Lời gọi tới model bị từ chối ngay tại chỗ (vượt giới hạn đồng thời hoặc circuit breaker đang mở),
+ * không có request nào được gửi đi.
+ */
+public class UpstreamOverloadedException extends RuntimeException {
+
+    private final String modelId;
+
+    public UpstreamOverloadedException(String modelId, String reason) {
+        super("AI model " + modelId + " is overloaded: " + reason);
+        this.modelId = modelId;
+    }
+
+    public String getModelId() {
+        return modelId;
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.restfulapi01.service;
+
+import com.example.restfulapi01.cache.BoundedTtlCache;
+import com.example.restfulapi01.payload.AnalysisJob;
+import com.example.restfulapi01.payload.EmailAnalyzeRequest;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Job phân tích email bất đồng bộ: submit trả về jobId ngay, việc phân tích chạy trên một executor giới hạn
+ * (threads worker, hàng đợi queue-size; đầy thì từ chối thay vì xếp hàng vô hạn). Kết quả được đẩy qua
+ * Server-Sent Events tới mọi stream đang mở của người dùng, và vẫn đọc được bằng poll cho tới khi hết ttl.
+ * Trạng thái job nằm trong BoundedTtlCache nên bộ nhớ có giới hạn.
+ */
+@Service
+public class AnalysisJobService {
+
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED";
+
+    private final EmailAnalysisService emailAnalysisService;
+    private final BoundedTtlCache<String, AnalysisJob> jobs;
+    private final ThreadPoolExecutor executor;
+    private final long streamTimeoutMs;
+    private final int maxStreamsPerUser;
+    private final Map<Long, List<SseEmitter>> streams = new ConcurrentHashMap<>();
+
+    public AnalysisJobService(EmailAnalysisService emailAnalysisService,
+                              AnalysisMetrics analysisMetrics,
+                              @Value("${analysis.jobs.threads:8}") int threads,
+                              @Value("${analysis.jobs.queue-size:1000}") int queueSize,
+                              @Value("${analysis.jobs.max-jobs:10000}") int maxJobs,
+                              @Value("${analysis.jobs.ttl-minutes:30}") long ttlMinutes,
+                              @Value("${analysis.jobs.stream-timeout-minutes:30}") long streamTimeoutMinutes,
+                              @Value("${analysis.jobs.max-streams-per-user:5}") int maxStreamsPerUser,
+                              @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.emailAnalysisService = emailAnalysisService;
+        this.jobs = new BoundedTtlCache<>(maxJobs, Duration.ofMinutes(ttlMinutes));
+        this.streamTimeoutMs = Duration.ofMinutes(streamTimeoutMinutes).toMillis();
+        this.maxStreamsPerUser = maxStreamsPerUser;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), threadFactory(virtualThreads), new ThreadPoolExecutor.AbortPolicy());
+        analysisMetrics.gauge("analysis.jobs.queue.size", executor, e -> e.getQueue().size());
+        analysisMetrics.gauge("analysis.jobs.active", executor, ThreadPoolExecutor::getActiveCount);
+    }
+
+    private static ThreadFactory threadFactory(boolean virtualThreads) {
+        if (virtualThreads) {
+            return Thread.ofVirtual().name("analysis-job-", 0).factory();
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "analysis-job-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /** Nhận job; rỗng khi hàng đợi đã đầy (client nên thử lại sau). */
+    public Optional<AnalysisJob> submit(Long userId, EmailAnalyzeRequest request) {
+        AnalysisJob job = new AnalysisJob(UUID.randomUUID().toString(), userId, PENDING, LocalDateTime.now(), null, null, null);
+        jobs.put(job.getJobId(), job);
+        try {
+            executor.execute(() -> run(job, request));
+        } catch (RejectedExecutionException e) {
+            jobs.invalidate(job.getJobId());
+            return Optional.empty();
+        }
+        return Optional.of(job);
+    }
+
+    // Job của người dùng khác được coi như không tồn tại
+    public Optional<AnalysisJob> find(Long userId, String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).filter(job -> job.getUserId().equals(userId));
+    }
+
+    /** Mở stream SSE nhận kết quả job của người dùng; quá max-streams-per-user thì stream cũ nhất bị đóng. */
+    public SseEmitter subscribe(Long userId) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        emitter.onCompletion(() -> removeStream(userId, emitter));
+        emitter.onTimeout(() -> removeStream(userId, emitter));
+        emitter.onError(e -> removeStream(userId, emitter));
+        List<SseEmitter> evicted = new ArrayList<>();
+        // Thêm trong compute để không đua với removeStream đang gỡ danh sách rỗng của cùng người dùng
+        streams.compute(userId, (id, userStreams) -> {
+            List<SseEmitter> updated = userStreams != null ? userStreams : new CopyOnWriteArrayList<>();
+            updated.add(emitter);
+            while (updated.size() > maxStreamsPerUser) {
+                evicted.add(updated.remove(0));
+            }
+            return updated;
+        });
+        evicted.forEach(SseEmitter::complete);
+        try {
+            emitter.send(SseEmitter.event().comment("connected"));
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    private void run(AnalysisJob job, EmailAnalyzeRequest request) {
+        jobs.put(job.getJobId(), new AnalysisJob(job.getJobId(), job.getUserId(), RUNNING, job.getSubmittedAt(), null, null, null));
+        AnalysisJob finished;
+        try {
+            finished = new AnalysisJob(job.getJobId(), job.getUserId(), DONE, job.getSubmittedAt(), LocalDateTime.now(),
+                    emailAnalysisService.analyze(job.getUserId(), request), null);
+        } catch (RuntimeException e) {
+            System.err.println("Analysis job " + job.getJobId() + " failed: " + e.getMessage());
+            finished = new AnalysisJob(job.getJobId(), job.getUserId(), FAILED, job.getSubmittedAt(), LocalDateTime.now(),
+                    null, e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+        jobs.put(job.getJobId(), finished);
+        publish(finished);
+    }
+
+    private void publish(AnalysisJob job) {
+        List<SseEmitter> userStreams = streams.get(job.getUserId());
+        if (userStreams == null) {
+            return; // Không có stream nào đang mở: client sẽ poll
+        }
+        for (SseEmitter emitter : userStreams) {
+            try {
+                emitter.send(SseEmitter.event().id(job.getJobId()).name("job").data(job, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                // Client đã ngắt kết nối
+                removeStream(job.getUserId(), emitter);
+            }
+        }
+    }
+
+    private void removeStream(Long userId, SseEmitter emitter) {
+        streams.computeIfPresent(userId, (id, userStreams) -> {
+            userStreams.remove(emitter);
+            return userStreams.isEmpty() ? null : userStreams;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        streams.values().forEach(userStreams -> userStreams.forEach(SseEmitter::complete));
+        streams.clear();
+    }
+}
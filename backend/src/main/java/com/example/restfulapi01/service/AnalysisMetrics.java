@@ -0,0 +1,131 @@
+package com.example.restfulapi01.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Metric Micrometer cho pipeline phân tích, xem tại /actuator/prometheus:
+ * - analysis.stage (timer): thời gian từng bước, tag pipeline (email|domain) và stage
+ * - analysis.verdicts (counter): số kết quả theo nhãn và nguồn kết luận
+ * - analysis.errors (counter): số lỗi theo loại (http_429, TimeoutException...)
+ * - analysis.text.chars (summary): độ dài text email trước và sau tiền xử lý
+ * - analysis.zero-shot.hypotheses (counter): số nhãn đã gửi cho model zero-shot (chi phí upstream)
+ * Thời gian gọi Hugging Face theo model nằm ở huggingface.inference (HuggingFaceInferenceClient).
+ * Meter được đăng ký một lần cho mỗi tổ hợp tag rồi giữ trong map, không dựng lại builder ở mỗi lần đo.
+ */
+@Component
+public class AnalysisMetrics {
+
+    public static final String EMAIL = "email";
+    public static final String DOMAIN = "domain";
+
+    private final MeterRegistry registry;
+    private final Map<MeterKey, Timer> stageTimers = new ConcurrentHashMap<>();
+    private final Map<MeterKey, Counter> verdictCounters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> hypothesisCounters = new ConcurrentHashMap<>();
+    private final Map<MeterKey, DistributionSummary> textLengthSummaries = new ConcurrentHashMap<>();
+    private final Map<MeterKey, Counter> errorCounters = new ConcurrentHashMap<>();
+
+    public AnalysisMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public <T> T time(String pipeline, String stage, Supplier<T> step) {
+        long start = System.nanoTime();
+        try {
+            return step.get();
+        } finally {
+            record(pipeline, stage, System.nanoTime() - start);
+        }
+    }
+
+    public void time(String pipeline, String stage, Runnable step) {
+        long start = System.nanoTime();
+        try {
+            step.run();
+        } finally {
+            record(pipeline, stage, System.nanoTime() - start);
+        }
+    }
+
+    // Đo từ lúc subscribe tới khi Mono kết thúc (thành công, lỗi hoặc bị hủy)
+    public <T> Mono<T> timeMono(String pipeline, String stage, Mono<T> step) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return step.doFinally(signal -> record(pipeline, stage, System.nanoTime() - start));
+        });
+    }
+
+    public void record(String pipeline, String stage, long nanos) {
+        stageTimers.computeIfAbsent(new MeterKey(pipeline, stage, null), key -> Timer.builder("analysis.stage")
+                        .description("Time spent in each stage of the analysis pipeline")
+                        .tag("pipeline", key.pipeline())
+                        .tag("stage", key.first())
+                        .publishPercentileHistogram()
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void verdict(String pipeline, String label, String source) {
+        MeterKey meterKey = new MeterKey(pipeline, label == null ? "none" : label, source == null ? "none" : source);
+        verdictCounters.computeIfAbsent(meterKey, key -> Counter.builder("analysis.verdicts")
+                        .tag("pipeline", key.pipeline())
+                        .tag("label", key.first())
+                        .tag("source", key.second())
+                        .register(registry))
+                .increment();
+    }
+
+    // Số cặp (text, nhãn) thực sự gửi cho model zero-shot, tức số lượt suy luận NLI phía upstream
+    public void hypotheses(String pipeline, int count) {
+        hypothesisCounters.computeIfAbsent(pipeline, key -> Counter.builder("analysis.zero-shot.hypotheses")
+                        .tag("pipeline", key)
+                        .register(registry))
+                .increment(count);
+    }
+
+    // Độ dài text trước/sau tiền xử lý (kind = raw | prepared)
+    public void textLength(String pipeline, String kind, int chars) {
+        textLengthSummaries.computeIfAbsent(new MeterKey(pipeline, kind, null), key -> DistributionSummary.builder("analysis.text.chars")
+                        .baseUnit("chars")
+                        .tag("pipeline", key.pipeline())
+                        .tag("kind", key.first())
+                        .register(registry))
+                .record(chars);
+    }
+
+    public void error(String pipeline, Throwable error) {
+        errorCounters.computeIfAbsent(new MeterKey(pipeline, errorType(error), null), key -> Counter.builder("analysis.errors")
+                        .tag("pipeline", key.pipeline())
+                        .tag("type", key.first())
+                        .register(registry))
+                .increment();
+    }
+
+    public <T> void gauge(String name, T target, ToDoubleFunction<T> value) {
+        Gauge.builder(name, target, value).register(registry);
+    }
+
+    static String errorType(Throwable error) {
+        if (error instanceof WebClientResponseException e) {
+            return "http_" + e.getStatusCode().value();
+        }
+        return error.getClass().getSimpleName();
+    }
+
+    // Giá trị tag của một meter; second chỉ dùng cho meter có ba tag
+    private record MeterKey(String pipeline, String first, String second) {
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.restfulapi01.service;
+
+import com.example.restfulapi01.payload.LabelScore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gom các request kiểm tra domain đồng thời thành một lần gọi Inference API.
+ * Một luồng dispatcher chờ tối đa window-ms (hoặc tới khi đủ max-size) rồi gửi cả lô,
+ * sau đó trả cho mỗi caller đúng phần kết quả tương ứng với input của nó.
+ * Lô lỗi hoặc trả về sai số kết quả thì từng input được gửi lại riêng, để một input hỏng không làm hỏng cả lô.
+ */
+@Service
+public class DomainCheckBatcher {
+
+    @Value("${huggingface.model.id.domain-check}")
+    private String huggingFaceModelId;
+
+    @Value("${domain-check.batch.enabled:true}")
+    private boolean batchingEnabled;
+
+    @Value("${domain-check.batch.window-ms:15}")
+    private long batchWindowMs;
+
+    @Value("${domain-check.batch.max-size:32}")
+    private int maxBatchSize;
+
+    // Model URL nhỏ, phản hồi nhanh: timeout ngắn hơn nhiều so với model zero-shot
+    @Value("${huggingface.client.timeout.domain-check-ms:5000}")
+    private long responseTimeoutMs;
+
+    private static final ParameterizedTypeReference<List<List<LabelScore>>> RESPONSE_TYPE =
+            new ParameterizedTypeReference<>() {};
+
+    private final HuggingFaceInferenceClient inferenceClient;
+    private Duration responseTimeout;
+
+    private final BlockingQueue<PendingCheck> queue = new LinkedBlockingQueue<>();
+    private Thread dispatcher;
+    private volatile boolean running;
+
+    public DomainCheckBatcher(HuggingFaceInferenceClient inferenceClient) {
+        this.inferenceClient = inferenceClient;
+    }
+
+    @PostConstruct
+    public void init() {
+        System.out.println("Hugging Face domain-check model: " + huggingFaceModelId);
+        this.responseTimeout = Duration.ofMillis(responseTimeoutMs);
+
+        if (batchingEnabled) {
+            running = true;
+            dispatcher = new Thread(this::dispatchLoop, "domain-check-batcher");
+            dispatcher.setDaemon(true);
+            dispatcher.start();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+        List<PendingCheck> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (PendingCheck pending : remaining) {
+            pending.future.completeExceptionally(new IllegalStateException("Domain check batcher is shutting down"));
+        }
+    }
+
+    /**
+     * Gửi một input vào lô kế tiếp. Future hoàn thành với danh sách LabelScore của riêng input đó.
+     */
+    public CompletableFuture<List<LabelScore>> submit(String input) {
+        PendingCheck pending = new PendingCheck(input);
+        if (!batchingEnabled || !running) {
+            dispatch(List.of(pending));
+        } else {
+            queue.add(pending);
+        }
+        return pending.future;
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            try {
+                PendingCheck first = queue.take();
+                List<PendingCheck> batch = new ArrayList<>(maxBatchSize);
+                batch.add(first);
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchWindowMs);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        queue.drainTo(batch, maxBatchSize - batch.size());
+                        break;
+                    }
+                    PendingCheck next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                dispatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.err.println("Unexpected error in domain check batcher: " + e.getMessage());
+            }
+        }
+    }
+
+    // Gửi lô bất đồng bộ để dispatcher có thể gom lô tiếp theo ngay lập tức
+    private void dispatch(List<PendingCheck> batch) {
+        Object inputs;
+        if (batch.size() == 1) {
+            inputs = batch.get(0).input;
+        } else {
+            List<String> batchInputs = new ArrayList<>(batch.size());
+            for (PendingCheck pending : batch) {
+                batchInputs.add(pending.input);
+            }
+            inputs = batchInputs;
+        }
+
+        // Model 'pirocheto/phishing-url-detection' trả về List<List<LabelScore>>, mỗi phần tử ứng với một input
+        // Mono rỗng (không có body) -> mỗi caller nhận null như khi gọi .block(). Không dùng callback onComplete,
+        // vì nó chạy cả sau onNext và sẽ hoàn thành bằng null các future đang chờ gửi lại riêng
+        inferenceClient.infer(huggingFaceModelId, inputs, null, responseTimeout, RESPONSE_TYPE)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .subscribe(
+                        response -> response.ifPresentOrElse(
+                                responseList -> distribute(batch, responseList),
+                                () -> batch.forEach(pending -> pending.future.complete(null))),
+                        error -> {
+                            if (batch.size() > 1) {
+                                System.err.println("Domain check batch of " + batch.size() + " failed (" + error.getMessage()
+                                        + "), retrying each input on its own");
+                                retryIndividually(batch);
+                            } else {
+                                batch.get(0).future.completeExceptionally(error);
+                            }
+                        }
+                );
+    }
+
+    private void distribute(List<PendingCheck> batch, List<List<LabelScore>> responseList) {
+        if (responseList.size() != batch.size()) {
+            if (batch.size() > 1) {
+                System.err.println("AI service returned " + responseList.size() + " results for a batch of "
+                        + batch.size() + " inputs, retrying each input on its own");
+                retryIndividually(batch);
+                return;
+            }
+            IllegalStateException mismatch = new IllegalStateException(
+                    "AI service returned " + responseList.size() + " results for a batch of " + batch.size() + " inputs");
+            batch.forEach(pending -> pending.future.completeExceptionally(mismatch));
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).future.complete(responseList.get(i));
+        }
+    }
+
+    private void retryIndividually(List<PendingCheck> batch) {
+        for (PendingCheck pending : batch) {
+            dispatch(List.of(pending));
+        }
+    }
+
+    private static final class PendingCheck {
+        private final String input;
+        private final CompletableFuture<List<LabelScore>> future = new CompletableFuture<>();
+
+        private PendingCheck(String input) {
+            this.input = input;
+        }
+    }
+}
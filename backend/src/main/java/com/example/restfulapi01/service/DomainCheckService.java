@@ -1,130 +1,172 @@
 package com.example.restfulapi01.service;
 
+import com.example.restfulapi01.cache.SingleFlight;
+import com.example.restfulapi01.payload.CacheStatsResponse;
 import com.example.restfulapi01.payload.DomainCheckResponse;
-import com.example.restfulapi01.payload.HuggingFaceInferenceRequest;
 import com.example.restfulapi01.payload.LabelScore; // Đảm bảo import đúng
-import jakarta.annotation.PostConstruct;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpHeaders;
+import com.example.restfulapi01.payload.SingleFlightStatsResponse;
+import com.example.restfulapi01.resilience.UpstreamOverloadedException;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.BodyInserters;
-import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
 
 import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
 import java.util.regex.Pattern;
 
 @Service
 public class DomainCheckService {
 
-    @Value("${huggingface.api.token}")
-    private String huggingFaceApiToken;
+    private final DomainCheckBatcher domainCheckBatcher;
+    private final DomainVerdictCache domainVerdictCache;
+    private final UrlRiskEngine urlRiskEngine;
+    private final DomainListIndex domainListIndex;
+    private final AnalysisMetrics analysisMetrics;
+    private final SingleFlight<String, DomainCheckResponse> inFlightChecks = new SingleFlight<>();
+
+    // Regex kiểm tra URL đầy đủ hoặc chỉ domain, được biên dịch một lần thay vì mỗi lần gọi
+    private static final Pattern URL_OR_DOMAIN_PATTERN = Pattern.compile(
+            "^(http[s]?://)?([a-zA-Z0-9-]+\\.)+[a-zA-Z]{2,63}([a-zA-Z0-9-._~:/?#\\[\\]@!$&'()*+,;=]*)?$");
+
+    public DomainCheckService(DomainCheckBatcher domainCheckBatcher,
+                              DomainVerdictCache domainVerdictCache,
+                              UrlRiskEngine urlRiskEngine,
+                              DomainListIndex domainListIndex,
+                              AnalysisMetrics analysisMetrics) {
+        this.domainCheckBatcher = domainCheckBatcher;
+        this.domainVerdictCache = domainVerdictCache;
+        this.urlRiskEngine = urlRiskEngine;
+        this.domainListIndex = domainListIndex;
+        this.analysisMetrics = analysisMetrics;
+    }
+
+    // Phiên bản đồng bộ, dùng cho các nơi gọi không phải reactive
+    public DomainCheckResponse checkDomainSafety(String inputString) {
+        return checkDomainSafetyReactive(inputString).block();
+    }
+
+    // Phiên bản reactive: không có thread nào bị giữ trong lúc chờ model
+    public Mono<DomainCheckResponse> checkDomainSafetyReactive(String inputString) {
+        if (inputString == null) {
+            return analyzeDomain(null);
+        }
+        // Blocklist/allowlist được tra trước cache để một lần reload có hiệu lực ngay
+        Optional<DomainCheckResponse> listed = analysisMetrics.time(AnalysisMetrics.DOMAIN, "list_lookup",
+                () -> domainListIndex.lookup(inputString));
+        if (listed.isPresent()) {
+            return Mono.just(counted(listed.get(), "LIST"));
+        }
+        // Host/URL vừa được kiểm tra thì trả lại kết quả trong cache, không gọi lại model
+        String cacheKey = DomainVerdictCache.normalizeKey(inputString);
+        DomainCheckResponse cached = analysisMetrics.time(AnalysisMetrics.DOMAIN, "cache_lookup",
+                () -> domainVerdictCache.get(cacheKey));
+        if (cached != null) {
+            return Mono.just(counted(new DomainCheckResponse(inputString, cached.getStatus(), cached.getMessage(), cached.getConfidence()), "CACHE"));
+        }
 
-    @Value("${huggingface.model.id.domain-check}")
-    private String huggingFaceModelId;
+        // Các request đồng thời cùng URL/host đã chuẩn hóa dùng chung một lần phân tích;
+        // mỗi caller vẫn nhận response mang đúng input của mình
+        return inFlightChecks.execute(cacheKey, () -> analyzeDomain(inputString)
+                        .doOnNext(response -> domainVerdictCache.put(cacheKey, response)))
+                .map(response -> inputString.equals(response.getDomain())
+                        ? response
+                        : new DomainCheckResponse(inputString, response.getStatus(), response.getMessage(), response.getConfidence()));
+    }
 
-    private final WebClient.Builder webClientBuilder;
-    private WebClient webClient;
+    public CacheStatsResponse getCacheStats() {
+        return domainVerdictCache.stats();
+    }
 
-    public DomainCheckService(WebClient.Builder webClientBuilder) {
-        this.webClientBuilder = webClientBuilder;
+    public SingleFlightStatsResponse getCoalescingStats() {
+        return inFlightChecks.stats();
     }
 
-    @PostConstruct
-    public void init() {
-        String baseUrl = "https://api-inference.huggingface.co/models/" + huggingFaceModelId;
+    private Mono<DomainCheckResponse> analyzeDomain(String inputString) {
+        // Các trường hợp rõ ràng (IP, '@' trong URL, thương hiệu giả mạo...) được trả lời cục bộ trong vài micro giây.
+        // MALICIOUS được trả về cả khi input không qua regex (ví dụ host là địa chỉ IP hoặc chứa ký tự Unicode).
+        Optional<DomainCheckResponse> localVerdict = analysisMetrics.time(AnalysisMetrics.DOMAIN, "local_score",
+                () -> urlRiskEngine.tryLocalVerdict(inputString));
+        if (localVerdict.isPresent() && "MALICIOUS".equals(localVerdict.get().getStatus())) {
+            return Mono.just(counted(localVerdict.get(), "LOCAL"));
+        }
+
+        // Quan trọng: Model này được thiết kế để phân loại URL/Domain.
+        // Cần đảm bảo input là định dạng URL/Domain hợp lệ.
+        if (!analysisMetrics.time(AnalysisMetrics.DOMAIN, "validate", () -> isValidUrlOrDomain(inputString))) {
+            String message = "The provided input is not a valid URL or domain format for this model. Please provide a full URL (e.g., https://example.com) or a domain (e.g., example.com).";
+            return Mono.just(counted(new DomainCheckResponse(inputString, "INVALID_FORMAT", message, 0.0), "VALIDATION"));
+        }
 
-        System.out.println("Hugging Face API URL: " + baseUrl);
+        if (localVerdict.isPresent()) {
+            return Mono.just(counted(localVerdict.get(), "LOCAL"));
+        }
 
-        this.webClient = webClientBuilder.baseUrl(baseUrl)
-                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + huggingFaceApiToken)
-                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .build();
+        // Request được gom lô cùng các request đồng thời khác; mỗi caller nhận đúng
+        // danh sách LabelScore (thường là safe/phishing) ứng với input của mình
+        // model_wait gồm cả thời gian chờ gom lô lẫn thời gian gọi Hugging Face
+        return analysisMetrics.timeMono(AnalysisMetrics.DOMAIN, "model_wait",
+                        Mono.fromFuture(() -> domainCheckBatcher.submit(inputString)))
+                .map(predictions -> analysisMetrics.time(AnalysisMetrics.DOMAIN, "post_process",
+                        () -> toResponse(inputString, predictions)))
+                .switchIfEmpty(Mono.fromSupplier(() -> toResponse(inputString, null)))
+                .onErrorResume(e -> Mono.just(toErrorResponse(inputString, e)))
+                .map(response -> counted(response, "MODEL"));
     }
 
-    public DomainCheckResponse checkDomainSafety(String inputString) {
+    private DomainCheckResponse counted(DomainCheckResponse response, String source) {
+        analysisMetrics.verdict(AnalysisMetrics.DOMAIN, response.getStatus(), source);
+        return response;
+    }
+
+    private DomainCheckResponse toResponse(String inputString, List<LabelScore> predictions) {
         String status;
         String message;
         double confidence = 0.0;
 
-        // Quan trọng: Model này được thiết kế để phân loại URL/Domain.
-        // Cần đảm bảo input là định dạng URL/Domain hợp lệ.
-        if (!isValidUrlOrDomain(inputString)) {
-            status = "INVALID_FORMAT";
-            message = "The provided input is not a valid URL or domain format for this model. Please provide a full URL (e.g., https://example.com) or a domain (e.g., example.com).";
-            return new DomainCheckResponse(inputString, status, message, confidence);
-        }
+        if (predictions == null || predictions.isEmpty()) {
+            status = "UNKNOWN";
+            message = "Could not get a valid prediction from the AI model (empty or invalid response structure).";
+        } else {
+            LabelScore highestScoreLabel = predictions.stream()
+                    .max(Comparator.comparingDouble(LabelScore::getScore))
+                    .orElse(null);
 
-        HuggingFaceInferenceRequest request = new HuggingFaceInferenceRequest(inputString);
-
-        try {
-            // Model 'pirocheto/phishing-url-detection' trả về List<List<LabelScore>>
-            // với list con thường chỉ chứa 2 phần tử (safe/phishing)
-            List<List<LabelScore>> responseList = webClient.post()
-                    .body(BodyInserters.fromValue(request))
-                    .retrieve()
-                    .onStatus(statusPredicate -> statusPredicate.is4xxClientError(), clientResponse -> {
-                        System.err.println("Client Error Status: " + clientResponse.statusCode() + " Headers: " + clientResponse.headers().asHttpHeaders());
-                        return clientResponse.bodyToMono(String.class)
-                                .flatMap(body -> {
-                                    System.err.println("Client Error Body: " + body);
-                                    return clientResponse.createException();
-                                })
-                                .flatMap(Mono::error);
-                    })
-                    .onStatus(statusPredicate -> statusPredicate.is5xxServerError(), serverResponse -> {
-                        System.err.println("Server Error Status: " + serverResponse.statusCode() + " Headers: " + serverResponse.headers().asHttpHeaders());
-                        return serverResponse.bodyToMono(String.class)
-                                .flatMap(body -> {
-                                    System.err.println("Server Error Body: " + body);
-                                    return serverResponse.createException();
-                                })
-                                .flatMap(Mono::error);
-                    })
-                    .bodyToMono(new ParameterizedTypeReference<List<List<LabelScore>>>() {})
-                    .block();
-
-            if (responseList == null || responseList.isEmpty() || responseList.get(0) == null || responseList.get(0).isEmpty()) {
+            if (highestScoreLabel == null) {
                 status = "UNKNOWN";
-                message = "Could not get a valid prediction from the AI model (empty or invalid response structure).";
+                message = "No clear prediction from the AI model.";
             } else {
-                List<LabelScore> predictions = responseList.get(0);
-                LabelScore highestScoreLabel = predictions.stream()
-                        .max(Comparator.comparingDouble(LabelScore::getScore))
-                        .orElse(null);
-
-                if (highestScoreLabel == null) {
-                    status = "UNKNOWN";
-                    message = "No clear prediction from the AI model.";
+                confidence = highestScoreLabel.getScore();
+                String label = highestScoreLabel.getLabel().toUpperCase();
+
+                // Model 'pirocheto/phishing-url-detection' thường trả về "SAFE" và "PHISHING"
+                if (label.contains("PHISHING")) {
+                    status = "MALICIOUS";
+                    message = "This URL/domain is classified as MALICIOUS/PHISHING by the AI model.";
+                } else if (label.contains("SAFE")) {
+                    status = "SAFE";
+                    message = "This URL/domain appears to be SAFE/BENIGN based on our analysis.";
                 } else {
-                    confidence = highestScoreLabel.getScore();
-                    String label = highestScoreLabel.getLabel().toUpperCase();
-
-                    // Model 'pirocheto/phishing-url-detection' thường trả về "SAFE" và "PHISHING"
-                    if (label.contains("PHISHING")) {
-                        status = "MALICIOUS";
-                        message = "This URL/domain is classified as MALICIOUS/PHISHING by the AI model.";
-                    } else if (label.contains("SAFE")) {
-                        status = "SAFE";
-                        message = "This URL/domain appears to be SAFE/BENIGN based on our analysis.";
-                    } else {
-                        status = "UNKNOWN";
-                        message = "AI model returned an unrecognized or ambiguous label: " + highestScoreLabel.getLabel();
-                    }
+                    status = "UNKNOWN";
+                    message = "AI model returned an unrecognized or ambiguous label: " + highestScoreLabel.getLabel();
                 }
             }
-            return new DomainCheckResponse(inputString, status, message, confidence);
+        }
+        return new DomainCheckResponse(inputString, status, message, confidence);
+    }
 
-        } catch (WebClientResponseException e) {
+    private DomainCheckResponse toErrorResponse(String inputString, Throwable error) {
+        analysisMetrics.error(AnalysisMetrics.DOMAIN, error);
+        String message;
+        if (error instanceof UpstreamOverloadedException) {
+            return new DomainCheckResponse(inputString, "OVERLOADED",
+                    "AI service is overloaded, please try again later. " + error.getMessage(), 0.0);
+        }
+        if (error instanceof WebClientResponseException e) {
             System.err.println("WebClientResponseException caught: " + e.getStatusCode() + " - " + e.getStatusText() + " - Body: " + e.getResponseBodyAsString());
             e.printStackTrace();
 
-            status = "ERROR";
             message = "Error from AI service: " + e.getStatusCode() + " - " + e.getStatusText();
 
             if (e.getStatusCode() == HttpStatus.UNAUTHORIZED) {
@@ -136,25 +178,19 @@ public class DomainCheckService {
             } else if (e.getStatusCode().is5xxServerError()) {
                 message = "AI service internal error. Service might be temporarily unavailable. Details: " + e.getResponseBodyAsString();
             }
-            return new DomainCheckResponse(inputString, status, message, confidence);
-
-        } catch (Exception e) {
-            System.err.println("General Exception caught during analysis: " + e.getClass().getName() + " - " + e.getMessage());
-            e.printStackTrace();
+        } else {
+            System.err.println("General Exception caught during analysis: " + error.getClass().getName() + " - " + error.getMessage());
+            error.printStackTrace();
 
-            status = "ERROR";
-            message = "An unexpected error occurred during analysis. Please try again. Details: " + e.getClass().getSimpleName() + ": " + e.getMessage();
-            confidence = 0.0;
-            return new DomainCheckResponse(inputString, status, message, confidence);
+            message = "An unexpected error occurred during analysis. Please try again. Details: " + error.getClass().getSimpleName() + ": " + error.getMessage();
         }
+        return new DomainCheckResponse(inputString, "ERROR", message, 0.0);
     }
 
     // Hàm kiểm tra định dạng URL/Domain hợp lệ
-    private boolean isValidUrlOrDomain(String input) {
-        // Regex kiểm tra URL đầy đủ hoặc chỉ domain.
+    static boolean isValidUrlOrDomain(String input) {
         // Đã được tinh chỉnh để bao quát tốt hơn các trường hợp URL/domain.
         // Hỗ trợ cả HTTP/HTTPS, www, subdomains, và các ký tự hợp lệ trong đường dẫn.
-        String urlOrDomainRegex = "^(http[s]?://)?([a-zA-Z0-9-]+\\.)+[a-zA-Z]{2,63}([a-zA-Z0-9-._~:/?#\\[\\]@!$&'()*+,;=]*)?$";
-        return Pattern.matches(urlOrDomainRegex, input);
+        return URL_OR_DOMAIN_PATTERN.matcher(input).matches();
     }
 }
\ No newline at end of file
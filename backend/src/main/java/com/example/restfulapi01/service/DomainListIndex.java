@@ -0,0 +1,138 @@
+package com.example.restfulapi01.service;
+
+import com.example.restfulapi01.domainlist.DomainHash;
+import com.example.restfulapi01.domainlist.DomainListCompiler;
+import com.example.restfulapi01.domainlist.MappedDomainSet;
+import com.example.restfulapi01.payload.DomainCheckResponse;
+import com.example.restfulapi01.payload.DomainListStatsResponse;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Blocklist/allowlist domain dạng index map vào bộ nhớ, được tra trước cache và trước model.
+ * Host được so khớp theo hậu tố: "a.b.evil.com" khớp với entry "evil.com".
+ * Duyệt từ hậu tố dài nhất tới ngắn nhất, entry cụ thể hơn thắng; cùng mức thì blocklist thắng.
+ * reload() biên dịch lại file text (nếu mới hơn index) rồi tráo index bằng AtomicReference,
+ * các request đang chạy vẫn đọc bản cũ cho tới khi xong.
+ */
+@Service
+public class DomainListIndex {
+
+    @Value("${domain-check.lists.enabled:true}")
+    private boolean enabled;
+
+    @Value("${domain-check.lists.blocklist.source:}")
+    private String blocklistSource;
+
+    @Value("${domain-check.lists.blocklist.index:}")
+    private String blocklistIndex;
+
+    @Value("${domain-check.lists.allowlist.source:}")
+    private String allowlistSource;
+
+    @Value("${domain-check.lists.allowlist.index:}")
+    private String allowlistIndex;
+
+    private final AtomicReference<MappedDomainSet> blocklist = new AtomicReference<>(MappedDomainSet.EMPTY);
+    private final AtomicReference<MappedDomainSet> allowlist = new AtomicReference<>(MappedDomainSet.EMPTY);
+    private final AtomicLong blocklistHits = new AtomicLong();
+    private final AtomicLong allowlistHits = new AtomicLong();
+    private volatile LocalDateTime lastReload;
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            reload();
+        }
+    }
+
+    public synchronized DomainListStatsResponse reload() {
+        blocklist.set(load("blocklist", blocklistSource, blocklistIndex, blocklist.get()));
+        allowlist.set(load("allowlist", allowlistSource, allowlistIndex, allowlist.get()));
+        lastReload = LocalDateTime.now();
+        return stats();
+    }
+
+    public Optional<DomainCheckResponse> lookup(String input) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        MappedDomainSet block = blocklist.get();
+        MappedDomainSet allow = allowlist.get();
+        if (block.size() == 0 && allow.size() == 0) {
+            return Optional.empty();
+        }
+        String host = DomainHash.hostOf(input);
+        if (host == null) {
+            return Optional.empty();
+        }
+
+        // Địa chỉ IP chỉ so khớp nguyên host, không so khớp hậu tố
+        boolean ipLiteral = host.charAt(0) == '[' || Character.isDigit(host.charAt(host.length() - 1));
+        int from = 0;
+        while (from >= 0) {
+            long hash = DomainHash.hash(host, from);
+            if (block.contains(hash)) {
+                blocklistHits.incrementAndGet();
+                return Optional.of(new DomainCheckResponse(input, "MALICIOUS",
+                        "This URL/domain is on the phishing blocklist (matched: " + host.substring(from) + ").", 1.0));
+            }
+            if (allow.contains(hash)) {
+                allowlistHits.incrementAndGet();
+                return Optional.of(new DomainCheckResponse(input, "SAFE",
+                        "This URL/domain is on the trusted allowlist (matched: " + host.substring(from) + ").", 1.0));
+            }
+            if (ipLiteral) {
+                break;
+            }
+            int dot = host.indexOf('.', from);
+            from = dot < 0 ? -1 : dot + 1;
+        }
+        return Optional.empty();
+    }
+
+    public DomainListStatsResponse stats() {
+        return new DomainListStatsResponse(enabled, blocklist.get().size(), allowlist.get().size(),
+                blocklistHits.get(), allowlistHits.get(), lastReload);
+    }
+
+    // Lỗi khi nạp không làm hỏng index đang dùng: giữ lại bản hiện tại
+    private MappedDomainSet load(String name, String source, String index, MappedDomainSet current) {
+        if (index == null || index.isBlank()) {
+            return current;
+        }
+        Path indexPath = Paths.get(index);
+        try {
+            if (source != null && !source.isBlank()) {
+                Path sourcePath = Paths.get(source);
+                if (Files.exists(sourcePath) && (!Files.exists(indexPath)
+                        || Files.getLastModifiedTime(sourcePath).compareTo(Files.getLastModifiedTime(indexPath)) > 0)) {
+                    long start = System.currentTimeMillis();
+                    int count = DomainListCompiler.compile(sourcePath, indexPath);
+                    System.out.println("Compiled " + name + " " + sourcePath + " -> " + indexPath + " (" + count
+                            + " domains, " + (System.currentTimeMillis() - start) + " ms)");
+                }
+            }
+            if (!Files.exists(indexPath)) {
+                System.out.println("Domain " + name + " index not found, skipping: " + indexPath);
+                return current;
+            }
+            MappedDomainSet set = MappedDomainSet.open(indexPath);
+            System.out.println("Loaded domain " + name + ": " + set.size() + " entries from " + indexPath);
+            return set;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to load domain " + name + " from " + indexPath + ": " + e.getMessage());
+            return current;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.restfulapi01.service;
+
+import com.example.restfulapi01.cache.BoundedTtlCache;
+import com.example.restfulapi01.payload.CacheStatsResponse;
+import com.example.restfulapi01.payload.DomainCheckResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Cache kết quả kiểm tra domain theo URL/host đã chuẩn hóa.
+ * Mỗi loại kết quả có TTL riêng; ERROR (bao gồm 429) chỉ được cache trong thời gian ngắn
+ * để khi dịch vụ AI gặp sự cố, các request lặp lại không dồn dập gọi lên upstream.
+ */
+@Service
+public class DomainVerdictCache {
+
+    private final BoundedTtlCache<String, DomainCheckResponse> cache;
+
+    private final Duration safeTtl;
+    private final Duration maliciousTtl;
+    private final Duration invalidFormatTtl;
+    private final Duration unknownTtl;
+    private final Duration errorTtl;
+
+    public DomainVerdictCache(@Value("${domain-check.cache.max-size:50000}") int maxSize,
+                              @Value("${domain-check.cache.ttl.safe-minutes:360}") long safeMinutes,
+                              @Value("${domain-check.cache.ttl.malicious-minutes:1440}") long maliciousMinutes,
+                              @Value("${domain-check.cache.ttl.invalid-format-minutes:1440}") long invalidFormatMinutes,
+                              @Value("${domain-check.cache.ttl.unknown-minutes:5}") long unknownMinutes,
+                              @Value("${domain-check.cache.ttl.error-seconds:30}") long errorSeconds) {
+        this.safeTtl = Duration.ofMinutes(safeMinutes);
+        this.maliciousTtl = Duration.ofMinutes(maliciousMinutes);
+        this.invalidFormatTtl = Duration.ofMinutes(invalidFormatMinutes);
+        this.unknownTtl = Duration.ofMinutes(unknownMinutes);
+        this.errorTtl = Duration.ofSeconds(errorSeconds);
+        this.cache = new BoundedTtlCache<>(maxSize, safeTtl);
+    }
+
+    public DomainCheckResponse get(String normalizedKey) {
+        return cache.get(normalizedKey);
+    }
+
+    public void put(String normalizedKey, DomainCheckResponse response) {
+        cache.put(normalizedKey, response, ttlFor(response.getStatus()));
+    }
+
+    public CacheStatsResponse stats() {
+        return cache.stats();
+    }
+
+    private Duration ttlFor(String status) {
+        if (status == null) {
+            return errorTtl;
+        }
+        switch (status) {
+            case "SAFE":
+                return safeTtl;
+            case "MALICIOUS":
+                return maliciousTtl;
+            case "INVALID_FORMAT":
+                return invalidFormatTtl;
+            case "UNKNOWN":
+                return unknownTtl;
+            case "OVERLOADED":
+                return Duration.ZERO; // Quá tải là trạng thái của chính server này, không cache
+            default:
+                return errorTtl; // ERROR, 429... -> negative caching ngắn hạn
+        }
+    }
+
+    /**
+     * Chuẩn hóa URL/domain làm khóa cache: bỏ khoảng trắng, hạ chữ thường scheme và host,
+     * bỏ dấu chấm cuối host, port mặc định, fragment (#...) và dấu '/' thừa ở cuối.
+     * Path và query giữ nguyên vì model đánh giá cả URL chứ không chỉ host.
+     */
+    public static String normalizeKey(String input) {
+        String value = input.trim();
+        String scheme = "";
+        int schemeEnd = value.indexOf("://");
+        if (schemeEnd > 0) {
+            scheme = value.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+            value = value.substring(schemeEnd + 3);
+        }
+
+        int fragment = value.indexOf('#');
+        if (fragment >= 0) {
+            value = value.substring(0, fragment);
+        }
+
+        int hostEnd = value.length();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '/' || c == '?') {
+                hostEnd = i;
+                break;
+            }
+        }
+        String host = value.substring(0, hostEnd).toLowerCase(Locale.ROOT);
+        String rest = value.substring(hostEnd);
+
+        if (("http".equals(scheme) && host.endsWith(":80")) || ("https".equals(scheme) && host.endsWith(":443"))) {
+            host = host.substring(0, host.lastIndexOf(':'));
+        }
+        while (host.endsWith(".")) {
+            host = host.substring(0, host.length() - 1);
+        }
+        while (rest.endsWith("/")) {
+            rest = rest.substring(0, rest.length() - 1);
+        }
+
+        return scheme.isEmpty() ? host + rest : scheme + "://" + host + rest;
+    }
+}
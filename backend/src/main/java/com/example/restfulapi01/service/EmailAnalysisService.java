@@ -0,0 +1,565 @@
+package com.example.restfulapi01.service;
+
+import com.example.restfulapi01.cache.SingleFlight;
+import com.example.restfulapi01.config.EmailTaxonomyProperties;
+import com.example.restfulapi01.model.User;
+import com.example.restfulapi01.payload.CacheStatsResponse;
+import com.example.restfulapi01.payload.EmailAnalyzeRequest;
+import com.example.restfulapi01.payload.EmailAnalyzeResponse;
+import com.example.restfulapi01.payload.EmailLabel;
+import com.example.restfulapi01.payload.EmailPrediction;
+import com.example.restfulapi01.payload.LinkCheckResult;
+import com.example.restfulapi01.payload.LocalModelStatsResponse;
+import com.example.restfulapi01.payload.NearDuplicateStatsResponse;
+import com.example.restfulapi01.payload.SenderReputationStatsResponse;
+import com.example.restfulapi01.payload.SingleFlightStatsResponse;
+import com.example.restfulapi01.payload.ZeroShotResult;
+import com.example.restfulapi01.preprocess.ApproximateTokenizer;
+import com.example.restfulapi01.resilience.UpstreamOverloadedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pipeline phân tích email: tìm user -> gọi model zero-shot (có cache) -> hậu xử lý -> lưu lịch sử.
+ * Có hai cách gọi: analyze() chạy đồng bộ trên thread của request,
+ * analyzeReactive() trả về Mono và không giữ thread nào trong lúc chờ Hugging Face.
+ */
+@Service
+public class EmailAnalysisService {
+
+    private final String multiLabelModelId; // facebook/bart-large-mnli
+
+    // Các nhãn ứng viên gửi cho model zero-shot (model cục bộ LocalEmailClassifier dự đoán cùng bộ nhãn)
+    static final List<String> CANDIDATE_LABELS = EmailLabel.zeroShotLabels();
+
+    private static final Comparator<EmailPrediction> PREDICTION_ORDER =
+            Comparator.comparingDouble(EmailPrediction::score).reversed();
+    private static final EmailPrediction NO_CLEAR_PREDICTION = new EmailPrediction("No clear prediction above threshold", 0.0);
+    private static final EmailPrediction AI_RESPONSE_INVALID = new EmailPrediction("AI response structure invalid", 0.0);
+    static final String LINK_CHECK_SOURCE = "LINK_CHECK";
+
+    @Value("${analysis.bulk.concurrency:16}")
+    private int bulkConcurrency; // Số email được phân tích đồng thời trong một request bulk
+
+    @Value("${analysis.bulk.history-batch-size:50}")
+    private int historyBatchSize;
+
+    @Value("${analysis.bulk.history-flush-ms:500}")
+    private long historyFlushMs;
+
+    // Email dài hơn chunk-tokens được chia thành các đoạn chồng lấn, phân loại song song rồi gộp điểm theo nhãn
+    @Value("${analysis.chunking.enabled:false}")
+    private boolean chunkingEnabled;
+
+    @Value("${analysis.chunking.chunk-tokens:400}")
+    private int chunkTokens;
+
+    @Value("${analysis.chunking.overlap-tokens:50}")
+    private int chunkOverlapTokens;
+
+    @Value("${analysis.chunking.max-chunks:8}")
+    private int maxChunks;
+
+    @Value("${analysis.chunking.concurrency:4}")
+    private int chunkConcurrency; // Số đoạn của cùng một email gọi model đồng thời
+
+    @Value("${analysis.chunking.aggregation:max}")
+    private String chunkAggregation; // max | mean (trung bình có trọng số theo số token của đoạn)
+
+    // Phản hồi zero-shot ({"sequence", "labels", "scores"}) được decode thẳng vào ZeroShotResult
+    private static final ParameterizedTypeReference<ZeroShotResult> RESPONSE_TYPE =
+            new ParameterizedTypeReference<>() {};
+
+    private final HuggingFaceInferenceClient inferenceClient;
+    // Phần "parameters" theo từng bộ nhãn (đầy đủ, nhánh thô, nhãn chi tiết của nhánh), serialize một lần
+    private final Map<String, byte[]> zeroShotParameters = new ConcurrentHashMap<>();
+    private final EmailTaxonomyProperties taxonomy;
+    private final Duration responseTimeout;
+    private final UserService userService;
+    private final HistoryEmailService historyEmailService;
+    private final EmailVerdictCache emailVerdictCache;
+    private final Scheduler jpaScheduler;
+    private final LocalEmailClassifier localEmailClassifier;
+    private final EmailTextPreprocessor emailTextPreprocessor;
+    private final NearDuplicateVerdictIndex nearDuplicateIndex;
+    private final SenderReputationService senderReputation;
+    private final EmailLinkChecker emailLinkChecker;
+    private final AnalysisMetrics analysisMetrics;
+    private final SingleFlight<String, ZeroShotResult> inFlightClassifications = new SingleFlight<>();
+
+    public EmailAnalysisService(HuggingFaceInferenceClient inferenceClient,
+                                @Value("${huggingface.model.id.multilabel}") String multiLabelModelId,
+                                @Value("${huggingface.client.timeout.multilabel-ms:30000}") long responseTimeoutMs,
+                                UserService userService,
+                                HistoryEmailService historyEmailService,
+                                EmailVerdictCache emailVerdictCache,
+                                Scheduler jpaScheduler,
+                                LocalEmailClassifier localEmailClassifier,
+                                EmailTextPreprocessor emailTextPreprocessor,
+                                EmailTaxonomyProperties taxonomy,
+                                NearDuplicateVerdictIndex nearDuplicateIndex,
+                                SenderReputationService senderReputation,
+                                EmailLinkChecker emailLinkChecker,
+                                AnalysisMetrics analysisMetrics) {
+        this.inferenceClient = inferenceClient;
+        this.multiLabelModelId = multiLabelModelId;
+        this.responseTimeout = Duration.ofMillis(responseTimeoutMs);
+        this.taxonomy = taxonomy;
+        this.userService = userService;
+        this.historyEmailService = historyEmailService;
+        this.emailVerdictCache = emailVerdictCache;
+        this.jpaScheduler = jpaScheduler;
+        this.localEmailClassifier = localEmailClassifier;
+        this.emailTextPreprocessor = emailTextPreprocessor;
+        this.nearDuplicateIndex = nearDuplicateIndex;
+        this.senderReputation = senderReputation;
+        this.emailLinkChecker = emailLinkChecker;
+        this.analysisMetrics = analysisMetrics;
+    }
+
+    // Phiên bản đồng bộ: mọi bước chạy trên thread hiện tại
+    public EmailAnalyzeResponse analyze(Long userId, EmailAnalyzeRequest request) {
+        // 1. Tìm người dùng theo userId
+        Optional<User> userOptional = analysisMetrics.time(AnalysisMetrics.EMAIL, "user_lookup",
+                () -> userService.findById(userId));
+        if (userOptional.isEmpty()) {
+            return userNotFound(userId, request);
+        }
+        User user = userOptional.get();
+
+        // Link trong email được kiểm tra song song với bước phân loại nội dung
+        CompletableFuture<List<LinkCheckResult>> links = emailLinkChecker.check(request.getBody()).toFuture();
+
+        ZeroShotResult zeroShotResult;
+        try {
+            zeroShotResult = classifyRequest(request).block();
+        } catch (Exception e) {
+            return withLinks(apiError(request, e), links.join());
+        }
+
+        EmailAnalyzeResponse response = withLinks(respond(userId, request, zeroShotResult), links.join());
+
+        // 2. LƯU LỊCH SỬ VÀO DATABASE
+        historyEmailService.saveHistory(user, response);
+        return response;
+    }
+
+    // Phiên bản reactive: JPA chạy trên jpaScheduler, lời gọi Hugging Face hoàn toàn non-blocking
+    public Mono<EmailAnalyzeResponse> analyzeReactive(Long userId, EmailAnalyzeRequest request) {
+        return Mono.fromCallable(() -> analysisMetrics.time(AnalysisMetrics.EMAIL, "user_lookup",
+                        () -> userService.findById(userId)))
+                .subscribeOn(jpaScheduler)
+                .flatMap(userOptional -> userOptional
+                        .map(user -> analyzeForUser(user, request))
+                        .orElseGet(() -> Mono.just(userNotFound(userId, request))));
+    }
+
+    public CacheStatsResponse getCacheStats() {
+        return emailVerdictCache.stats();
+    }
+
+    public SingleFlightStatsResponse getCoalescingStats() {
+        return inFlightClassifications.stats();
+    }
+
+    public LocalModelStatsResponse getLocalModelStats() {
+        return localEmailClassifier.stats();
+    }
+
+    public NearDuplicateStatsResponse getNearDuplicateStats() {
+        return nearDuplicateIndex.stats();
+    }
+
+    public SenderReputationStatsResponse getSenderReputationStats() {
+        return senderReputation.stats();
+    }
+
+    // Rỗng nếu đang có một lần huấn luyện chạy
+    public Optional<LocalModelStatsResponse> trainLocalModel() {
+        return localEmailClassifier.trainInBackground()
+                ? Optional.of(localEmailClassifier.stats())
+                : Optional.empty();
+    }
+
+    /**
+     * Phân tích hàng loạt: tối đa bulkConcurrency email được gửi tới model cùng lúc,
+     * mỗi kết quả được phát ra ngay khi có. Lịch sử được lưu theo lô song song với luồng kết quả.
+     */
+    public Flux<EmailAnalyzeResponse> analyzeBulk(User user, Flux<EmailAnalyzeRequest> requests) {
+        Flux<EmailAnalyzeResponse> results = requests
+                .flatMap(request -> analyzeWithoutSaving(user.getId(), request), bulkConcurrency);
+
+        return results.publish(shared -> Flux.merge(
+                shared,
+                shared.filter(response -> hasVerdict(response))
+                        .bufferTimeout(historyBatchSize, Duration.ofMillis(historyFlushMs))
+                        .concatMap(batch -> Mono.fromRunnable(() -> historyEmailService.saveHistoryBatch(user, batch))
+                                .subscribeOn(jpaScheduler))
+                        .thenMany(Flux.<EmailAnalyzeResponse>empty())
+        ));
+    }
+
+    private Mono<EmailAnalyzeResponse> analyzeForUser(User user, EmailAnalyzeRequest request) {
+        return analyzeWithoutSaving(user.getId(), request)
+                // Lỗi khi gọi AI -> API_ERROR/OVERLOADED, không lưu lịch sử (giống phiên bản đồng bộ)
+                .flatMap(response -> hasVerdict(response)
+                        ? saveHistoryAsync(user, response)
+                        : Mono.just(response));
+    }
+
+    private Mono<EmailAnalyzeResponse> analyzeWithoutSaving(Long userId, EmailAnalyzeRequest request) {
+        return classifyRequest(request)
+                .map(Optional::of)
+                // Mono rỗng nghĩa là phản hồi AI không đúng cấu trúc -> AI_PARSE_ERROR
+                .defaultIfEmpty(Optional.empty())
+                .map(zeroShotResult -> respond(userId, request, zeroShotResult.orElse(null)))
+                .onErrorResume(e -> Mono.just(apiError(request, e)))
+                .zipWith(emailLinkChecker.check(request.getBody()), EmailAnalysisService::withLinks);
+    }
+
+    // Lưu lịch sử trên jpaScheduler để không chặn thread của event loop
+    private Mono<EmailAnalyzeResponse> saveHistoryAsync(User user, EmailAnalyzeResponse response) {
+        return Mono.fromRunnable(() -> historyEmailService.saveHistory(user, response))
+                .subscribeOn(jpaScheduler)
+                .thenReturn(response);
+    }
+
+    // Text gửi cho model: đã bỏ HTML, trích dẫn, chữ ký và cắt theo ngân sách token
+    private String buildText(EmailAnalyzeRequest request) {
+        String text = analysisMetrics.time(AnalysisMetrics.EMAIL, "preprocess", () -> chunkingEnabled
+                // Khi chia đoạn, giữ đủ text cho maxChunks đoạn thay vì cắt theo giới hạn của một lần gọi
+                ? emailTextPreprocessor.prepare(request.getSubject(), request.getBody(), chunkTokens * maxChunks)
+                : emailTextPreprocessor.prepare(request.getSubject(), request.getBody()));
+        analysisMetrics.textLength(AnalysisMetrics.EMAIL, "raw", length(request.getSubject()) + length(request.getBody()));
+        analysisMetrics.textLength(AnalysisMetrics.EMAIL, "prepared", text.length());
+        return text;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    // Người gửi có lịch sử xấu rõ ràng được kết luận ngay, không cần tiền xử lý hay gọi model
+    private Mono<ZeroShotResult> classifyRequest(EmailAnalyzeRequest request) {
+        Optional<ZeroShotResult> reputation = analysisMetrics.time(AnalysisMetrics.EMAIL, "sender_reputation",
+                () -> senderReputation.lookup(request.getSender()));
+        if (reputation.isPresent()) {
+            return Mono.just(reputation.get());
+        }
+        return classifyWithFallback(buildText(request));
+    }
+
+    /**
+     * Chọn nguồn phân loại: chế độ primary dùng thẳng model cục bộ; chế độ fallback gọi Hugging Face
+     * (có timeout) và chỉ chuyển sang model cục bộ khi gặp 429/5xx, lỗi kết nối hoặc timeout.
+     * Khi model cục bộ chưa sẵn sàng, hành vi giữ nguyên như trước (lỗi -> API_ERROR).
+     * Trước tất cả: email gần trùng với một email vừa được model phân tích thì dùng lại kết quả đó.
+     */
+    private Mono<ZeroShotResult> classifyWithFallback(String textToAnalyze) {
+        Optional<ZeroShotResult> nearDuplicate = analysisMetrics.time(AnalysisMetrics.EMAIL, "near_duplicate_lookup",
+                () -> nearDuplicateIndex.find(textToAnalyze));
+        if (nearDuplicate.isPresent()) {
+            return Mono.just(nearDuplicate.get());
+        }
+        if (localEmailClassifier.isPrimary()) {
+            Optional<ZeroShotResult> local = localEmailClassifier.classify(textToAnalyze);
+            if (local.isPresent()) {
+                return Mono.just(local.get());
+            }
+        }
+        Mono<ZeroShotResult> upstream = classifyUpstream(textToAnalyze)
+                .doOnNext(result -> nearDuplicateIndex.record(textToAnalyze, result));
+        if (!localEmailClassifier.isFallbackEnabled()) {
+            return upstream;
+        }
+        return upstream
+                .timeout(localEmailClassifier.getUpstreamTimeout())
+                .onErrorResume(localEmailClassifier::shouldFallback,
+                        e -> Mono.justOrEmpty(localEmailClassifier.classifyAsFallback(textToAnalyze, e))
+                                .switchIfEmpty(Mono.error(e)));
+    }
+
+    // Email ngắn (hoặc khi tắt chia đoạn) vẫn đi đúng một lời gọi như trước
+    private Mono<ZeroShotResult> classifyUpstream(String textToAnalyze) {
+        if (!chunkingEnabled || ApproximateTokenizer.countTokens(textToAnalyze) <= chunkTokens) {
+            return classifyText(textToAnalyze);
+        }
+        List<String> chunks = ApproximateTokenizer.split(textToAnalyze, chunkTokens, chunkOverlapTokens);
+        if (chunks.size() > maxChunks) {
+            chunks = chunks.subList(0, maxChunks);
+        }
+        boolean useMax = !"mean".equalsIgnoreCase(chunkAggregation);
+        // Mỗi đoạn đi qua cache và single-flight riêng; lỗi ở bất kỳ đoạn nào làm cả email lỗi (và có thể chuyển sang model cục bộ)
+        return Flux.fromIterable(chunks)
+                .flatMap(chunk -> classifyText(chunk)
+                        .map(result -> new ChunkResult(result, ApproximateTokenizer.countTokens(chunk))), chunkConcurrency)
+                .collectList()
+                .flatMap(results -> Mono.justOrEmpty(aggregateChunks(results, useMax)));
+    }
+
+    record ChunkResult(ZeroShotResult result, int tokens) {
+    }
+
+    /**
+     * Gộp kết quả các đoạn thành một ZeroShotResult theo thứ tự CANDIDATE_LABELS.
+     * max: điểm cao nhất của nhãn ở bất kỳ đoạn nào (một đoạn phishing là đủ);
+     * mean: trung bình có trọng số theo số token, đoạn ngắn cuối thư ít ảnh hưởng hơn.
+     * Trả về null khi không đoạn nào có kết quả hợp lệ.
+     */
+    static ZeroShotResult aggregateChunks(List<ChunkResult> chunks, boolean useMax) {
+        if (chunks.isEmpty()) {
+            return null;
+        }
+        int labelCount = CANDIDATE_LABELS.size();
+        double[] scores = new double[labelCount];
+        double totalWeight = 0;
+        for (ChunkResult chunk : chunks) {
+            List<String> labels = chunk.result().getLabels();
+            List<Double> chunkScores = chunk.result().getScores();
+            for (int i = 0; i < labels.size(); i++) {
+                int index = CANDIDATE_LABELS.indexOf(labels.get(i));
+                if (index < 0) {
+                    continue;
+                }
+                double score = chunkScores.get(i);
+                scores[index] = useMax ? Math.max(scores[index], score) : scores[index] + score * chunk.tokens();
+            }
+            totalWeight += chunk.tokens();
+        }
+        List<Double> aggregated = new ArrayList<>(labelCount);
+        for (double score : scores) {
+            aggregated.add(useMax || totalWeight == 0 ? score : score / totalWeight);
+        }
+        return new ZeroShotResult(CANDIDATE_LABELS, aggregated, "MODEL");
+    }
+
+    // Một đoạn text: gọi model một lần với đủ 8 nhãn, hoặc hai tầng (nhánh thô rồi nhãn chi tiết) khi bật cascade
+    private Mono<ZeroShotResult> classifyText(String textToAnalyze) {
+        if (!taxonomy.isEnabled()) {
+            return classify(textToAnalyze, CANDIDATE_LABELS, true);
+        }
+        List<String> coarseLabels = taxonomy.getBranches().stream().map(EmailTaxonomyProperties.Branch::getLabel).toList();
+        // Tầng 1 dùng softmax (multi_label=false) vì các nhánh loại trừ nhau; tầng 2 giữ multi_label như chế độ một tầng
+        return classify(textToAnalyze, coarseLabels, false)
+                .flatMap(coarse -> classify(textToAnalyze,
+                        selectFineLabels(taxonomy.getBranches(), coarse, taxonomy.getAmbiguityMargin()), true));
+    }
+
+    /**
+     * Nhãn chi tiết (theo thứ tự CANDIDATE_LABELS) của nhánh có điểm cao nhất, cộng thêm nhánh về nhì
+     * nếu hai nhánh cách nhau ít hơn ambiguityMargin.
+     */
+    static List<String> selectFineLabels(List<EmailTaxonomyProperties.Branch> branches, ZeroShotResult coarse, double ambiguityMargin) {
+        int best = -1;
+        int second = -1;
+        double[] branchScores = new double[branches.size()];
+        for (int i = 0; i < branches.size(); i++) {
+            int index = coarse.getLabels().indexOf(branches.get(i).getLabel());
+            branchScores[i] = index < 0 ? 0.0 : coarse.getScores().get(index);
+            if (best < 0 || branchScores[i] > branchScores[best]) {
+                second = best;
+                best = i;
+            } else if (second < 0 || branchScores[i] > branchScores[second]) {
+                second = i;
+            }
+        }
+        EnumSet<EmailLabel> selected = EnumSet.noneOf(EmailLabel.class);
+        selected.addAll(branches.get(best).getLabels());
+        if (second >= 0 && branchScores[best] - branchScores[second] < ambiguityMargin) {
+            selected.addAll(branches.get(second).getLabels());
+        }
+        return selected.stream().map(EmailLabel::getZeroShotLabel).filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * Gọi model zero-shot cho đoạn text với bộ nhãn cho trước, ưu tiên lấy từ cache.
+     * Trả về Mono rỗng nếu phản hồi không có labels/scores.
+     */
+    private Mono<ZeroShotResult> classify(String textToAnalyze, List<String> candidateLabels, boolean multiLabel) {
+        // Kiểm tra cache trước: email giống hệt (newsletter, campaign...) không cần gọi lại Hugging Face
+        String cacheKey = analysisMetrics.time(AnalysisMetrics.EMAIL, "request_build",
+                () -> emailVerdictCache.buildKey(textToAnalyze, candidateLabels, multiLabelModelId));
+        ZeroShotResult cached = emailVerdictCache.get(cacheKey);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+
+        // Cùng một email được gửi đồng thời (đợt phishing hàng loạt) chỉ gọi Hugging Face một lần;
+        // mỗi user vẫn có kết quả và dòng lịch sử riêng
+        byte[] parameters = zeroShotParameters.computeIfAbsent(multiLabel + String.join("\u0001", candidateLabels),
+                key -> inferenceClient.parametersFragment(Map.of("candidate_labels", candidateLabels, "multi_label", multiLabel)));
+        return inFlightClassifications.execute(cacheKey, () -> inferenceClient
+                .infer(multiLabelModelId, textToAnalyze, parameters, responseTimeout, RESPONSE_TYPE)
+                // Mỗi nhãn ứng viên là một lượt suy luận NLI phía Hugging Face
+                .doOnSubscribe(subscription -> analysisMetrics.hypotheses(AnalysisMetrics.EMAIL, candidateLabels.size()))
+                .filter(result -> result.getLabels() != null && result.getScores() != null
+                        && result.getLabels().size() == result.getScores().size())
+                .map(result -> {
+                    result.setSource("MODEL");
+                    // Chỉ cache các phản hồi hợp lệ
+                    emailVerdictCache.put(cacheKey, result);
+                    return result;
+                })
+                .doOnError(e -> System.err.println("Error calling multi-label AI API: " + e.getMessage())));
+    }
+
+    // Hậu xử lý (có đo thời gian) và đếm kết quả theo nhãn
+    private EmailAnalyzeResponse respond(Long userId, EmailAnalyzeRequest request, ZeroShotResult zeroShotResult) {
+        EmailAnalyzeResponse response = analysisMetrics.time(AnalysisMetrics.EMAIL, "post_process",
+                () -> buildResponse(request, zeroShotResult));
+        analysisMetrics.verdict(AnalysisMetrics.EMAIL, response.getPrimaryPredictionLabel(), response.getVerdictSource());
+        senderReputation.record(userId, response);
+        return response;
+    }
+
+    // Hậu xử lý kết quả zero-shot thành EmailAnalyzeResponse (zeroShotResult == null -> AI_PARSE_ERROR)
+    static EmailAnalyzeResponse buildResponse(EmailAnalyzeRequest request, ZeroShotResult zeroShotResult) {
+        String primaryPredictionLabel;
+        double primaryPredictionScore = 0.0;
+        String verdictSource = "MODEL";
+        List<EmailPrediction> detailedPredictions;
+
+        if (zeroShotResult != null) {
+            verdictSource = zeroShotResult.getSource();
+            List<String> labels = zeroShotResult.getLabels();
+            List<Double> scores = zeroShotResult.getScores();
+
+            // Nhãn được ánh xạ một lần khi tạo mảng; sắp xếp trên double, không cast trong comparator
+            EmailPrediction[] rawPredictions = new EmailPrediction[labels.size()];
+            for (int i = 0; i < rawPredictions.length; i++) {
+                rawPredictions[i] = new EmailPrediction(EmailLabel.fromZeroShotLabel(labels.get(i)).name(), scores.get(i));
+            }
+            Arrays.sort(rawPredictions, PREDICTION_ORDER);
+
+            detailedPredictions = new ArrayList<>(rawPredictions.length);
+            for (EmailPrediction prediction : rawPredictions) {
+                if (prediction.score() > 0.4) {
+                    detailedPredictions.add(prediction);
+                }
+            }
+
+            if (detailedPredictions.isEmpty()) {
+                primaryPredictionLabel = "UNCLEAR";
+                detailedPredictions.add(NO_CLEAR_PREDICTION);
+            } else {
+                primaryPredictionLabel = detailedPredictions.get(0).label();
+                primaryPredictionScore = detailedPredictions.get(0).score();
+            }
+        } else {
+            primaryPredictionLabel = "AI_PARSE_ERROR";
+            detailedPredictions = new ArrayList<>(List.of(AI_RESPONSE_INVALID));
+        }
+
+        return new EmailAnalyzeResponse(
+                request.getSender(),
+                request.getSubject(),
+                request.getBody(),
+                primaryPredictionLabel,
+                primaryPredictionScore,
+                detailedPredictions,
+                completionMessage(verdictSource),
+                verdictSource
+        );
+    }
+
+    /**
+     * Gắn kết quả kiểm tra link vào response. Link độc hại là dấu hiệu phishing rõ hơn nội dung: link MALICIOUS
+     * có confidence cao nhất được gộp vào nhãn PHISHING, và nếu nhãn chính chưa phải PHISHING thì kết luận
+     * chuyển thành PHISHING với nguồn LINK_CHECK (nên không được dùng để huấn luyện model cục bộ).
+     */
+    static EmailAnalyzeResponse withLinks(EmailAnalyzeResponse response, List<LinkCheckResult> links) {
+        if (links.isEmpty()) {
+            return response;
+        }
+        response.setLinks(links);
+        if (!hasVerdict(response) || response.getDetailedPredictions() == null) {
+            return response;
+        }
+        LinkCheckResult worst = null;
+        for (LinkCheckResult link : links) {
+            if ("MALICIOUS".equals(link.getStatus()) && (worst == null || link.getConfidence() > worst.getConfidence())) {
+                worst = link;
+            }
+        }
+        if (worst == null) {
+            return response;
+        }
+        String phishing = EmailLabel.PHISHING.name();
+        double score = worst.getConfidence();
+        List<EmailPrediction> predictions = new ArrayList<>(response.getDetailedPredictions().size() + 1);
+        for (EmailPrediction prediction : response.getDetailedPredictions()) {
+            if (phishing.equals(prediction.label())) {
+                score = Math.max(score, prediction.score());
+            } else if (!NO_CLEAR_PREDICTION.equals(prediction) && !AI_RESPONSE_INVALID.equals(prediction)) {
+                predictions.add(prediction);
+            }
+        }
+        predictions.add(new EmailPrediction(phishing, score));
+        predictions.sort(PREDICTION_ORDER);
+        response.setDetailedPredictions(predictions);
+        if (!phishing.equals(response.getPrimaryPredictionLabel())) {
+            response.setPrimaryPredictionLabel(phishing);
+            response.setVerdictSource(LINK_CHECK_SOURCE);
+        }
+        response.setPrimaryPredictionScore(score);
+        response.setMessage(response.getMessage() + " Link to " + worst.getHost() + " is classified as MALICIOUS.");
+        return response;
+    }
+
+    private static String completionMessage(String verdictSource) {
+        if (LocalEmailClassifier.SOURCE.equals(verdictSource)) {
+            return "Email analysis complete (local model, AI service unavailable).";
+        }
+        if (NearDuplicateVerdictIndex.SOURCE.equals(verdictSource)) {
+            return "Email analysis complete (matched a recently analyzed near-duplicate email).";
+        }
+        if (SenderReputationService.SOURCE.equals(verdictSource)) {
+            return "Email analysis complete (sender has a consistent history with this verdict).";
+        }
+        return "Email analysis complete.";
+    }
+
+    private EmailAnalyzeResponse userNotFound(Long userId, EmailAnalyzeRequest request) {
+        return new EmailAnalyzeResponse(
+                request.getSender(), request.getSubject(), request.getBody(),
+                "USER_NOT_FOUND", 0.0, null, "User with ID " + userId + " not found.", null
+        );
+    }
+
+    // API_ERROR và OVERLOADED không phải kết luận của model nên không được lưu vào lịch sử
+    private static boolean hasVerdict(EmailAnalyzeResponse response) {
+        return !"API_ERROR".equals(response.getPrimaryPredictionLabel())
+                && !"OVERLOADED".equals(response.getPrimaryPredictionLabel());
+    }
+
+    private EmailAnalyzeResponse apiError(EmailAnalyzeRequest request, Throwable e) {
+        analysisMetrics.error(AnalysisMetrics.EMAIL, e);
+        if (e instanceof UpstreamOverloadedException) {
+            // Bị từ chối ngay tại chỗ, không có request nào tới Hugging Face: client nên thử lại sau
+            return new EmailAnalyzeResponse(
+                    request.getSender(), request.getSubject(), request.getBody(),
+                    "OVERLOADED", 0.0, null, "AI service is overloaded, please try again later. " + e.getMessage(), null
+            );
+        }
+        return new EmailAnalyzeResponse(
+                request.getSender(), request.getSubject(), request.getBody(),
+                "API_ERROR", 0.0, null, "Failed to analyze email with AI: " + e.getMessage(), null
+        );
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.restfulapi01.service;
+
+import com.example.restfulapi01.payload.LinkCheckResult;
+import com.example.restfulapi01.preprocess.LinkExtractor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Kiểm tra các link trong email qua đúng đường kiểm tra domain (blocklist, cache, đánh giá cục bộ, model URL):
+ * mỗi host một lần, tối đa concurrency host cùng lúc cho một email, và dừng chờ khi hết deadline-ms.
+ * Host chưa có kết quả lúc hết hạn được trả về với status TIMEOUT (lần kiểm tra vẫn chạy tiếp và vào cache).
+ */
+@Service
+public class EmailLinkChecker {
+
+    public static final String TIMEOUT = "TIMEOUT";
+
+    @Value("${analysis.links.enabled:true}")
+    private boolean enabled;
+
+    @Value("${analysis.links.max-links:10}")
+    private int maxLinks;
+
+    @Value("${analysis.links.concurrency:4}")
+    private int concurrency;
+
+    @Value("${analysis.links.deadline-ms:3000}")
+    private long deadlineMs;
+
+    private final DomainCheckService domainCheckService;
+    private final AnalysisMetrics analysisMetrics;
+
+    public EmailLinkChecker(DomainCheckService domainCheckService, AnalysisMetrics analysisMetrics) {
+        this.domainCheckService = domainCheckService;
+        this.analysisMetrics = analysisMetrics;
+    }
+
+    /** Kết quả theo thứ tự xuất hiện của host trong email; danh sách rỗng khi không có link hoặc tắt tính năng. */
+    public Mono<List<LinkCheckResult>> check(String body) {
+        if (!enabled) {
+            return Mono.just(List.of());
+        }
+        List<LinkExtractor.Link> links = analysisMetrics.time(AnalysisMetrics.EMAIL, "link_extract",
+                () -> LinkExtractor.extract(body, maxLinks));
+        if (links.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        Mono<Map<String, LinkCheckResult>> checked = Flux.fromIterable(links)
+                .flatMap(link -> domainCheckService.checkDomainSafetyReactive(link.url())
+                        .map(response -> new LinkCheckResult(link.host(), link.url(), response.getStatus(), response.getConfidence()))
+                        .onErrorResume(e -> Mono.just(new LinkCheckResult(link.host(), link.url(), "ERROR", 0.0))), concurrency)
+                .take(Duration.ofMillis(deadlineMs))
+                .collectMap(LinkCheckResult::getHost);
+        return analysisMetrics.timeMono(AnalysisMetrics.EMAIL, "link_check", checked)
+                .map(results -> {
+                    List<LinkCheckResult> ordered = new ArrayList<>(links.size());
+                    for (LinkExtractor.Link link : links) {
+                        LinkCheckResult result = results.get(link.host());
+                        ordered.add(result != null ? result : new LinkCheckResult(link.host(), link.url(), TIMEOUT, 0.0));
+                    }
+                    return ordered;
+                });
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.restfulapi01.service;
+
+import com.example.restfulapi01.preprocess.ApproximateTokenizer;
+import com.example.restfulapi01.preprocess.EmailTextCleaner;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Chuẩn bị text gửi cho model phân loại email: làm sạch subject/body (EmailTextCleaner) rồi cắt theo
+ * ngân sách token ước lượng. BART-MNLI chỉ đọc tối đa 1024 token, phần dư chỉ tốn băng thông và thời gian.
+ * Cache key, single-flight và model cục bộ đều dùng text đã chuẩn bị, nên hai email chỉ khác markup/chữ ký
+ * sẽ dùng chung một kết quả.
+ */
+@Service
+public class EmailTextPreprocessor {
+
+    private static final int CHARS_PER_TOKEN_UPPER_BOUND = 16;
+
+    @Value("${analysis.preprocess.enabled:true}")
+    private boolean enabled;
+
+    @Value("${analysis.preprocess.max-tokens:512}")
+    private int maxTokens;
+
+    public String prepare(String subject, String body) {
+        return prepare(subject, body, maxTokens);
+    }
+
+    // Ngân sách token riêng, dùng khi text sẽ được chia thành nhiều đoạn trước khi gọi model
+    public String prepare(String subject, String body, int tokenBudget) {
+        if (!enabled) {
+            return subject + " " + body;
+        }
+        // Một token hiếm khi dài hơn 16 ký tự nguồn kể cả markup đã bỏ, nên phần sau giới hạn này chắc chắn bị cắt
+        int maxChars = tokenBudget * CHARS_PER_TOKEN_UPPER_BOUND;
+        String text = EmailTextCleaner.clean(subject, maxChars) + " " + EmailTextCleaner.clean(body, maxChars);
+        return ApproximateTokenizer.truncate(text.strip(), tokenBudget);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.restfulapi01.service;
+
+import com.example.restfulapi01.cache.BoundedTtlCache;
+import com.example.restfulapi01.payload.CacheStatsResponse;
+import com.example.restfulapi01.payload.ZeroShotResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Cache kết quả zero-shot theo hash nội dung email.
+ * Khóa = SHA-256(text đã chuẩn hóa + tập nhãn ứng viên + model id), nên đổi nhãn hoặc model sẽ tự động miss.
+ */
+@Service
+public class EmailVerdictCache {
+
+    private final BoundedTtlCache<String, ZeroShotResult> cache;
+
+    public EmailVerdictCache(@Value("${analysis.cache.max-size:10000}") int maxSize,
+                             @Value("${analysis.cache.ttl-minutes:60}") long ttlMinutes) {
+        this.cache = new BoundedTtlCache<>(maxSize, Duration.ofMinutes(ttlMinutes));
+    }
+
+    public String buildKey(String text, List<String> candidateLabels, String modelId) {
+        StringBuilder sb = new StringBuilder(text.length() + 256);
+        sb.append(normalize(text)).append('\u0000');
+        // Sắp xếp nhãn để thứ tự khai báo không ảnh hưởng tới khóa
+        for (String label : new TreeSet<>(candidateLabels)) {
+            sb.append(label).append('\u0001');
+        }
+        sb.append('\u0000').append(modelId);
+        return sha256Hex(sb.toString());
+    }
+
+    public ZeroShotResult get(String key) {
+        return cache.get(key);
+    }
+
+    public void put(String key, ZeroShotResult result) {
+        cache.put(key, result);
+    }
+
+    public CacheStatsResponse stats() {
+        return cache.stats();
+    }
+
+    // Chuẩn hóa: bỏ khoảng trắng đầu/cuối và gộp các khoảng trắng liên tiếp thành một
+    static String normalize(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = sb.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    sb.append(' ');
+                    pendingSpace = false;
+                }
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String sha256Hex(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -3,14 +3,28 @@ package com.example.restfulapi01.service;
 import com.example.restfulapi01.model.HistoryEmailCreated;
 import com.example.restfulapi01.model.User;
 import com.example.restfulapi01.dto.HistoryEmailDTO;
+import com.example.restfulapi01.dto.HistoryEmailSummaryDTO;
+import com.example.restfulapi01.dto.HistoryPageDTO;
 import com.example.restfulapi01.payload.EmailAnalyzeResponse;
+import com.example.restfulapi01.payload.EmailPrediction;
 import com.example.restfulapi01.repository.HistoryEmailCreatedRepository;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
@@ -22,25 +36,99 @@ public class HistoryEmailService {
     @Autowired
     private ObjectMapper objectMapper; // Để xử lý JSON
 
-    public HistoryEmailCreated saveHistory(User user, EmailAnalyzeResponse analysisResponse) {
+    @Autowired
+    private HistoryWriteBehindService historyWriteBehindService;
+
+    @Autowired
+    private AnalysisMetrics analysisMetrics;
+
+    @Value("${history.write-behind.enabled:true}")
+    private boolean writeBehindEnabled;
+
+    // Reader/writer cho detailedPredictions được tạo một lần thay vì dựng lại kiểu List<...> ở mỗi dòng
+    private ObjectReader predictionsReader;
+    private ObjectWriter predictionsWriter;
+
+    @PostConstruct
+    void initPredictionCodecs() {
+        JavaType predictionListType = objectMapper.getTypeFactory().constructCollectionType(List.class, EmailPrediction.class);
+        predictionsReader = objectMapper.readerFor(predictionListType);
+        predictionsWriter = objectMapper.writerFor(predictionListType);
+    }
+
+    // Khi bật write-behind, lịch sử chỉ được đưa vào hàng đợi và ghi xuống DB theo lô ở thread nền
+    public void saveHistory(User user, EmailAnalyzeResponse analysisResponse) {
+        long start = System.nanoTime();
         try {
-            // Chuyển detailedPredictions List<Map<String, Object>> thành JSON string để lưu vào DB
-            String detailedPredictionsJson = objectMapper.writeValueAsString(analysisResponse.getDetailedPredictions());
-
-            HistoryEmailCreated history = new HistoryEmailCreated(
-                    user,
-                    analysisResponse.getSender(),
-                    analysisResponse.getSubject(),
-                    analysisResponse.getBody(),
-                    analysisResponse.getPrimaryPredictionLabel(),
-                    analysisResponse.getPrimaryPredictionScore(),
-                    detailedPredictionsJson
-            );
-            return historyEmailCreatedRepository.save(history);
+            if (writeBehindEnabled) {
+                historyWriteBehindService.enqueue(toPendingHistory(user, analysisResponse));
+            } else {
+                historyEmailCreatedRepository.save(toEntity(user, analysisResponse));
+            }
+            // Với write-behind đây là thời gian đưa vào hàng đợi; thời gian INSERT thật là stage history_batch_insert
+            analysisMetrics.record(AnalysisMetrics.EMAIL, "history_insert", System.nanoTime() - start);
         } catch (JsonProcessingException e) {
             System.err.println("Error converting detailed predictions to JSON: " + e.getMessage());
-            // Có thể throw exception hoặc trả về null tùy thuộc vào logic xử lý lỗi mong muốn
-            return null;
+        }
+    }
+
+    // Lưu nhiều kết quả phân tích cùng lúc (dùng cho endpoint bulk)
+    @Transactional
+    public void saveHistoryBatch(User user, List<EmailAnalyzeResponse> analysisResponses) {
+        List<HistoryEmailCreated> histories = new ArrayList<>(analysisResponses.size());
+        for (EmailAnalyzeResponse analysisResponse : analysisResponses) {
+            try {
+                if (writeBehindEnabled) {
+                    historyWriteBehindService.enqueue(toPendingHistory(user, analysisResponse));
+                } else {
+                    histories.add(toEntity(user, analysisResponse));
+                }
+            } catch (JsonProcessingException e) {
+                System.err.println("Error converting detailed predictions to JSON: " + e.getMessage());
+            }
+        }
+        if (!histories.isEmpty()) {
+            historyEmailCreatedRepository.saveAll(histories);
+        }
+    }
+
+    private HistoryWriteBehindService.PendingHistory toPendingHistory(User user, EmailAnalyzeResponse analysisResponse) throws JsonProcessingException {
+        return new HistoryWriteBehindService.PendingHistory(
+                user.getId(),
+                analysisResponse.getSender(),
+                analysisResponse.getSubject(),
+                analysisResponse.getBody(),
+                analysisResponse.getPrimaryPredictionLabel(),
+                analysisResponse.getPrimaryPredictionScore(),
+                serializePredictions(analysisResponse),
+                LocalDateTime.now(),
+                analysisResponse.getVerdictSource()
+        );
+    }
+
+    private HistoryEmailCreated toEntity(User user, EmailAnalyzeResponse analysisResponse) throws JsonProcessingException {
+        // Chuyển detailedPredictions List<Map<String, Object>> thành JSON string để lưu vào DB
+        String detailedPredictionsJson = serializePredictions(analysisResponse);
+
+        HistoryEmailCreated history = new HistoryEmailCreated(
+                user,
+                analysisResponse.getSender(),
+                analysisResponse.getSubject(),
+                analysisResponse.getBody(),
+                analysisResponse.getPrimaryPredictionLabel(),
+                analysisResponse.getPrimaryPredictionScore(),
+                detailedPredictionsJson
+        );
+        history.setVerdictSource(analysisResponse.getVerdictSource());
+        return history;
+    }
+
+    String serializePredictions(EmailAnalyzeResponse analysisResponse) throws JsonProcessingException {
+        long start = System.nanoTime();
+        try {
+            return predictionsWriter.writeValueAsString(analysisResponse.getDetailedPredictions());
+        } finally {
+            analysisMetrics.record(AnalysisMetrics.EMAIL, "serialize_predictions", System.nanoTime() - start);
         }
     }
 
@@ -51,20 +139,43 @@ public class HistoryEmailService {
                 .collect(Collectors.toList());
     }
 
-    // Helper method để chuyển đổi Entity sang DTO
-    private HistoryEmailDTO convertToDto(HistoryEmailCreated entity) {
-        List<java.util.Map<String, Object>> detailedPredictions = null;
-        if (entity.getDetailedPredictionsJson() != null) {
-            try {
-                detailedPredictions = objectMapper.readValue(entity.getDetailedPredictionsJson(),
-                        objectMapper.getTypeFactory().constructCollectionType(List.class, java.util.Map.class));
-            } catch (JsonProcessingException e) {
-                System.err.println("Error parsing detailed predictions JSON from DB: " + e.getMessage());
-                // Set về null hoặc list rỗng nếu parsing lỗi
-                detailedPredictions = List.of();
-            }
+    /**
+     * Lấy một trang lịch sử (mới nhất trước) theo keyset (analysisTime, id).
+     * Chỉ đọc các cột tóm tắt, không có body và không nạp entity User.
+     */
+    public HistoryPageDTO getHistoryPage(Long userId, LocalDateTime beforeTime, Long beforeId, int limit) {
+        // Lấy dư 1 dòng để biết còn trang sau hay không
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        List<HistoryEmailSummaryDTO> rows = (beforeTime == null || beforeId == null)
+                ? historyEmailCreatedRepository.findSummaries(userId, pageable)
+                : historyEmailCreatedRepository.findSummariesBefore(userId, beforeTime, beforeId, pageable);
+
+        if (rows.size() <= limit) {
+            return new HistoryPageDTO(rows, null, null);
         }
+        List<HistoryEmailSummaryDTO> items = rows.subList(0, limit);
+        HistoryEmailSummaryDTO last = items.get(items.size() - 1);
+        return new HistoryPageDTO(items, last.getAnalysisTime(), last.getId());
+    }
+
+    // Chi tiết một dòng lịch sử (có body và detailedPredictions) của đúng người dùng
+    public Optional<HistoryEmailDTO> getHistoryDetail(Long userId, Long historyId) {
+        return historyEmailCreatedRepository.findDetailById(historyId, userId)
+                .map(view -> new HistoryEmailDTO(
+                        view.getId(),
+                        view.getSender(),
+                        view.getSubject(),
+                        view.getBody(),
+                        view.getPrimaryPredictionLabel(),
+                        view.getPrimaryPredictionScore(),
+                        parseDetailedPredictions(view.getDetailedPredictionsJson()),
+                        view.getAnalysisTime(),
+                        view.getUserId()
+                ));
+    }
 
+    // Helper method để chuyển đổi Entity sang DTO
+    HistoryEmailDTO convertToDto(HistoryEmailCreated entity) {
         return new HistoryEmailDTO(
                 entity.getId(),
                 entity.getSender(),
@@ -72,9 +183,22 @@ public class HistoryEmailService {
                 entity.getBody(),
                 entity.getPrimaryPredictionLabel(),
                 entity.getPrimaryPredictionScore(),
-                detailedPredictions,
+                parseDetailedPredictions(entity.getDetailedPredictionsJson()),
                 entity.getAnalysisTime(),
                 entity.getUser().getId()
         );
     }
+
+    private List<EmailPrediction> parseDetailedPredictions(String detailedPredictionsJson) {
+        if (detailedPredictionsJson == null) {
+            return null;
+        }
+        try {
+            return predictionsReader.readValue(detailedPredictionsJson);
+        } catch (JsonProcessingException e) {
+            System.err.println("Error parsing detailed predictions JSON from DB: " + e.getMessage());
+            // Set về null hoặc list rỗng nếu parsing lỗi
+            return List.of();
+        }
+    }
 }
\ No newline at end of file
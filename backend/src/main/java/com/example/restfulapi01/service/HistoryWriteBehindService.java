@@ -0,0 +1,208 @@
+package com.example.restfulapi01.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ghi lịch sử phân tích theo kiểu write-behind: request chỉ đưa bản ghi vào hàng đợi,
+ * một thread nền gom lại và insert theo lô bằng JDBC batch.
+ *
+ * Không đi qua Hibernate vì HistoryEmailCreated dùng GenerationType.IDENTITY, khiến Hibernate
+ * phải insert từng dòng. Với JDBC batch + rewriteBatchedStatements=true, MySQL nhận một câu
+ * INSERT nhiều dòng và vẫn tự sinh id bằng AUTO_INCREMENT như cũ.
+ */
+@Service
+public class HistoryWriteBehindService {
+
+    private static final String INSERT_SQL = "INSERT INTO history_email_created "
+            + "(user_id, sender, subject, body, primary_prediction_label, primary_prediction_score, "
+            + "detailed_predictions_json, analysis_time, verdict_source) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingQueue<PendingHistory> queue;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long offerTimeoutMs;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong writtenByCaller = new AtomicLong();
+
+    private Thread writer;
+    private volatile boolean running;
+
+    private final AnalysisMetrics analysisMetrics;
+
+    public HistoryWriteBehindService(JdbcTemplate jdbcTemplate,
+                                     AnalysisMetrics analysisMetrics,
+                                     @Value("${history.write-behind.queue-capacity:10000}") int queueCapacity,
+                                     @Value("${history.write-behind.batch-size:200}") int batchSize,
+                                     @Value("${history.write-behind.flush-interval-ms:200}") long flushIntervalMs,
+                                     @Value("${history.write-behind.offer-timeout-ms:50}") long offerTimeoutMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.analysisMetrics = analysisMetrics;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        analysisMetrics.gauge("history.write-behind.queue.size", queue, BlockingQueue::size);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.offerTimeoutMs = offerTimeoutMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer = new Thread(this::writeLoop, "history-writer");
+        writer.start();
+    }
+
+    /**
+     * Đưa bản ghi vào hàng đợi. Khi hàng đợi đầy, caller phải chờ tối đa offer-timeout-ms (backpressure);
+     * nếu vẫn đầy thì tự ghi trực tiếp để không mất dữ liệu.
+     */
+    public void enqueue(PendingHistory history) {
+        boolean accepted = false;
+        if (running) {
+            try {
+                accepted = queue.offer(history, offerTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!accepted) {
+            writtenByCaller.incrementAndGet();
+            writeBatch(List.of(history));
+        }
+    }
+
+    // Flush toàn bộ hàng đợi trước khi ứng dụng tắt. Không interrupt writer: nếu interrupt rơi vào lúc writer đang
+    // lấy kết nối, Hikari làm hỏng cả lô (và cả lần ghi lại từng dòng trên cùng thread). Writer tự thấy running = false
+    // sau lô hiện tại hoặc sau tối đa flush-interval-ms.
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+            if (writer.isAlive()) {
+                System.err.println("History writer did not stop within 30 s, flushing the queue from the shutdown thread");
+            }
+        }
+        List<PendingHistory> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (int from = 0; from < remaining.size(); from += batchSize) {
+            writeBatch(remaining.subList(from, Math.min(from + batchSize, remaining.size())));
+        }
+        System.out.println("History writer stopped. Rows written: " + written.get() + ", failed: " + failed.get());
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getWrittenByCallerCount() {
+        return writtenByCaller.get();
+    }
+
+    private void writeLoop() {
+        List<PendingHistory> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                PendingHistory first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                // Không do shutdown() gây ra; shutdown() vẫn flush phần còn lại trong hàng đợi
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                System.err.println("Unexpected error in history writer: " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<PendingHistory> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), this::bind);
+            written.addAndGet(batch.size());
+            analysisMetrics.record(AnalysisMetrics.EMAIL, "history_batch_insert", System.nanoTime() - start);
+        } catch (DataAccessException e) {
+            System.err.println("Batch insert of " + batch.size() + " history rows failed, retrying row by row: " + e.getMessage());
+            // Ghi lại từng dòng để một dòng lỗi không làm mất cả lô
+            for (PendingHistory history : batch) {
+                try {
+                    jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, history));
+                    written.incrementAndGet();
+                } catch (DataAccessException rowError) {
+                    failed.incrementAndGet();
+                    System.err.println("Dropping history row for user " + history.getUserId() + ": " + rowError.getMessage());
+                }
+            }
+        }
+    }
+
+    private void bind(PreparedStatement ps, PendingHistory history) throws SQLException {
+        ps.setLong(1, history.getUserId());
+        ps.setString(2, history.getSender());
+        ps.setString(3, history.getSubject());
+        ps.setString(4, history.getBody());
+        ps.setString(5, history.getPrimaryPredictionLabel());
+        if (history.getPrimaryPredictionScore() == null) {
+            ps.setNull(6, Types.DOUBLE);
+        } else {
+            ps.setDouble(6, history.getPrimaryPredictionScore());
+        }
+        ps.setString(7, history.getDetailedPredictionsJson());
+        ps.setTimestamp(8, Timestamp.valueOf(history.getAnalysisTime()));
+        ps.setString(9, history.getVerdictSource());
+    }
+
+    // Bản ghi chờ ghi xuống DB; chỉ giữ userId thay vì entity User để không phụ thuộc session JPA
+    @Data
+    @AllArgsConstructor
+    public static class PendingHistory {
+        private Long userId;
+        private String sender;
+        private String subject;
+        private String body;
+        private String primaryPredictionLabel;
+        private Double primaryPredictionScore;
+        private String detailedPredictionsJson;
+        private LocalDateTime analysisTime;
+        private String verdictSource;
+    }
+}
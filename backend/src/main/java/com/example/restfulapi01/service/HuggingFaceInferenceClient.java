@@ -0,0 +1,610 @@
+package com.example.restfulapi01.service;
+
+import com.example.restfulapi01.payload.ConnectionPoolStats;
+import com.example.restfulapi01.payload.InferenceClientStatsResponse;
+import com.example.restfulapi01.payload.ModelLatencyStats;
+import com.example.restfulapi01.resilience.AimdLimiter;
+import com.example.restfulapi01.resilience.CircuitBreaker;
+import com.example.restfulapi01.resilience.ModelReadiness;
+import com.example.restfulapi01.resilience.UpstreamOverloadedException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.HttpClientRequest;
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.util.retry.Retry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client dùng chung cho mọi lời gọi Hugging Face Inference API (phân tích email và kiểm tra domain).
+ * - Một pool kết nối Reactor Netty được tinh chỉnh: giới hạn số kết nối, hàng đợi chờ kết nối,
+ *   đóng kết nối nhàn rỗi ở thread nền, connect timeout.
+ * - Response timeout riêng cho từng lời gọi (model lớn như BART-MNLI chậm hơn nhiều model URL).
+ * - Nén HTTP (Accept-Encoding: gzip) và body JSON được ghép từ phần "parameters" đã serialize sẵn.
+ * - Bảo vệ theo từng model: giới hạn đồng thời AIMD + circuit breaker; request vượt giới hạn bị từ chối
+ *   ngay bằng UpstreamOverloadedException thay vì giữ thread chờ. Lỗi tạm thời (429, 502/503/504, lỗi kết nối)
+ *   được thử lại với backoff có jitter, tôn trọng header Retry-After.
+ * - Cold start: khi model trả 503 "is currently loading", các request chờ chung trên ModelReadiness của model
+ *   (tối đa max-park-ms, mỗi request chờ nhiều nhất một lần) trong khi một probe duy nhất gọi thử cho tới khi model
+ *   nạp xong, rồi mới gửi lại. Quá max-parked request đang chờ thì request mới bị từ chối ngay (OVERLOADED).
+ * - Thống kê pool, độ trễ và trạng thái bảo vệ theo model cho GET /api/inference/stats.
+ */
+@Service
+public class HuggingFaceInferenceClient {
+
+    private static final byte[] INPUTS_PREFIX = "{\"inputs\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] OBJECT_END = "}".getBytes(StandardCharsets.UTF_8);
+
+    // Giới hạn đồng thời AIMD theo model
+    @Value("${huggingface.resilience.limit.initial:20}")
+    private int initialLimit = 20;
+    @Value("${huggingface.resilience.limit.min:2}")
+    private int minLimit = 2;
+    @Value("${huggingface.resilience.limit.max:100}")
+    private int maxLimit = 100;
+    @Value("${huggingface.resilience.limit.backoff-ratio:0.9}")
+    private double backoffRatio = 0.9;
+    @Value("${huggingface.resilience.limit.latency-tolerance:2.0}")
+    private double latencyTolerance = 2.0;
+
+    // Circuit breaker theo model
+    @Value("${huggingface.resilience.breaker.window-size:50}")
+    private int breakerWindowSize = 50;
+    @Value("${huggingface.resilience.breaker.failure-rate-threshold:0.5}")
+    private double breakerFailureRateThreshold = 0.5;
+    @Value("${huggingface.resilience.breaker.minimum-calls:20}")
+    private int breakerMinimumCalls = 20;
+    @Value("${huggingface.resilience.breaker.open-ms:10000}")
+    private long breakerOpenMs = 10000;
+    @Value("${huggingface.resilience.breaker.half-open-probes:3}")
+    private int breakerHalfOpenProbes = 3;
+
+    // Retry với backoff + jitter
+    @Value("${huggingface.resilience.retry.max-retries:2}")
+    private int maxRetries = 2;
+    @Value("${huggingface.resilience.retry.base-backoff-ms:200}")
+    private long baseBackoffMs = 200;
+    @Value("${huggingface.resilience.retry.max-backoff-ms:2000}")
+    private long maxBackoffMs = 2000;
+    // Retry-After lớn hơn mức này thì không chờ mà trả lỗi ngay
+    @Value("${huggingface.resilience.retry.max-retry-after-ms:5000}")
+    private long maxRetryAfterMs = 5000;
+
+    // Cold start: thời gian tối đa một request chờ model nạp xong, khoảng cách giữa các probe, và thời gian tối đa cho probe
+    @Value("${huggingface.cold-start.max-park-ms:30000}")
+    private long maxParkMs = 30000;
+    // Số request tối đa được chờ cùng lúc cho một model: chờ nằm ngoài limiter, nên cần giới hạn riêng
+    // để cold start không giữ hết thread của Tomcat (các endpoint đồng bộ gọi .block())
+    @Value("${huggingface.cold-start.max-parked:20}")
+    private int maxParked = 20;
+    @Value("${huggingface.cold-start.probe-interval-ms:3000}")
+    private long loadingProbeIntervalMs = 3000;
+    @Value("${huggingface.cold-start.max-loading-ms:180000}")
+    private long maxLoadingMs = 180000;
+
+    private static final ParameterizedTypeReference<String> PROBE_RESPONSE_TYPE = new ParameterizedTypeReference<>() {};
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final ConnectionProvider connectionProvider;
+    private final WebClient webClient;
+    private final String baseUrl;
+
+    private final Map<String, URI> modelUris = new ConcurrentHashMap<>();
+    private final Map<String, ModelStats> modelStats = new ConcurrentHashMap<>();
+    private final Map<String, ModelGuard> modelGuards = new ConcurrentHashMap<>();
+    private final Map<String, ModelReadiness> modelReadiness = new ConcurrentHashMap<>();
+    private final Map<String, WarmupProbe> warmupProbes = new ConcurrentHashMap<>();
+    private final Map<TimerKey, Timer> inferenceTimers = new ConcurrentHashMap<>();
+    private final Map<SocketAddress, ConnectionPoolMetrics> poolMetrics = new ConcurrentHashMap<>();
+    private final Map<SocketAddress, List<Meter>> poolMeters = new ConcurrentHashMap<>();
+
+    public HuggingFaceInferenceClient(WebClient.Builder webClientBuilder,
+                                      ObjectMapper objectMapper,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${huggingface.api.url}") String baseUrl,
+                                      @Value("${huggingface.api.token}") String apiToken,
+                                      @Value("${huggingface.client.max-connections:100}") int maxConnections,
+                                      @Value("${huggingface.client.pending-acquire-max:1000}") int pendingAcquireMax,
+                                      @Value("${huggingface.client.pending-acquire-timeout-ms:5000}") long pendingAcquireTimeoutMs,
+                                      @Value("${huggingface.client.max-idle-ms:30000}") long maxIdleMs,
+                                      @Value("${huggingface.client.max-life-ms:300000}") long maxLifeMs,
+                                      @Value("${huggingface.client.connect-timeout-ms:3000}") int connectTimeoutMs) {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+
+        this.connectionProvider = ConnectionProvider.builder("huggingface")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMax)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                // Đóng kết nối nhàn rỗi trước khi phía server/LB cắt, tránh lỗi "connection reset" ở request kế tiếp
+                .maxIdleTime(Duration.ofMillis(maxIdleMs))
+                .maxLifeTime(Duration.ofMillis(maxLifeMs))
+                .evictInBackground(Duration.ofSeconds(30))
+                .metrics(true, () -> new PoolMetricsRegistrar())
+                .build();
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .compress(true);
+
+        this.webClient = webClientBuilder
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiToken)
+                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        connectionProvider.dispose();
+    }
+
+    /**
+     * Serialize sẵn phần ",\"parameters\":{...}}" cho các tham số không đổi giữa các request
+     * (ví dụ candidate_labels của model zero-shot), để mỗi request chỉ còn phải serialize input.
+     */
+    public byte[] parametersFragment(Object parameters) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(",\"parameters\":".getBytes(StandardCharsets.UTF_8));
+            out.write(objectMapper.writeValueAsBytes(parameters));
+            out.write(OBJECT_END);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot serialize inference parameters", e);
+        }
+    }
+
+    /**
+     * POST {"inputs": inputs, "parameters": ...} tới model. inputs có thể là một chuỗi hoặc danh sách chuỗi (batch).
+     * parametersFragment lấy từ parametersFragment(), hoặc null nếu model không cần parameters.
+     */
+    public <T> Mono<T> infer(String modelId, Object inputs, byte[] parametersFragment,
+                             Duration responseTimeout, ParameterizedTypeReference<T> responseType) {
+        byte[] body;
+        try {
+            body = buildBody(inputs, parametersFragment);
+        } catch (JsonProcessingException e) {
+            return Mono.error(e);
+        }
+        URI uri = modelUris.computeIfAbsent(modelId, id -> URI.create(baseUrl + id));
+        ModelStats stats = modelStats.computeIfAbsent(modelId, id -> new ModelStats());
+        ModelGuard guard = modelGuards.computeIfAbsent(modelId, this::newGuard);
+        ModelReadiness readiness = readiness(modelId);
+
+        return Mono.defer(() -> {
+            // Mỗi request chỉ chờ model nạp nhiều nhất một lần, dù là trước lần gọi đầu hay sau một 503 "loading"
+            AtomicBoolean parked = new AtomicBoolean();
+
+            // Model đang nạp: chờ chung trên readiness thay vì gọi (và nhận 503) ngay
+            Mono<T> attempt = Mono.defer(() -> readiness.isReady() || !parked.compareAndSet(false, true)
+                    ? send(modelId, uri, body, responseTimeout, responseType, stats, guard, readiness)
+                    : parkUntilReady(modelId, guard, readiness)
+                            .then(send(modelId, uri, body, responseTimeout, responseType, stats, guard, readiness)));
+
+            return attempt.retryWhen(Retry.from(signals -> signals.concatMap(signal -> {
+                // 503 "loading": chờ probe báo model sẵn sàng rồi gửi lại, thay vì backoff độc lập từng request
+                if (isModelLoading(signal.failure()) && warmupProbes.containsKey(modelId)) {
+                    onModelLoading(modelId, readiness, signal.failure());
+                    if (signal.totalRetries() >= maxRetries || !parked.compareAndSet(false, true)) {
+                        return Mono.error(new UpstreamOverloadedException(modelId, "model is still loading"));
+                    }
+                    guard.retries.increment();
+                    return parkUntilReady(modelId, guard, readiness).thenReturn(0L);
+                }
+                Duration delay = retryDelay(signal.failure(), signal.totalRetries());
+                if (delay == null) {
+                    return Mono.error(signal.failure());
+                }
+                guard.retries.increment();
+                return Mono.delay(delay);
+            })));
+        });
+    }
+
+    // Một lần gọi thật tới model (qua limiter và circuit breaker), không retry
+    private <T> Mono<T> send(String modelId, URI uri, byte[] body, Duration responseTimeout,
+                             ParameterizedTypeReference<T> responseType, ModelStats stats, ModelGuard guard,
+                             ModelReadiness readiness) {
+        return Mono.defer(() -> {
+            // Từ chối ngay khi model đang quá tải: không chiếm kết nối, không giữ thread của caller
+            if (!guard.limiter.tryAcquire()) {
+                guard.rejected.increment();
+                return Mono.error(new UpstreamOverloadedException(modelId,
+                        "concurrency limit " + guard.limiter.getLimit() + " reached"));
+            }
+            long permit = guard.breaker.tryAcquire();
+            if (permit == CircuitBreaker.REJECTED) {
+                guard.limiter.onIgnored();
+                guard.rejected.increment();
+                return Mono.error(new UpstreamOverloadedException(modelId, "circuit breaker is open"));
+            }
+            long start = System.nanoTime();
+            AtomicBoolean finished = new AtomicBoolean();
+            return webClient.post()
+                    .uri(uri)
+                    .httpRequest(request -> {
+                        HttpClientRequest nettyRequest = request.getNativeRequest();
+                        nettyRequest.responseTimeout(responseTimeout);
+                    })
+                    .bodyValue(body)
+                    .retrieve()
+                    .onStatus(status -> status.is4xxClientError() || status.is5xxServerError(), response -> {
+                        System.err.println("Hugging Face error for model " + modelId + ": " + response.statusCode()
+                                + " Headers: " + response.headers().asHttpHeaders());
+                        return response.createException()
+                                .doOnNext(e -> System.err.println("Hugging Face error body: " + e.getResponseBodyAsString()));
+                    })
+                    .bodyToMono(responseType)
+                    .doOnSuccess(result -> {
+                        long elapsed = System.nanoTime() - start;
+                        stats.record(elapsed, null);
+                        recordTimer(modelId, elapsed, "success");
+                        readiness.markReady();
+                        if (finished.compareAndSet(false, true)) {
+                            guard.limiter.onSuccess(elapsed);
+                            guard.breaker.onSuccess(permit);
+                        }
+                    })
+                    .doOnError(error -> {
+                        long elapsed = System.nanoTime() - start;
+                        stats.record(elapsed, error);
+                        recordTimer(modelId, elapsed, AnalysisMetrics.errorType(error));
+                        if (finished.compareAndSet(false, true)) {
+                            if (isModelLoading(error)) {
+                                // Model đang nạp không phải dấu hiệu quá tải: không giảm limit, không mở breaker
+                                guard.limiter.onIgnored();
+                                guard.breaker.onIgnored(permit);
+                            } else if (isUpstreamFailure(error)) {
+                                guard.limiter.onDropped();
+                                guard.breaker.onFailure(permit);
+                            } else {
+                                guard.limiter.onIgnored();
+                                guard.breaker.onSuccess(permit); // 400/401... là lỗi của request, model vẫn khỏe
+                            }
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (finished.compareAndSet(false, true)) {
+                            guard.limiter.onIgnored();
+                            guard.breaker.onIgnored(permit);
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Đăng ký input rẻ dùng để đánh thức model (ví dụ một nhãn zero-shot, một domain ngắn).
+     * Có probe thì request gặp 503 "loading" sẽ chờ chung thay vì tự retry.
+     */
+    public void registerWarmupProbe(String modelId, Object inputs, byte[] parametersFragment, Duration responseTimeout) {
+        try {
+            warmupProbes.put(modelId, new WarmupProbe(buildBody(inputs, parametersFragment), responseTimeout));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize warm-up probe for " + modelId, e);
+        }
+    }
+
+    /** Gửi probe đã đăng ký (không chờ readiness, không retry); model đang nạp thì bật chế độ chờ chung. */
+    public Mono<Void> probe(String modelId) {
+        WarmupProbe probe = warmupProbes.get(modelId);
+        if (probe == null) {
+            return Mono.empty();
+        }
+        URI uri = modelUris.computeIfAbsent(modelId, id -> URI.create(baseUrl + id));
+        ModelReadiness readiness = readiness(modelId);
+        return send(modelId, uri, probe.body(), probe.responseTimeout(), PROBE_RESPONSE_TYPE,
+                modelStats.computeIfAbsent(modelId, id -> new ModelStats()),
+                modelGuards.computeIfAbsent(modelId, this::newGuard), readiness)
+                .doOnError(error -> {
+                    if (isModelLoading(error)) {
+                        onModelLoading(modelId, readiness, error);
+                    }
+                })
+                .then();
+    }
+
+    // Thời gian (ms) kể từ lần gọi thành công gần nhất tới model; Long.MAX_VALUE nếu chưa có lần nào
+    public long idleMillis(String modelId) {
+        long idleNanos = readiness(modelId).idleNanos();
+        return idleNanos == Long.MAX_VALUE ? Long.MAX_VALUE : TimeUnit.NANOSECONDS.toMillis(idleNanos);
+    }
+
+    private ModelReadiness readiness(String modelId) {
+        return modelReadiness.computeIfAbsent(modelId, id -> new ModelReadiness());
+    }
+
+    private Mono<Void> parkUntilReady(String modelId, ModelGuard guard, ModelReadiness readiness) {
+        return Mono.defer(() -> {
+            if (guard.parkedNow.incrementAndGet() > maxParked) {
+                guard.parkedNow.decrementAndGet();
+                guard.rejected.increment();
+                return Mono.error(new UpstreamOverloadedException(modelId,
+                        "model is loading and " + maxParked + " requests are already waiting"));
+            }
+            guard.parked.increment();
+            // suppressCancel: một request bỏ chờ không được hủy future dùng chung
+            return Mono.fromFuture(readiness.awaitReady(), true)
+                    .timeout(Duration.ofMillis(maxParkMs),
+                            Mono.error(() -> new UpstreamOverloadedException(modelId, "model is still loading")))
+                    .doFinally(signal -> guard.parkedNow.decrementAndGet());
+        });
+    }
+
+    // Request/probe đầu tiên thấy model đang nạp khởi động vòng probe; các lần sau chỉ chờ
+    private void onModelLoading(String modelId, ModelReadiness readiness, Throwable error) {
+        if (readiness.markLoading()) {
+            System.err.println("Model " + modelId + " is loading, requests will wait until it is ready");
+            probeUntilReady(modelId, readiness, loadingProbeDelayMs(error), System.nanoTime() + maxLoadingMs * 1_000_000L);
+        }
+    }
+
+    private void probeUntilReady(String modelId, ModelReadiness readiness, long delayMs, long deadlineNanos) {
+        Mono.delay(Duration.ofMillis(delayMs))
+                .then(probe(modelId))
+                .subscribe(null, error -> {
+                    if (isModelLoading(error) && System.nanoTime() - deadlineNanos < 0) {
+                        probeUntilReady(modelId, readiness, loadingProbeDelayMs(error), deadlineNanos);
+                    } else {
+                        System.err.println("Model " + modelId + " did not become ready: " + error.getMessage());
+                        readiness.giveUp(error);
+                    }
+                });
+    }
+
+    // Hugging Face trả {"error":"Model ... is currently loading","estimated_time":20.5}; probe sớm hơn estimated_time
+    // nếu nó dài hơn probe-interval-ms
+    private long loadingProbeDelayMs(Throwable error) {
+        long estimatedMs = loadingProbeIntervalMs;
+        if (error instanceof WebClientResponseException e) {
+            try {
+                double seconds = objectMapper.readTree(e.getResponseBodyAsString()).path("estimated_time").asDouble(0);
+                if (seconds > 0) {
+                    estimatedMs = (long) (seconds * 1000);
+                }
+            } catch (IOException ignored) {
+                // body không phải JSON: dùng probe-interval-ms
+            }
+        }
+        return Math.max(100, Math.min(estimatedMs, loadingProbeIntervalMs));
+    }
+
+    static boolean isModelLoading(Throwable error) {
+        return error instanceof WebClientResponseException e
+                && e.getStatusCode().value() == 503
+                && e.getResponseBodyAsString().toLowerCase(Locale.ROOT).contains("loading");
+    }
+
+    public InferenceClientStatsResponse stats() {
+        List<ConnectionPoolStats> pools = new ArrayList<>();
+        poolMetrics.forEach((address, metrics) -> pools.add(new ConnectionPoolStats(
+                String.valueOf(address),
+                metrics.acquiredSize(),
+                metrics.allocatedSize(),
+                metrics.idleSize(),
+                metrics.pendingAcquireSize(),
+                metrics.maxAllocatedSize(),
+                metrics.maxPendingAcquireSize())));
+        List<ModelLatencyStats> models = new ArrayList<>();
+        modelStats.forEach((modelId, stats) -> models.add(stats.snapshot(modelId, modelGuards.get(modelId), modelReadiness.get(modelId))));
+        return new InferenceClientStatsResponse(pools, models);
+    }
+
+    private byte[] buildBody(Object inputs, byte[] parametersFragment) throws JsonProcessingException {
+        byte[] serializedInputs = objectMapper.writeValueAsBytes(inputs);
+        byte[] suffix = parametersFragment != null ? parametersFragment : OBJECT_END;
+        byte[] body = new byte[INPUTS_PREFIX.length + serializedInputs.length + suffix.length];
+        System.arraycopy(INPUTS_PREFIX, 0, body, 0, INPUTS_PREFIX.length);
+        System.arraycopy(serializedInputs, 0, body, INPUTS_PREFIX.length, serializedInputs.length);
+        System.arraycopy(suffix, 0, body, INPUTS_PREFIX.length + serializedInputs.length, suffix.length);
+        return body;
+    }
+
+    private ModelGuard newGuard(String modelId) {
+        return new ModelGuard(
+                new AimdLimiter(initialLimit, minLimit, maxLimit, backoffRatio, latencyTolerance),
+                new CircuitBreaker("model " + modelId, breakerWindowSize, breakerFailureRateThreshold,
+                        breakerMinimumCalls, breakerOpenMs, breakerHalfOpenProbes));
+    }
+
+    // Lỗi cho thấy model/hạ tầng đang có vấn đề: tính vào limiter và circuit breaker
+    private static boolean isUpstreamFailure(Throwable error) {
+        if (error instanceof WebClientResponseException e) {
+            return isTransientStatus(e.getStatusCode().value());
+        }
+        return error instanceof WebClientRequestException || isTimeout(error);
+    }
+
+    private static boolean isTransientStatus(int status) {
+        return status == 429 || status == 502 || status == 503 || status == 504;
+    }
+
+    /**
+     * Thời gian chờ trước lần thử lại thứ (retriesSoFar + 1), hoặc null nếu không nên thử lại.
+     * Không thử lại timeout (model đã chậm, thử lại chỉ làm chậm thêm) và request bị từ chối vì quá tải.
+     * Backoff "full jitter": ngẫu nhiên trong [0, min(max, base * 2^n)]; Retry-After (nếu có) là thời gian chờ tối thiểu.
+     */
+    private Duration retryDelay(Throwable error, long retriesSoFar) {
+        if (retriesSoFar >= maxRetries || isTimeout(error)) {
+            return null;
+        }
+        long retryAfterMs = 0;
+        if (error instanceof WebClientResponseException e) {
+            if (!isTransientStatus(e.getStatusCode().value())) {
+                return null;
+            }
+            retryAfterMs = parseRetryAfterMs(e.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+            if (retryAfterMs > maxRetryAfterMs) {
+                return null;
+            }
+        } else if (!(error instanceof WebClientRequestException)) {
+            return null;
+        }
+        long cap = Math.min(maxBackoffMs, baseBackoffMs << Math.min(retriesSoFar, 20));
+        long jitter = ThreadLocalRandom.current().nextLong(cap + 1);
+        return Duration.ofMillis(Math.max(retryAfterMs, jitter));
+    }
+
+    // Retry-After là số giây hoặc một HTTP-date
+    private static long parseRetryAfterMs(String value) {
+        if (value == null || value.isBlank()) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()) * 1000);
+        } catch (NumberFormatException ignored) {
+            // không phải số giây, thử HTTP-date
+        }
+        try {
+            long at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return Math.max(0, at - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    private static boolean isTimeout(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ReadTimeoutException || cause instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Timer theo model và kết quả (success, http_503, ReadTimeoutException...), có histogram để tính p95/p99
+    // Timer được đăng ký một lần cho mỗi cặp (model, outcome), không dựng lại builder ở mỗi lần gọi
+    private void recordTimer(String modelId, long nanos, String outcome) {
+        inferenceTimers.computeIfAbsent(new TimerKey(modelId, outcome), key -> Timer.builder("huggingface.inference")
+                        .description("Latency of a single Hugging Face inference call")
+                        .tag("model", key.modelId())
+                        .tag("outcome", key.outcome())
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Reactor Netty gọi registrar này mỗi khi tạo pool cho một địa chỉ mới; giữ lại để đọc số liệu khi cần
+    // và đăng ký gauge cho Prometheus (gỡ ra khi pool bị đóng)
+    private final class PoolMetricsRegistrar implements ConnectionProvider.MeterRegistrar {
+        @Override
+        public void registerMetrics(String poolName, String id, SocketAddress remoteAddress, ConnectionPoolMetrics metrics) {
+            poolMetrics.put(remoteAddress, metrics);
+            Tags tags = Tags.of("pool", poolName, "remote", String.valueOf(remoteAddress));
+            poolMeters.put(remoteAddress, List.of(
+                    Gauge.builder("huggingface.pool.acquired", metrics, ConnectionPoolMetrics::acquiredSize).tags(tags).register(meterRegistry),
+                    Gauge.builder("huggingface.pool.allocated", metrics, ConnectionPoolMetrics::allocatedSize).tags(tags).register(meterRegistry),
+                    Gauge.builder("huggingface.pool.idle", metrics, ConnectionPoolMetrics::idleSize).tags(tags).register(meterRegistry),
+                    Gauge.builder("huggingface.pool.pending", metrics, ConnectionPoolMetrics::pendingAcquireSize).tags(tags).register(meterRegistry)));
+        }
+
+        @Override
+        public void deRegisterMetrics(String poolName, String id, SocketAddress remoteAddress) {
+            poolMetrics.remove(remoteAddress);
+            List<Meter> meters = poolMeters.remove(remoteAddress);
+            if (meters != null) {
+                meters.forEach(meterRegistry::remove);
+            }
+        }
+    }
+
+    private static final class ModelStats {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private volatile long lastNanos;
+
+        void record(long nanos, Throwable error) {
+            requests.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            lastNanos = nanos;
+            if (error != null) {
+                errors.increment();
+                if (isTimeout(error)) {
+                    timeouts.increment();
+                }
+            }
+        }
+
+        ModelLatencyStats snapshot(String modelId, ModelGuard guard, ModelReadiness readiness) {
+            long count = requests.sum();
+            return new ModelLatencyStats(modelId, count, errors.sum(), timeouts.sum(),
+                    count == 0 ? 0.0 : totalNanos.sum() / 1e6 / count,
+                    maxNanos.get() / 1e6,
+                    lastNanos / 1e6,
+                    guard == null ? 0 : guard.limiter.getLimit(),
+                    guard == null ? 0 : guard.limiter.getInFlight(),
+                    guard == null ? null : guard.breaker.getState().name(),
+                    guard == null ? 0 : guard.rejected.sum(),
+                    guard == null ? 0 : guard.retries.sum(),
+                    readiness == null || readiness.isReady(),
+                    guard == null ? 0 : guard.parked.sum());
+        }
+    }
+
+    private record WarmupProbe(byte[] body, Duration responseTimeout) {
+    }
+
+    private record TimerKey(String modelId, String outcome) {
+    }
+
+    // Limiter và circuit breaker riêng cho từng model: model này chậm không kéo model kia theo
+    private static final class ModelGuard {
+        private final AimdLimiter limiter;
+        private final CircuitBreaker breaker;
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder parked = new LongAdder(); // Số lần request phải chờ model nạp xong
+        private final AtomicInteger parkedNow = new AtomicInteger(); // Số request đang chờ
+
+        private ModelGuard(AimdLimiter limiter, CircuitBreaker breaker) {
+            this.limiter = limiter;
+            this.breaker = breaker;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.restfulapi01.service;
+
+import com.example.restfulapi01.localmodel.NaiveBayesModel;
+import com.example.restfulapi01.localmodel.NaiveBayesTrainer;
+import com.example.restfulapi01.payload.EmailLabel;
+import com.example.restfulapi01.payload.LocalModelStatsResponse;
+import com.example.restfulapi01.payload.ZeroShotResult;
+import com.example.restfulapi01.repository.HistoryEmailCreatedRepository;
+import com.example.restfulapi01.repository.HistoryTrainingView;
+import com.example.restfulapi01.resilience.UpstreamOverloadedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Model phân loại email chạy ngay trong JVM (naive Bayes trên n-gram đã băm), huấn luyện từ các dòng
+ * history_email_created mà model Hugging Face đã gán nhãn. Kết quả có cùng dạng ZeroShotResult
+ * nên đi qua đúng bước hậu xử lý như kết quả của Hugging Face.
+ * Chế độ: off | fallback (chỉ dùng khi Hugging Face trả 429/5xx, lỗi kết nối hoặc timeout) | primary.
+ */
+@Service
+public class LocalEmailClassifier {
+
+    public static final String SOURCE = "LOCAL_MODEL";
+
+    private static final int TRAINING_PAGE_SIZE = 1000;
+
+    @Value("${analysis.local-model.mode:fallback}")
+    private String mode;
+
+    @Value("${analysis.local-model.path:./data/local-email-model.bin}")
+    private String modelPath;
+
+    @Value("${analysis.local-model.bucket-bits:18}")
+    private int bucketBits;
+
+    @Value("${analysis.local-model.alpha:0.1}")
+    private double alpha;
+
+    @Value("${analysis.local-model.min-samples:50}")
+    private int minSamples; // Ít mẫu hơn thế này thì không dùng model vừa huấn luyện
+
+    @Value("${analysis.local-model.train-on-startup:true}")
+    private boolean trainOnStartup;
+
+    @Value("${analysis.local-model.upstream-timeout-ms:10000}")
+    private long upstreamTimeoutMs;
+
+    private final HistoryEmailCreatedRepository historyEmailCreatedRepository;
+    private final EmailTextPreprocessor emailTextPreprocessor;
+
+    // Nhãn zero-shot mà model cục bộ dự đoán, và ánh xạ ngược từ nhãn lưu trong lịch sử (PHISHING...) về nhãn zero-shot
+    private final String[] labels = EmailAnalysisService.CANDIDATE_LABELS.toArray(new String[0]);
+    private final Map<String, Integer> customLabelIndex = new HashMap<>();
+
+    private volatile NaiveBayesModel model;
+    private final AtomicLong localPredictions = new AtomicLong();
+    private final AtomicLong upstreamFallbacks = new AtomicLong();
+    private final AtomicBoolean training = new AtomicBoolean();
+
+    public LocalEmailClassifier(HistoryEmailCreatedRepository historyEmailCreatedRepository,
+                                EmailTextPreprocessor emailTextPreprocessor) {
+        this.historyEmailCreatedRepository = historyEmailCreatedRepository;
+        this.emailTextPreprocessor = emailTextPreprocessor;
+        for (int i = 0; i < labels.length; i++) {
+            customLabelIndex.put(EmailLabel.fromZeroShotLabel(labels[i]).name(), i);
+        }
+    }
+
+    // Nạp model đã lưu; nếu chưa có thì huấn luyện ở thread nền để không làm chậm khởi động
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        if ("off".equalsIgnoreCase(mode)) {
+            return;
+        }
+        Path path = Paths.get(modelPath);
+        if (Files.exists(path)) {
+            try {
+                NaiveBayesModel loaded = NaiveBayesModel.readFrom(path);
+                if (loaded.getBucketBits() == bucketBits && List.of(loaded.getLabels()).equals(List.of(labels))) {
+                    model = loaded;
+                    System.out.println("Loaded local email model from " + path + " (" + loaded.getTrainedSamples() + " samples)");
+                    return;
+                }
+                System.out.println("Local email model at " + path + " does not match current labels/bucket-bits, retraining.");
+            } catch (IOException e) {
+                System.err.println("Failed to load local email model from " + path + ": " + e.getMessage());
+            }
+        }
+        if (trainOnStartup) {
+            trainInBackground();
+        }
+    }
+
+    /**
+     * Huấn luyện lại ở thread nền; false nếu đang có một lần huấn luyện chạy (mỗi lúc chỉ một lần,
+     * để các lời gọi lặp lại không chiếm thêm thread hay đọc lại toàn bộ lịch sử).
+     */
+    public boolean trainInBackground() {
+        if (!training.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread trainer = new Thread(() -> {
+            try {
+                train();
+            } finally {
+                training.set(false);
+            }
+        }, "local-model-trainer");
+        trainer.setDaemon(true);
+        trainer.start();
+        return true;
+    }
+
+    /** Huấn luyện lại từ toàn bộ lịch sử, lưu ra file và thay model đang dùng. */
+    synchronized LocalModelStatsResponse train() {
+        long start = System.currentTimeMillis();
+        NaiveBayesTrainer trainer = new NaiveBayesTrainer(labels, bucketBits);
+        List<String> trainingLabels = new ArrayList<>(customLabelIndex.keySet());
+        long afterId = 0L;
+        try {
+            while (true) {
+                List<HistoryTrainingView> rows = historyEmailCreatedRepository.findTrainingRows(
+                        afterId, trainingLabels, PageRequest.of(0, TRAINING_PAGE_SIZE));
+                for (HistoryTrainingView row : rows) {
+                    // Huấn luyện trên cùng dạng text mà model sẽ nhận lúc phân loại
+                    trainer.add(emailTextPreprocessor.prepare(row.getSubject(), row.getBody()),
+                            customLabelIndex.get(row.getPrimaryPredictionLabel()));
+                    afterId = row.getId();
+                }
+                if (rows.size() < TRAINING_PAGE_SIZE) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Failed to read training data for local email model: " + e.getMessage());
+            return stats();
+        }
+
+        if (trainer.getSamples() < minSamples) {
+            System.out.println("Local email model not updated: only " + trainer.getSamples()
+                    + " labelled emails in history (min-samples=" + minSamples + ")");
+            return stats();
+        }
+        NaiveBayesModel trained = trainer.build(alpha);
+        try {
+            trained.writeTo(Paths.get(modelPath));
+        } catch (IOException e) {
+            System.err.println("Failed to save local email model to " + modelPath + ": " + e.getMessage());
+        }
+        model = trained;
+        System.out.println("Trained local email model on " + trainer.getSamples() + " emails in "
+                + (System.currentTimeMillis() - start) + " ms");
+        return stats();
+    }
+
+    public boolean isPrimary() {
+        return "primary".equalsIgnoreCase(mode) && model != null;
+    }
+
+    // Dùng được làm phương án dự phòng khi chế độ khác off và model đã sẵn sàng
+    public boolean isFallbackEnabled() {
+        return !"off".equalsIgnoreCase(mode) && model != null;
+    }
+
+    public Duration getUpstreamTimeout() {
+        return Duration.ofMillis(upstreamTimeoutMs);
+    }
+
+    // Chỉ các lỗi tạm thời của Hugging Face (kể cả bị từ chối vì quá tải) mới chuyển sang model cục bộ; 401/400... vẫn trả API_ERROR
+    public boolean shouldFallback(Throwable error) {
+        if (error instanceof WebClientResponseException e) {
+            return e.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS
+                    || e.getStatusCode() == HttpStatus.BAD_GATEWAY
+                    || e.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE
+                    || e.getStatusCode() == HttpStatus.GATEWAY_TIMEOUT;
+        }
+        return error instanceof TimeoutException || error instanceof WebClientRequestException
+                || error instanceof UpstreamOverloadedException;
+    }
+
+    public Optional<ZeroShotResult> classify(String text) {
+        NaiveBayesModel current = model;
+        if (current == null) {
+            return Optional.empty();
+        }
+        double[] probabilities = current.predict(text);
+        List<String> resultLabels = new ArrayList<>(labels.length);
+        List<Double> resultScores = new ArrayList<>(labels.length);
+        for (int i = 0; i < labels.length; i++) {
+            resultLabels.add(labels[i]);
+            resultScores.add(probabilities[i]);
+        }
+        localPredictions.incrementAndGet();
+        return Optional.of(new ZeroShotResult(resultLabels, resultScores, SOURCE));
+    }
+
+    public Optional<ZeroShotResult> classifyAsFallback(String text, Throwable upstreamError) {
+        Optional<ZeroShotResult> result = classify(text);
+        if (result.isPresent()) {
+            upstreamFallbacks.incrementAndGet();
+            System.err.println("Hugging Face unavailable (" + upstreamError.getClass().getSimpleName() + ": "
+                    + upstreamError.getMessage() + "), using local email model.");
+        }
+        return result;
+    }
+
+    public LocalModelStatsResponse stats() {
+        NaiveBayesModel current = model;
+        return new LocalModelStatsResponse(
+                mode.toLowerCase(Locale.ROOT),
+                current != null,
+                current == null ? 0 : current.getTrainedSamples(),
+                current == null ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(current.getTrainedAtMillis()), ZoneId.systemDefault()),
+                bucketBits,
+                localPredictions.get(),
+                upstreamFallbacks.get(),
+                training.get());
+    }
+}
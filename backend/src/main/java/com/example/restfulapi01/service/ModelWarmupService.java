@@ -0,0 +1,64 @@
+package com.example.restfulapi01.service;
+
+import com.example.restfulapi01.payload.EmailLabel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Giữ các model Hugging Face luôn "nóng": Inference API gỡ model khỏi bộ nhớ sau một thời gian không dùng,
+ * request đầu tiên sau đó phải chờ model nạp lại (503 "loading"). Định kỳ gửi một probe rẻ tới model nào
+ * không có request thành công trong interval-ms; probe cũng là input mà client dùng để chờ model nạp xong.
+ */
+@Service
+public class ModelWarmupService {
+
+    private static final String EMAIL_PROBE_TEXT = "Hello, this is a test message.";
+    private static final String DOMAIN_PROBE_INPUT = "example.com";
+
+    @Value("${huggingface.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${huggingface.warmup.interval-ms:240000}")
+    private long intervalMs;
+
+    private final HuggingFaceInferenceClient inferenceClient;
+    private final List<String> modelIds;
+
+    public ModelWarmupService(HuggingFaceInferenceClient inferenceClient,
+                              @Value("${huggingface.model.id.multilabel}") String multiLabelModelId,
+                              @Value("${huggingface.model.id.domain-check}") String domainModelId,
+                              @Value("${huggingface.client.timeout.multilabel-ms:30000}") long multiLabelTimeoutMs,
+                              @Value("${huggingface.client.timeout.domain-check-ms:5000}") long domainTimeoutMs) {
+        this.inferenceClient = inferenceClient;
+        this.modelIds = List.of(multiLabelModelId, domainModelId);
+        // Zero-shot với một nhãn chỉ tốn một lượt NLI
+        inferenceClient.registerWarmupProbe(multiLabelModelId, EMAIL_PROBE_TEXT,
+                inferenceClient.parametersFragment(Map.of(
+                        "candidate_labels", List.of(EmailLabel.HAM.getZeroShotLabel()), "multi_label", false)),
+                Duration.ofMillis(multiLabelTimeoutMs));
+        inferenceClient.registerWarmupProbe(domainModelId, DOMAIN_PROBE_INPUT, null,
+                Duration.ofMillis(domainTimeoutMs));
+    }
+
+    // Lần đầu chạy ngay khi khởi động, để request đầu tiên của người dùng không gặp cold start
+    @Scheduled(fixedDelayString = "${huggingface.warmup.interval-ms:240000}",
+            initialDelayString = "${huggingface.warmup.initial-delay-ms:0}")
+    public void warmUp() {
+        if (!enabled) {
+            return;
+        }
+        for (String modelId : modelIds) {
+            // Model vừa có request thành công thì vẫn đang nóng, không cần probe
+            if (inferenceClient.idleMillis(modelId) < intervalMs) {
+                continue;
+            }
+            inferenceClient.probe(modelId).subscribe(null,
+                    e -> System.err.println("Warm-up probe for model " + modelId + " failed: " + e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.restfulapi01.service;
+
+import com.example.restfulapi01.neardup.NearDuplicateIndex;
+import com.example.restfulapi01.neardup.SimHash;
+import com.example.restfulapi01.payload.NearDuplicateStatsResponse;
+import com.example.restfulapi01.payload.ZeroShotResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+/**
+ * Dùng lại kết quả của email đã phân tích gần đây khi email mới gần trùng với nó (cùng một chiến dịch
+ * phishing/spam chỉ khác tên người nhận, số tiền, link...). So khớp bằng SimHash trên text đã tiền xử lý.
+ * Chỉ kết quả của model Hugging Face được đưa vào chỉ mục; kết quả dùng lại có source NEAR_DUPLICATE.
+ */
+@Service
+public class NearDuplicateVerdictIndex {
+
+    public static final String SOURCE = "NEAR_DUPLICATE";
+
+    private final boolean enabled;
+    private final int maxDistance;
+    private final NearDuplicateIndex<ZeroShotResult> index;
+
+    public NearDuplicateVerdictIndex(@Value("${analysis.near-duplicate.enabled:true}") boolean enabled,
+                                     @Value("${analysis.near-duplicate.capacity:20000}") int capacity,
+                                     @Value("${analysis.near-duplicate.ttl-minutes:120}") long ttlMinutes,
+                                     @Value("${analysis.near-duplicate.max-distance:7}") int maxDistance) {
+        this.enabled = enabled;
+        this.maxDistance = maxDistance;
+        this.index = new NearDuplicateIndex<>(capacity, Duration.ofMinutes(ttlMinutes).toMillis(), maxDistance);
+    }
+
+    public Optional<ZeroShotResult> find(String text) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        OptionalLong fingerprint = SimHash.fingerprint(text);
+        if (fingerprint.isEmpty()) {
+            return Optional.empty();
+        }
+        return index.find(fingerprint.getAsLong(), System.currentTimeMillis())
+                .map(match -> {
+                    ZeroShotResult original = match.value();
+                    return new ZeroShotResult(original.getLabels(), original.getScores(), SOURCE);
+                });
+    }
+
+    public void record(String text, ZeroShotResult result) {
+        if (!enabled || result == null || !"MODEL".equals(result.getSource())) {
+            return;
+        }
+        OptionalLong fingerprint = SimHash.fingerprint(text);
+        if (fingerprint.isPresent()) {
+            index.put(fingerprint.getAsLong(), result, System.currentTimeMillis());
+        }
+    }
+
+    public NearDuplicateStatsResponse stats() {
+        return new NearDuplicateStatsResponse(enabled, index.size(), index.capacity(), maxDistance,
+                index.lookups(), index.hits());
+    }
+}
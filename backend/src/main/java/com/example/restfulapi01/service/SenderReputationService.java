@@ -0,0 +1,279 @@
+package com.example.restfulapi01.service;
+
+import com.example.restfulapi01.payload.EmailAnalyzeResponse;
+import com.example.restfulapi01.payload.EmailLabel;
+import com.example.restfulapi01.payload.SenderReputationStatsResponse;
+import com.example.restfulapi01.payload.ZeroShotResult;
+import com.example.restfulapi01.repository.HistoryEmailCreatedRepository;
+import com.example.restfulapi01.repository.HistoryReputationView;
+import com.example.restfulapi01.reputation.DecayingCountMinSketch;
+import com.example.restfulapi01.reputation.ReputationTable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Uy tín người gửi và domain người gửi, tính từ các kết luận trước đó của model Hugging Face.
+ * Hai count-min sketch có suy giảm (bộ nhớ cố định dù có hàng triệu người gửi) chỉ dùng để lọc: khóa nào sketch
+ * ước lượng đã xuất hiện >= admit-after lần mới được đưa vào bảng đếm chính xác có giới hạn (ReputationTable),
+ * nên người gửi chỉ gặp một lần không chiếm chỗ trong bảng. Kết luận chỉ dựa trên bảng chính xác: tỉ lệ tính
+ * từ sketch đã bão hòa có thể sai hoàn toàn vì va chạm.
+ * Người gửi có lịch sử đủ dài, từ ít nhất min-reporters người dùng khác nhau, và gần như luôn cùng một nhãn thuộc
+ * fast-path-labels (mặc định PHISHING, SPAM) được kết luận ngay, không gọi Hugging Face. Chỉ nhãn "xấu" mới được
+ * kết luận kiểu này: giả mạo người gửi chỉ có thể làm email bị đánh dấu xấu, không thể làm email lừa đảo được coi là an toàn.
+ */
+@Service
+public class SenderReputationService {
+
+    public static final String SOURCE = "SENDER_REPUTATION";
+
+    private static final int WARMUP_PAGE_SIZE = 5000;
+
+    // Các nhãn mà sketch đếm, theo thứ tự khai báo (bỏ OTHER)
+    private static final List<EmailLabel> LABELS = EmailLabel.zeroShotLabels().stream()
+            .map(EmailLabel::fromZeroShotLabel)
+            .toList();
+
+    @Value("${analysis.sender-reputation.enabled:true}")
+    private boolean enabled;
+
+    @Value("${analysis.sender-reputation.warmup-days:90}")
+    private long warmupDays;
+
+    @Value("${analysis.sender-reputation.sender-min-samples:5}")
+    private double senderMinSamples;
+
+    @Value("${analysis.sender-reputation.domain-min-samples:20}")
+    private double domainMinSamples;
+
+    @Value("${analysis.sender-reputation.min-share:0.9}")
+    private double minShare; // Tỉ lệ tối thiểu của nhãn chiếm ưu thế trong số đếm đã suy giảm
+
+    @Value("${analysis.sender-reputation.admit-after:2}")
+    private double admitAfter; // Số lần (ước lượng từ sketch) một khóa phải xuất hiện trước khi vào bảng chính xác
+
+    private final int minReporters;
+
+    private final Set<EmailLabel> fastPathLabels = new HashSet<>();
+    private final Set<String> sharedDomains = new HashSet<>();
+
+    private final HistoryEmailCreatedRepository historyEmailCreatedRepository;
+    private final DecayingCountMinSketch senders;
+    private final DecayingCountMinSketch domains;
+    private final ReputationTable senderTable;
+    private final ReputationTable domainTable;
+
+    private final AtomicLong warmedRows = new AtomicLong();
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong senderHits = new AtomicLong();
+    private final AtomicLong domainHits = new AtomicLong();
+
+    public SenderReputationService(HistoryEmailCreatedRepository historyEmailCreatedRepository,
+                                   @Value("${analysis.sender-reputation.depth:4}") int depth,
+                                   @Value("${analysis.sender-reputation.width-bits:14}") int widthBits,
+                                   @Value("${analysis.sender-reputation.half-life-days:30}") long halfLifeDays,
+                                   @Value("${analysis.sender-reputation.max-senders:100000}") int maxSenders,
+                                   @Value("${analysis.sender-reputation.max-domains:20000}") int maxDomains,
+                                   @Value("${analysis.sender-reputation.min-reporters:3}") int minReporters,
+                                   @Value("${analysis.sender-reputation.fast-path-labels:PHISHING,SPAM}") List<String> fastPathLabels,
+                                   @Value("${analysis.sender-reputation.shared-domains:gmail.com,googlemail.com,yahoo.com,outlook.com,hotmail.com,live.com,icloud.com,aol.com,proton.me,protonmail.com}") List<String> sharedDomains) {
+        this.historyEmailCreatedRepository = historyEmailCreatedRepository;
+        long halfLifeMillis = Duration.ofDays(halfLifeDays).toMillis();
+        long now = System.currentTimeMillis();
+        this.senders = new DecayingCountMinSketch(depth, widthBits, LABELS.size(), halfLifeMillis, now);
+        this.domains = new DecayingCountMinSketch(depth, widthBits, LABELS.size(), halfLifeMillis, now);
+        this.minReporters = Math.max(1, minReporters);
+        this.senderTable = new ReputationTable(LABELS.size(), halfLifeMillis, maxSenders, this.minReporters);
+        this.domainTable = new ReputationTable(LABELS.size(), halfLifeMillis, maxDomains, this.minReporters);
+        for (String label : fastPathLabels) {
+            this.fastPathLabels.add(EmailLabel.valueOf(label.trim().toUpperCase(Locale.ROOT)));
+        }
+        for (String domain : sharedDomains) {
+            this.sharedDomains.add(domain.trim().toLowerCase(Locale.ROOT));
+        }
+    }
+
+    // Nạp lịch sử ở thread nền để không làm chậm khởi động; trong lúc nạp, mọi email vẫn đi qua model như bình thường
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!enabled) {
+            return;
+        }
+        Thread loader = new Thread(this::loadHistory, "sender-reputation-warmup");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    void loadHistory() {
+        long start = System.currentTimeMillis();
+        LocalDateTime since = LocalDateTime.now().minusDays(warmupDays);
+        long afterId = 0L;
+        try {
+            while (true) {
+                List<HistoryReputationView> rows = historyEmailCreatedRepository.findReputationRows(
+                        afterId, since, PageRequest.of(0, WARMUP_PAGE_SIZE));
+                for (HistoryReputationView row : rows) {
+                    long time = row.getAnalysisTime() == null ? start
+                            : row.getAnalysisTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                    if (add(row.getUserId(), row.getSender(), row.getPrimaryPredictionLabel(), time)) {
+                        warmedRows.incrementAndGet();
+                    }
+                    afterId = row.getId();
+                }
+                if (rows.size() < WARMUP_PAGE_SIZE) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Failed to load sender reputation from history: " + e.getMessage());
+            return;
+        }
+        System.out.println("Loaded sender reputation from " + warmedRows.get() + " history rows in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /** Kết luận ngay theo uy tín người gửi (ưu tiên), rồi tới domain; rỗng nếu lịch sử chưa đủ rõ ràng. */
+    public Optional<ZeroShotResult> lookup(String sender) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        String address = normalizeAddress(sender);
+        if (address == null) {
+            return Optional.empty();
+        }
+        lookups.incrementAndGet();
+        long now = System.currentTimeMillis();
+        Optional<ZeroShotResult> verdict = senderTable.get(address, now)
+                .flatMap(snapshot -> verdict(snapshot, senderMinSamples));
+        if (verdict.isPresent()) {
+            senderHits.incrementAndGet();
+            return verdict;
+        }
+        String domain = domainOf(address);
+        if (sharedDomains.contains(domain)) {
+            return Optional.empty();
+        }
+        verdict = domainTable.get(domain, now).flatMap(snapshot -> verdict(snapshot, domainMinSamples));
+        if (verdict.isPresent()) {
+            domainHits.incrementAndGet();
+        }
+        return verdict;
+    }
+
+    // Chỉ ghi nhận kết luận của model Hugging Face, không ghi lại kết luận do chính uy tín (hay model cục bộ) đưa ra
+    public void record(Long userId, EmailAnalyzeResponse response) {
+        if (enabled && "MODEL".equals(response.getVerdictSource())
+                && add(userId, response.getSender(), response.getPrimaryPredictionLabel(), System.currentTimeMillis())) {
+            recorded.incrementAndGet();
+        }
+    }
+
+    private boolean add(Long userId, String sender, String primaryLabel, long timeMillis) {
+        String address = normalizeAddress(sender);
+        int label = labelIndex(primaryLabel);
+        if (userId == null || address == null || label < 0) {
+            return false;
+        }
+        count(senders, senderTable, address, label, userId, timeMillis);
+        count(domains, domainTable, domainOf(address), label, userId, timeMillis);
+        return true;
+    }
+
+    // Khóa đã có trong bảng thì cộng thẳng vào bảng; khóa mới chỉ được đưa vào khi sketch thấy nó lặp lại.
+    // Các lần xuất hiện trước khi vào bảng không được tính, nên bảng chỉ có thể đếm thiếu, không đếm thừa.
+    private void count(DecayingCountMinSketch sketch, ReputationTable table, String key, int label, long userId, long timeMillis) {
+        sketch.add(key, label, timeMillis);
+        if (table.addIfPresent(key, label, userId, timeMillis)) {
+            return;
+        }
+        double seen = 0;
+        for (double count : sketch.estimate(key, timeMillis)) {
+            seen += count;
+        }
+        if (seen >= admitAfter) {
+            table.add(key, label, userId, timeMillis);
+        }
+    }
+
+    // Điểm trả về là tỉ lệ của từng nhãn, nên hậu xử lý (ngưỡng 0.4) chọn đúng nhãn chiếm ưu thế
+    private Optional<ZeroShotResult> verdict(ReputationTable.Snapshot snapshot, double minSamples) {
+        if (snapshot.reporters() < minReporters) {
+            return Optional.empty();
+        }
+        double[] counts = snapshot.counts();
+        double total = 0;
+        int best = 0;
+        for (int i = 0; i < counts.length; i++) {
+            total += counts[i];
+            if (counts[i] > counts[best]) {
+                best = i;
+            }
+        }
+        if (total < minSamples || counts[best] / total < minShare || !fastPathLabels.contains(LABELS.get(best))) {
+            return Optional.empty();
+        }
+        List<String> labels = new ArrayList<>(counts.length);
+        List<Double> scores = new ArrayList<>(counts.length);
+        for (int i = 0; i < counts.length; i++) {
+            labels.add(LABELS.get(i).getZeroShotLabel());
+            scores.add(counts[i] / total);
+        }
+        return Optional.of(new ZeroShotResult(labels, scores, SOURCE));
+    }
+
+    private static int labelIndex(String primaryLabel) {
+        if (primaryLabel == null) {
+            return -1;
+        }
+        for (int i = 0; i < LABELS.size(); i++) {
+            if (LABELS.get(i).name().equals(primaryLabel)) {
+                return i;
+            }
+        }
+        return -1; // UNCLEAR, AI_PARSE_ERROR...
+    }
+
+    // "Tên <a@b.com>" -> "a@b.com"; null nếu không có dạng địa chỉ email
+    static String normalizeAddress(String sender) {
+        if (sender == null) {
+            return null;
+        }
+        String address = sender;
+        int open = address.lastIndexOf('<');
+        int close = address.lastIndexOf('>');
+        if (open >= 0 && close > open) {
+            address = address.substring(open + 1, close);
+        }
+        address = address.trim().toLowerCase(Locale.ROOT);
+        int at = address.lastIndexOf('@');
+        if (at <= 0 || at == address.length() - 1 || address.indexOf(' ') >= 0) {
+            return null;
+        }
+        return address;
+    }
+
+    private static String domainOf(String address) {
+        return address.substring(address.lastIndexOf('@') + 1);
+    }
+
+    public SenderReputationStatsResponse stats() {
+        return new SenderReputationStatsResponse(enabled, warmedRows.get(), recorded.get(), lookups.get(),
+                senderHits.get(), domainHits.get(), senders.memoryBytes() + domains.memoryBytes(),
+                senderTable.size(), domainTable.size(), senderTable.evictions() + domainTable.evictions(),
+                senderTable.memoryBytes() + domainTable.memoryBytes());
+    }
+}
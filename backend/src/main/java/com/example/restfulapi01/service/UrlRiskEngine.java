@@ -0,0 +1,85 @@
+package com.example.restfulapi01.service;
+
+import com.example.restfulapi01.payload.DomainCheckResponse;
+import com.example.restfulapi01.urlrisk.UrlFeatureExtractor;
+import com.example.restfulapi01.urlrisk.UrlFeatures;
+import com.example.restfulapi01.urlrisk.UrlRiskAssessment;
+import com.example.restfulapi01.urlrisk.UrlRiskScorer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Đánh giá URL cục bộ dựa trên đặc trưng từ vựng, chạy trước khi gọi model Hugging Face.
+ * Chỉ trả lời các trường hợp rõ ràng; trường hợp mơ hồ trả về Optional.empty() để model xử lý.
+ * SAFE chỉ được trả khi có bằng chứng tích cực (host thuộc trusted-domains): "không có dấu hiệu" thì vẫn hỏi model,
+ * vì các domain giả mạo kiểu typosquat (paypa1.com) thường không có tín hiệu từ vựng nào khác.
+ */
+@Service
+public class UrlRiskEngine {
+
+    @Value("${domain-check.local.enabled:true}")
+    private boolean enabled;
+
+    // Điểm rủi ro >= ngưỡng này -> MALICIOUS ngay, không gọi model
+    @Value("${domain-check.local.malicious-threshold:0.9}")
+    private double maliciousThreshold;
+
+    // Host thuộc trusted-domains và điểm rủi ro <= ngưỡng này -> SAFE ngay, không gọi model
+    @Value("${domain-check.local.safe-threshold:0.02}")
+    private double safeThreshold;
+
+    private final Set<String> trustedDomains = new HashSet<>();
+
+    public UrlRiskEngine(@Value("${domain-check.local.trusted-domains:google.com,youtube.com,gmail.com,microsoft.com,office.com,live.com,outlook.com,apple.com,icloud.com,amazon.com,paypal.com,facebook.com,instagram.com,github.com,wikipedia.org}") List<String> trustedDomains) {
+        for (String domain : trustedDomains) {
+            if (!domain.isBlank()) {
+                this.trustedDomains.add(domain.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+    }
+
+    public Optional<DomainCheckResponse> tryLocalVerdict(String input) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        UrlFeatures features = UrlFeatureExtractor.extract(input);
+        if (!features.isParsed()) {
+            return Optional.empty();
+        }
+        UrlRiskAssessment assessment = UrlRiskScorer.score(features);
+
+        if (assessment.getRisk() >= maliciousThreshold) {
+            return Optional.of(new DomainCheckResponse(input, "MALICIOUS",
+                    "This URL/domain is classified as MALICIOUS/PHISHING by local URL analysis: "
+                            + String.join("; ", assessment.getReasons()) + ".",
+                    assessment.getRisk()));
+        }
+        if (assessment.getRisk() <= safeThreshold && isTrusted(features.getHost())) {
+            return Optional.of(new DomainCheckResponse(input, "SAFE",
+                    "This URL/domain appears to be SAFE/BENIGN based on local URL analysis.",
+                    1.0 - assessment.getRisk()));
+        }
+        return Optional.empty();
+    }
+
+    // Khớp theo hậu tố như blocklist/allowlist: "github.com" gồm cả "docs.github.com"
+    private boolean isTrusted(String host) {
+        for (int from = 0; from >= 0; from = next(host, from)) {
+            if (trustedDomains.contains(host.substring(from))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int next(String host, int from) {
+        int dot = host.indexOf('.', from);
+        return dot < 0 ? -1 : dot + 1;
+    }
+}
@@ -51,6 +51,11 @@ public class UserService {
         return userRepository.findById(userId);
     }
 
+    // Chỉ kiểm tra tồn tại, không nạp entity User
+    public boolean existsById(Long userId) {
+        return userRepository.existsById(userId);
+    }
+
     /**
      * Xử lý yêu cầu quên mật khẩu: tìm người dùng và gửi mật khẩu của họ qua email.
      * Cảnh báo: Việc gửi mật khẩu plaintext qua email là KHÔNG AN TOÀN.
@@ -0,0 +1,381 @@
+package com.example.restfulapi01.urlrisk;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Bộ tách đặc trưng URL viết tay, duyệt chuỗi đúng một lần, không dùng regex.
+ * Không cần Public Suffix List: "domain đăng ký" được xấp xỉ bằng hai label cuối của host.
+ */
+public final class UrlFeatureExtractor {
+
+    // Các từ khóa hay xuất hiện trong URL phishing
+    private static final Set<String> SUSPICIOUS_TOKENS = Set.of(
+            "login", "signin", "logon", "verify", "verification", "account", "update", "secure",
+            "security", "banking", "confirm", "password", "webscr", "ebayisapi", "wallet", "unlock",
+            "suspended", "billing", "invoice", "recover", "validate", "authenticate", "session"
+    );
+
+    // Thương hiệu thường bị giả mạo; chỉ tính là đáng ngờ khi nằm ngoài domain đăng ký
+    private static final Set<String> BRANDS = Set.of(
+            "paypal", "apple", "icloud", "microsoft", "office365", "outlook", "google", "gmail",
+            "facebook", "instagram", "amazon", "netflix", "ebay", "dhl", "fedex", "binance",
+            "coinbase", "metamask", "chase", "wellsfargo", "vietcombank", "techcombank", "momo", "zalo"
+    );
+
+    private static final List<String> FOLDED_BRANDS = BRANDS.stream().map(UrlFeatureExtractor::foldConfusables).toList();
+
+    // Các label cấp hai phổ biến dưới ccTLD (example.com.vn, example.co.uk)
+    private static final Set<String> SECOND_LEVEL_SUFFIXES = Set.of(
+            "com", "net", "org", "edu", "gov", "co", "ac", "or", "ne", "gob"
+    );
+
+    private UrlFeatureExtractor() {
+    }
+
+    public static UrlFeatures extract(String input) {
+        UrlFeatures features = new UrlFeatures();
+        if (input == null) {
+            return features;
+        }
+        String url = input.trim();
+        int n = url.length();
+        features.setLength(n);
+
+        // 1. Scheme: "xxx://"
+        int pos = 0;
+        int schemeSep = indexOfSchemeSeparator(url);
+        if (schemeSep > 0) {
+            features.setHasScheme(true);
+            features.setHttps(schemeSep == 5 && url.regionMatches(true, 0, "https", 0, 5));
+            pos = schemeSep + 3;
+        }
+
+        // 2. Authority: tới '/', '?' hoặc '#'. '@' cuối cùng tách userinfo, ':' cuối cùng tách port.
+        int authorityStart = pos;
+        int lastAt = -1;
+        int lastColon = -1;
+        boolean bracket = false;
+        while (pos < n) {
+            char c = url.charAt(pos);
+            if (c == '/' || c == '?' || c == '#') {
+                break;
+            }
+            if (c == '@') {
+                lastAt = pos;
+                lastColon = -1;
+            } else if (c == '[') {
+                bracket = true;
+            } else if (c == ']') {
+                bracket = false;
+            } else if (c == ':' && !bracket) {
+                lastColon = pos;
+            }
+            pos++;
+        }
+        int authorityEnd = pos;
+        int hostStart = lastAt >= 0 ? lastAt + 1 : authorityStart;
+        int hostEnd = lastColon > hostStart ? lastColon : authorityEnd;
+        features.setUserInfo(lastAt >= 0);
+        features.setExplicitPort(lastColon > hostStart);
+
+        if (hostEnd <= hostStart) {
+            return features;
+        }
+        analyzeHost(url, hostStart, hostEnd, features);
+
+        // 3. Path + query: đếm độ sâu, tham số, '//' và các token đáng ngờ
+        analyzePathAndQuery(url, authorityEnd, n, features);
+        features.setParsed(true);
+        return features;
+    }
+
+    private static int indexOfSchemeSeparator(String url) {
+        int limit = Math.min(url.length() - 2, 16);
+        for (int i = 0; i < limit; i++) {
+            char c = url.charAt(i);
+            if (c == ':') {
+                return url.charAt(i + 1) == '/' && url.charAt(i + 2) == '/' ? i : -1;
+            }
+            if (!Character.isLetterOrDigit(c) && c != '+' && c != '-' && c != '.') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static void analyzeHost(String url, int start, int end, UrlFeatures features) {
+        if (url.charAt(start) == '[') {
+            features.setIpLiteral(true); // IPv6 literal
+            features.setHost(url.substring(start, end).toLowerCase(Locale.ROOT));
+            features.setHostLength(end - start);
+            features.setLabelCount(1);
+            return;
+        }
+        // Bỏ dấu '.' cuối (FQDN)
+        while (end > start && url.charAt(end - 1) == '.') {
+            end--;
+        }
+
+        int[] charCounts = new int[128];
+        int counted = 0;
+        int nonAsciiCount = 0;
+        int labels = 1;
+        int labelStart = start;
+        int maxLabel = 0;
+        int digits = 0;
+        int hyphens = 0;
+        boolean allNumericLabels = true;
+        boolean labelNumeric = true;
+        boolean hexLiteral = false;
+        int thirdLastLabelStart = -1;
+        int secondLastLabelStart = -1;
+        int lastLabelStart = start;
+
+        StringBuilder host = new StringBuilder(end - start);
+        for (int i = start; i <= end; i++) {
+            char c = i < end ? Character.toLowerCase(url.charAt(i)) : '.';
+            if (c == '.') {
+                int labelLength = i - labelStart;
+                maxLabel = Math.max(maxLabel, labelLength);
+                if (labelLength >= 4 && url.regionMatches(true, labelStart, "xn--", 0, 4)) {
+                    features.setPunycode(true);
+                }
+                if (labelLength > 2 && url.regionMatches(true, labelStart, "0x", 0, 2)) {
+                    hexLiteral = true;
+                }
+                allNumericLabels &= labelNumeric && labelLength > 0;
+                labelNumeric = true;
+                if (i < end) {
+                    labels++;
+                    thirdLastLabelStart = secondLastLabelStart;
+                    secondLastLabelStart = lastLabelStart;
+                    lastLabelStart = i + 1;
+                    labelStart = i + 1;
+                    host.append('.');
+                }
+                continue;
+            }
+            host.append(c);
+            if (c >= 128) {
+                nonAsciiCount++;
+            } else {
+                charCounts[c]++;
+                counted++;
+            }
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else {
+                labelNumeric = false;
+                if (c == '-') {
+                    hyphens++;
+                }
+            }
+        }
+
+        String hostValue = host.toString();
+        features.setHost(hostValue);
+        features.setHostLength(hostValue.length());
+        features.setLabelCount(labels);
+        features.setMaxLabelLength(maxLabel);
+        features.setHostDigits(digits);
+        features.setHostHyphens(hyphens);
+        features.setNonAsciiHost(nonAsciiCount > 0);
+        features.setHostEntropy(entropy(charCounts, counted));
+        // IPv4 dạng a.b.c.d, hoặc một số nguyên / hex duy nhất (http://3232235521/)
+        features.setIpLiteral((allNumericLabels && (labels == 4 || labels == 1)) || (hexLiteral && labels <= 4));
+
+        int tldStart = lastLabelStart - start;
+        features.setTld(hostValue.substring(tldStart));
+
+        // Domain đăng ký ~ hai label cuối, hoặc ba label với các đuôi như .com.vn, .co.uk
+        int registeredStart = secondLastLabelStart < 0 ? 0 : secondLastLabelStart - start;
+        if (thirdLastLabelStart >= 0 && SECOND_LEVEL_SUFFIXES.contains(
+                hostValue.substring(registeredStart, tldStart - 1))) {
+            registeredStart = thirdLastLabelStart - start;
+        }
+        int registeredLabelEnd = hostValue.indexOf('.', registeredStart);
+        if (registeredLabelEnd < 0) {
+            registeredLabelEnd = hostValue.length();
+        }
+        features.setRegisteredDomain(hostValue.substring(registeredStart));
+        analyzeHostTokens(hostValue, tldStart, registeredStart, registeredLabelEnd, features);
+    }
+
+    // Duyệt các token của host (tách bởi '.' và '-', bỏ TLD): đếm từ khóa đáng ngờ, tìm token giả thương hiệu
+    // và thương hiệu nằm trong subdomain hoặc ghép bằng '-' trong domain đăng ký (paypal-secure.com).
+    // So khớp cả token chứ không theo chuỗi con, để "purchase" không bị coi là chứa "chase"
+    private static void analyzeHostTokens(String host, int tldStart, int registeredStart, int registeredLabelEnd,
+                                          UrlFeatures features) {
+        int suspicious = 0;
+        boolean lookalike = false;
+        boolean brand = false;
+        boolean hyphenatedRegisteredLabel = host.substring(registeredStart, registeredLabelEnd).indexOf('-') >= 0;
+        int tokenStart = 0;
+        for (int i = 0; i <= tldStart; i++) {
+            char c = i < tldStart ? host.charAt(i) : '.';
+            if (c != '.' && c != '-') {
+                continue;
+            }
+            if (i > tokenStart) {
+                String token = host.substring(tokenStart, i);
+                if (SUSPICIOUS_TOKENS.contains(token)) {
+                    suspicious++;
+                }
+                if (BRANDS.contains(token) && (tokenStart < registeredStart
+                        || (hyphenatedRegisteredLabel && i <= registeredLabelEnd))) {
+                    brand = true;
+                }
+                lookalike |= isBrandLookalike(token);
+            }
+            tokenStart = i + 1;
+        }
+        features.setHostSuspiciousTokens(suspicious);
+        features.setBrandLookalike(lookalike);
+        features.setBrandInSubdomain(brand);
+    }
+
+    // Token khác thương hiệu nhưng trùng sau khi gộp ký tự dễ nhầm (0->o, 1->l, rn->m...),
+    // hoặc lệch đúng một ký tự với thương hiệu đủ dài (paypall, amazzon)
+    static boolean isBrandLookalike(String token) {
+        if (token.length() < 3 || BRANDS.contains(token)) {
+            return false;
+        }
+        String folded = foldConfusables(token);
+        for (String candidate : FOLDED_BRANDS) {
+            if (folded.equals(candidate) || (candidate.length() >= 6 && withinOneEdit(folded, candidate))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String foldConfusables(String token) {
+        StringBuilder out = new StringBuilder(token.length());
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            char next = i + 1 < token.length() ? token.charAt(i + 1) : 0;
+            if (c == 'r' && next == 'n') {
+                out.append('m');
+                i++;
+                continue;
+            }
+            if (c == 'v' && next == 'v') {
+                out.append('w');
+                i++;
+                continue;
+            }
+            out.append(switch (c) {
+                case '0' -> 'o';
+                case '1', 'i' -> 'l';
+                case '3' -> 'e';
+                case '4', '@' -> 'a';
+                case '5', '$' -> 's';
+                case '7' -> 't';
+                case '8' -> 'b';
+                default -> c;
+            });
+        }
+        return out.toString();
+    }
+
+    // Khoảng cách Levenshtein <= 1, một lần duyệt
+    private static boolean withinOneEdit(String a, String b) {
+        if (Math.abs(a.length() - b.length()) > 1) {
+            return false;
+        }
+        if (a.length() > b.length()) {
+            String t = a;
+            a = b;
+            b = t;
+        }
+        int i = 0;
+        int j = 0;
+        boolean edited = false;
+        while (i < a.length() && j < b.length()) {
+            if (a.charAt(i) == b.charAt(j)) {
+                i++;
+                j++;
+                continue;
+            }
+            if (edited) {
+                return false;
+            }
+            edited = true;
+            if (a.length() == b.length()) {
+                i++;
+            }
+            j++;
+        }
+        return true;
+    }
+
+    private static void analyzePathAndQuery(String url, int start, int end, UrlFeatures features) {
+        int pathLength = 0;
+        int depth = 0;
+        int params = 0;
+        int suspicious = 0;
+        boolean inQuery = false;
+        boolean doubleSlash = false;
+        int tokenStart = -1;
+        char previous = 0;
+
+        int i = start;
+        for (; i < end; i++) {
+            char c = url.charAt(i);
+            if (c == '#') {
+                break; // bỏ fragment
+            }
+            if (c < 128 && Character.isLetterOrDigit(c)) {
+                if (tokenStart < 0) {
+                    tokenStart = i;
+                }
+            } else {
+                suspicious += suspiciousToken(url, tokenStart, i);
+                tokenStart = -1;
+                if (c == '?' && !inQuery) {
+                    inQuery = true;
+                    params = 1;
+                } else if (c == '&' && inQuery) {
+                    params++;
+                } else if (c == '/' && !inQuery) {
+                    depth++;
+                    doubleSlash |= previous == '/';
+                }
+            }
+            if (!inQuery) {
+                pathLength++;
+            }
+            previous = c;
+        }
+        suspicious += suspiciousToken(url, tokenStart, i);
+
+        features.setPathLength(pathLength);
+        features.setPathDepth(depth);
+        features.setQueryParams(params);
+        features.setDoubleSlashInPath(doubleSlash);
+        features.setSuspiciousTokens(suspicious);
+    }
+
+    private static int suspiciousToken(String url, int tokenStart, int tokenEnd) {
+        if (tokenStart < 0) {
+            return 0;
+        }
+        return SUSPICIOUS_TOKENS.contains(url.substring(tokenStart, tokenEnd).toLowerCase(Locale.ROOT)) ? 1 : 0;
+    }
+
+    private static double entropy(int[] counts, int total) {
+        if (total == 0) {
+            return 0.0;
+        }
+        double result = 0.0;
+        for (int count : counts) {
+            if (count > 0) {
+                double p = (double) count / total;
+                result -= p * (Math.log(p) / Math.log(2));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.restfulapi01.urlrisk;
+
+import lombok.Data;
+
+/**
+ * Các đặc trưng từ vựng (lexical) của một URL, được tính bởi UrlFeatureExtractor trong một lần duyệt.
+ */
+@Data
+public class UrlFeatures {
+    private boolean parsed;             // false nếu không tách được host
+    private boolean hasScheme;
+    private boolean https;
+    private int length;
+
+    private String host = "";
+    private String tld = "";
+    private String registeredDomain = ""; // ~ hai label cuối (ba với .com.vn, .co.uk)
+    private int hostLength;
+    private int labelCount;             // số phần của host tách bởi dấu '.'
+    private int maxLabelLength;
+    private int hostDigits;
+    private int hostHyphens;
+    private double hostEntropy;         // Shannon entropy (bit/ký tự) của host, bỏ dấu '.'
+
+    private boolean ipLiteral;          // 192.168.0.1, 0x7f000001, 3232235521, [::1]
+    private boolean punycode;           // có label bắt đầu bằng "xn--"
+    private boolean nonAsciiHost;       // ký tự Unicode trong host (homoglyph)
+    private boolean userInfo;           // '@' trong authority: http://paypal.com@evil.example
+    private boolean explicitPort;
+
+    private int pathLength;
+    private int pathDepth;              // số dấu '/' trong path
+    private int queryParams;
+    private boolean doubleSlashInPath;  // '//' sau authority, thường dùng để redirect
+    private int suspiciousTokens;       // login, verify, account... trong path/query
+    private boolean brandInSubdomain;   // tên thương hiệu nằm ngoài domain đăng ký: paypal.com.evil.example
+    private boolean brandLookalike;     // label gần giống thương hiệu: paypa1, rnicrosoft, g00gle
+    private int hostSuspiciousTokens;   // login, verify, account... trong các label của host
+}
@@ -0,0 +1,15 @@
+package com.example.restfulapi01.urlrisk;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UrlRiskAssessment {
+    private double risk;            // 0..1, càng cao càng giống phishing
+    private List<String> reasons;   // Các đặc trưng đã làm tăng điểm rủi ro
+}
@@ -0,0 +1,101 @@
+package com.example.restfulapi01.urlrisk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Chấm điểm rủi ro từ UrlFeatures bằng tổng có trọng số đưa qua hàm sigmoid.
+ * Trọng số được chỉnh tay: một URL không có tín hiệu nào cho điểm ~0.01 (sigmoid(BIAS)), một tín hiệu mạnh
+ * (IP, '@' trong authority, thương hiệu trong subdomain) cộng thêm vài tín hiệu phụ sẽ vượt 0.9.
+ * Điểm thấp chỉ có nghĩa là "không thấy dấu hiệu", không phải bằng chứng URL an toàn.
+ */
+public final class UrlRiskScorer {
+
+    // Các TLD rẻ/miễn phí bị lạm dụng nhiều trong các chiến dịch phishing
+    private static final Set<String> RISKY_TLDS = Set.of(
+            "tk", "ml", "ga", "cf", "gq", "xyz", "top", "zip", "mov", "work", "click", "country",
+            "kim", "support", "rest", "fit", "loan", "men", "icu", "buzz", "cyou", "monster", "live"
+    );
+
+    static final double BIAS = -4.5;
+
+    private UrlRiskScorer() {
+    }
+
+    public static UrlRiskAssessment score(UrlFeatures f) {
+        List<String> reasons = new ArrayList<>();
+        double z = BIAS;
+
+        if (f.isIpLiteral()) {
+            z += 4.5;
+            reasons.add("IP address used as host");
+        }
+        if (f.isUserInfo()) {
+            z += 3.5;
+            reasons.add("'@' in authority hides the real host");
+        }
+        if (f.isNonAsciiHost()) {
+            z += 2.5;
+            reasons.add("non-ASCII characters in host (possible homoglyph)");
+        } else if (f.isPunycode()) {
+            z += 2.0;
+            reasons.add("punycode (xn--) label in host");
+        }
+        if (f.isBrandInSubdomain()) {
+            z += 3.0;
+            reasons.add("brand name outside the registered domain");
+        }
+        if (f.isBrandLookalike()) {
+            z += 4.0;
+            reasons.add("host imitates a brand name (look-alike characters)");
+        }
+        if (f.getHostSuspiciousTokens() > 0) {
+            z += 0.8 * Math.min(f.getHostSuspiciousTokens(), 2);
+            reasons.add(f.getHostSuspiciousTokens() + " credential/account keyword(s) in host");
+        }
+        if (RISKY_TLDS.contains(f.getTld())) {
+            z += 1.5;
+            reasons.add("high-risk TLD ." + f.getTld());
+        }
+        if (f.getSuspiciousTokens() > 0) {
+            z += 1.0 * Math.min(f.getSuspiciousTokens(), 3);
+            reasons.add(f.getSuspiciousTokens() + " credential/account keyword(s) in path");
+        }
+        if (f.getLabelCount() > 3) {
+            z += 0.7 * Math.min(f.getLabelCount() - 3, 4);
+            reasons.add(f.getLabelCount() + " host labels (excessive subdomains)");
+        }
+        if (f.getHostEntropy() > 3.9 && f.getHostLength() > 15) {
+            z += 1.0;
+            reasons.add("high-entropy host name");
+        }
+        if (f.getHostHyphens() >= 3) {
+            z += 0.8;
+            reasons.add("many hyphens in host");
+        }
+        if (f.getHostDigits() >= 5 && !f.isIpLiteral()) {
+            z += 0.6;
+            reasons.add("many digits in host");
+        }
+        if (f.isDoubleSlashInPath()) {
+            z += 0.8;
+            reasons.add("'//' in path (embedded redirect)");
+        }
+        if (f.isExplicitPort()) {
+            z += 0.6;
+            reasons.add("non-default port");
+        }
+        if (f.getLength() > 100) {
+            z += 0.7;
+            reasons.add("very long URL");
+        }
+        if (f.isHasScheme() && !f.isHttps()) {
+            z += 0.3;
+            reasons.add("plain http");
+        }
+
+        double risk = 1.0 / (1.0 + Math.exp(-z));
+        return new UrlRiskAssessment(risk, reasons);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.restfulapi01.cache;
+
+import com.example.restfulapi01.payload.CacheStatsResponse;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BoundedTtlCacheTests {
+
+	@Test
+	void evictsLeastRecentlyUsedWhenFull() {
+		BoundedTtlCache<String, Integer> cache = new BoundedTtlCache<>(2, Duration.ofMinutes(1));
+		cache.put("a", 1);
+		cache.put("b", 2);
+		cache.get("a"); // "a" vừa được dùng, "b" sẽ bị đẩy ra
+		cache.put("c", 3);
+
+		assertEquals(1, cache.get("a"));
+		assertNull(cache.get("b"));
+		assertEquals(3, cache.get("c"));
+
+		CacheStatsResponse stats = cache.stats();
+		assertEquals(1, stats.getEvictions());
+		assertEquals(3, stats.getHits());
+		assertEquals(1, stats.getMisses());
+	}
+
+	@Test
+	void expiresEntriesAfterTtl() throws InterruptedException {
+		BoundedTtlCache<String, Integer> cache = new BoundedTtlCache<>(10, Duration.ofMinutes(1));
+		cache.put("short", 1, Duration.ofMillis(5));
+		cache.put("skipped", 2, Duration.ZERO);
+		Thread.sleep(20);
+
+		assertNull(cache.get("short"));
+		assertNull(cache.get("skipped"));
+		assertEquals(1, cache.stats().getExpirations());
+	}
+
+}
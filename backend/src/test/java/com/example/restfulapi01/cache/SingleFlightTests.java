@@ -0,0 +1,40 @@
+package com.example.restfulapi01.cache;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SingleFlightTests {
+
+	@Test
+	void concurrentCallersShareOneUpstreamCall() {
+		SingleFlight<String, String> singleFlight = new SingleFlight<>();
+		AtomicInteger upstreamCalls = new AtomicInteger();
+		Sinks.One<String> upstream = Sinks.one();
+
+		Mono<String> first = singleFlight.execute("key", () -> {
+			upstreamCalls.incrementAndGet();
+			return upstream.asMono();
+		}).cache();
+		Mono<String> second = singleFlight.execute("key", () -> {
+			upstreamCalls.incrementAndGet();
+			return Mono.just("other");
+		}).cache();
+		first.subscribe();
+		second.subscribe();
+
+		upstream.tryEmitValue("verdict");
+		assertEquals("verdict", first.block());
+		assertEquals("verdict", second.block());
+		assertEquals(1, upstreamCalls.get());
+		assertEquals(1, singleFlight.stats().getCoalesced());
+
+		// Lời gọi đã xong thì khóa được gỡ: lần sau gọi thật lại
+		assertEquals("fresh", singleFlight.execute("key", () -> Mono.just("fresh")).block());
+		assertEquals(0, singleFlight.stats().getInFlight());
+	}
+}
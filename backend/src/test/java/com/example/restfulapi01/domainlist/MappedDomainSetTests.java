@@ -0,0 +1,49 @@
+package com.example.restfulapi01.domainlist;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedDomainSetTests {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void compilesTextListAndFindsEntries() throws Exception {
+		Path source = dir.resolve("blocklist.txt");
+		Files.write(source, List.of(
+				"# comment",
+				"Evil.COM",
+				"*.phish.example",
+				"0.0.0.0 tracker.example # hosts file",
+				"https://login.bad.example/path",
+				"evil.com"));
+		Path index = dir.resolve("blocklist.idx");
+
+		assertEquals(4, DomainListCompiler.compile(source, index)); // "evil.com" trùng lặp bị bỏ
+
+		MappedDomainSet set = MappedDomainSet.open(index);
+		assertEquals(4, set.size());
+		assertTrue(set.contains(DomainHash.hash("evil.com", 0)));
+		assertTrue(set.contains(DomainHash.hash("phish.example", 0)));
+		assertTrue(set.contains(DomainHash.hash("tracker.example", 0)));
+		assertTrue(set.contains(DomainHash.hash("login.bad.example", 0)));
+		assertFalse(set.contains(DomainHash.hash("good.com", 0)));
+	}
+
+	@Test
+	void hostOfStripsSchemeUserInfoPortAndPath() {
+		assertEquals("evil.example", DomainHash.hostOf("http://paypal.com@Evil.Example:8080/login?x=1"));
+		assertEquals("example.com", DomainHash.hostOf("example.com."));
+		// Hash của hậu tố tính trực tiếp trên host, không cần tạo chuỗi con
+		assertEquals(DomainHash.hash("evil.com", 0), DomainHash.hash("a.b.evil.com", 4));
+	}
+}
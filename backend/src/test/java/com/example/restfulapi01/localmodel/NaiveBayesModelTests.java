@@ -0,0 +1,41 @@
+package com.example.restfulapi01.localmodel;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NaiveBayesModelTests {
+
+	private static final String[] LABELS = {"phishing attempt", "newsletter"};
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void learnsFromLabelledTextAndSurvivesSaveLoad() throws Exception {
+		NaiveBayesTrainer trainer = new NaiveBayesTrainer(LABELS, 12);
+		for (int i = 0; i < 20; i++) {
+			trainer.add("Urgent: verify your account password now or it will be suspended #" + i, 0);
+			trainer.add("Our weekly newsletter: product updates, blog posts and events, issue " + i, 1);
+		}
+		NaiveBayesModel model = trainer.build(0.1);
+
+		double[] phishing = model.predict("Please verify your password, account suspended");
+		double[] newsletter = model.predict("This week's blog posts and product updates");
+		assertTrue(phishing[0] > 0.9);
+		assertTrue(newsletter[1] > 0.9);
+		assertEquals(1.0, phishing[0] + phishing[1], 1e-9);
+
+		Path file = dir.resolve("model.bin");
+		model.writeTo(file);
+		NaiveBayesModel loaded = NaiveBayesModel.readFrom(file);
+		assertArrayEquals(LABELS, loaded.getLabels());
+		assertEquals(40, loaded.getTrainedSamples());
+		assertArrayEquals(phishing, loaded.predict("Please verify your password, account suspended"), 1e-12);
+	}
+}
@@ -0,0 +1,43 @@
+package com.example.restfulapi01.neardup;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NearDuplicateIndexTests {
+
+	private static final String CAMPAIGN = "Dear %s, we detected unusual sign-in activity on your PayPal account. "
+			+ "A payment of $%d was put on hold. To keep your account active please confirm your identity within "
+			+ "24 hours by visiting the secure verification page below. If you do not verify, your account will be "
+			+ "permanently limited and the payment will be reversed. Thank you for being a valued customer.";
+
+	@Test
+	void campaignVariantsMatchAndUnrelatedTextDoesNot() {
+		NearDuplicateIndex<String> index = new NearDuplicateIndex<>(16, 60_000, 7);
+		index.put(SimHash.fingerprint(CAMPAIGN.formatted("John", 120)).getAsLong(), "PHISHING", 0);
+
+		long variant = SimHash.fingerprint(CAMPAIGN.formatted("Maria", 987)).getAsLong();
+		assertEquals("PHISHING", index.find(variant, 1_000).orElseThrow().value());
+
+		long unrelated = SimHash.fingerprint("Hi team, the quarterly planning meeting moved to Thursday at 3pm. "
+				+ "Please review the attached roadmap draft and bring your questions about hiring and budget.").getAsLong();
+		assertTrue(index.find(unrelated, 1_000).isEmpty());
+		assertTrue(SimHash.fingerprint("Thanks, see you tomorrow").isEmpty());
+	}
+
+	@Test
+	void entriesExpireAndOldestSlotIsOverwritten() {
+		NearDuplicateIndex<String> index = new NearDuplicateIndex<>(2, 60_000, 0);
+		index.put(1L, "a", 0);
+		index.put(2L, "b", 0);
+		assertFalse(index.find(1L, 60_001).isPresent());
+
+		index.put(3L, "c", 10);
+		assertEquals(2, index.size());
+		assertTrue(index.find(1L, 10).isEmpty());
+		assertEquals("b", index.find(2L, 10).orElseThrow().value());
+		assertEquals("c", index.find(3L, 10).orElseThrow().value());
+	}
+}
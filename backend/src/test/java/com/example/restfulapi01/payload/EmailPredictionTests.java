@@ -0,0 +1,45 @@
+package com.example.restfulapi01.payload;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EmailPredictionTests {
+
+	private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+	@Test
+	void serializesExactlyLikeTheOldHashMap() throws Exception {
+		Map<String, Object> legacy = new HashMap<>();
+		legacy.put("label", "PHISHING");
+		legacy.put("score", 0.71);
+
+		assertEquals(objectMapper.writeValueAsString(List.of(legacy)),
+				objectMapper.writeValueAsString(List.of(new EmailPrediction("PHISHING", 0.71))));
+	}
+
+	@Test
+	void readsPredictionsStoredBeforeTheRecordExisted() throws Exception {
+		List<EmailPrediction> parsed = objectMapper.readValue(
+				"[{\"score\":0.0,\"label\":\"No clear prediction above threshold\"},{\"label\":\"SPAM\",\"score\":0.5}]",
+				objectMapper.getTypeFactory().constructCollectionType(List.class, EmailPrediction.class));
+
+		assertEquals(List.of(new EmailPrediction("No clear prediction above threshold", 0.0), new EmailPrediction("SPAM", 0.5)), parsed);
+	}
+
+	@Test
+	void mapsZeroShotLabels() {
+		assertEquals(EmailLabel.PHISHING, EmailLabel.fromZeroShotLabel("phishing attempt"));
+		assertEquals(EmailLabel.HAM, EmailLabel.fromZeroShotLabel("Legitimate Communication"));
+		assertEquals(EmailLabel.OTHER, EmailLabel.fromZeroShotLabel("something else"));
+		assertEquals(EmailLabel.OTHER, EmailLabel.fromZeroShotLabel(null));
+		assertEquals(List.of("spam email", "phishing attempt", "promotional offer", "newsletter", "transactional message",
+				"legitimate communication", "suspicious email", "social media notification"), EmailLabel.zeroShotLabels());
+	}
+}
@@ -0,0 +1,96 @@
+package com.example.restfulapi01.preprocess;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmailTextCleanerTests {
+
+	@Test
+	void stripsHtmlTrackingAndInvisibleCharacters() {
+		String html = "<html><head><style>.x{color:red}</style></head><body>"
+				+ "<div style=\"display:none\">&#847;&zwnj;&nbsp;&#847;&zwnj;&nbsp;</div>"
+				+ "<p>Your&nbsp;account is <b>locked</b> &amp; needs action.</p>"
+				+ "<a href=\"https://evil.example/login?utm_source=mail&id=123\">https://evil.example/login?utm_source=mail&amp;id=123</a>"
+				+ "<img src=\"https://track.example/p.gif?u=42\" width=\"1\"><!-- tracking --></body></html>";
+
+		assertEquals("Your account is locked & needs action. https://evil.example/login", EmailTextCleaner.clean(html));
+	}
+
+	@Test
+	void dropsQuotedReplySignatureAndBase64() {
+		String body = "Thanks, the invoice for March is attached and payment is due Friday.\r\n"
+				+ "-- \r\n"
+				+ "John Doe | Accounting\r\n"
+				+ "\r\n"
+				+ "On Mon, 3 Mar 2025 at 10:00, Jane <jane@example.com> wrote:\r\n"
+				+ "> Can you send the invoice?\r\n";
+		assertEquals("Thanks, the invoice for March is attached and payment is due Friday.", EmailTextCleaner.clean(body));
+
+		String blob = "See attachment " + "QUJDREVGR0hJSktMTU5PUFFSU1RVVldYWVo".repeat(5) + "== end";
+		assertEquals("See attachment end", EmailTextCleaner.clean(blob));
+	}
+
+	@Test
+	void keepsForwardedContentWhenReplyIsTooShort() {
+		String body = "FYI\n\nOn Tue, Bank <alerts@bank.example> wrote:\n> Verify your password within 24 hours or your account will be suspended.";
+
+		String cleaned = EmailTextCleaner.clean(body);
+		assertTrue(cleaned.contains("Verify your password within 24 hours"));
+		assertFalse(cleaned.contains("> Verify"));
+	}
+
+	@Test
+	void keepsHtmlBlockquoteWhenItIsTheWholeMessage() {
+		String payload = "Your PayPal account has been suspended. Verify your identity at http://paypa1-secure.com/login within 24 hours.";
+		String quotedOnly = "<html><body><blockquote><p>" + payload + "</p></blockquote></body></html>";
+		assertEquals(payload, EmailTextCleaner.clean(quotedOnly));
+
+		String reply = "<html><body><p>Thanks, the invoice for March is attached and payment is due Friday.</p>"
+				+ "<blockquote><p>Can you send the invoice?</p>\n<p>Regards</p></blockquote></body></html>";
+		assertEquals("Thanks, the invoice for March is attached and payment is due Friday.", EmailTextCleaner.clean(reply));
+	}
+
+	@Test
+	void doesNotTreatLongContentAfterDashesAsSignature() {
+		String payload = "Your PayPal account has been suspended due to unusual activity. To restore access, verify your "
+				+ "identity within 24 hours at http://paypa1-secure.com/login or your account will be permanently closed.";
+		String body = "Hello, hope you are doing well and had a great weekend with the family.\n--\n" + payload;
+
+		assertTrue(EmailTextCleaner.clean(body).contains(payload));
+		assertTrue(EmailTextCleaner.clean(body.replace("\n--\n", "\n__\n")).contains(payload));
+	}
+
+	@Test
+	void truncatesToApproximateTokenBudget() {
+		String text = "word ".repeat(1000).strip();
+
+		assertEquals(1000, ApproximateTokenizer.countTokens(text));
+		String truncated = ApproximateTokenizer.truncate(text, 10);
+		assertEquals("word ".repeat(10).strip(), truncated);
+		assertEquals("short text", ApproximateTokenizer.truncate("short text", 10));
+		assertEquals(3, ApproximateTokenizer.countTokens("verification!"));
+	}
+
+	@Test
+	void splitsIntoOverlappingChunksWithinBudget() {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			text.append("w").append(i).append(' ');
+		}
+
+		List<String> chunks = ApproximateTokenizer.split(text.toString().strip(), 40, 10);
+		assertEquals("w0", chunks.get(0).substring(0, 2));
+		assertTrue(chunks.get(0).endsWith("w39"));
+		assertTrue(chunks.get(1).startsWith("w30 "));
+		assertTrue(chunks.get(chunks.size() - 1).endsWith("w99"));
+		for (String chunk : chunks) {
+			assertTrue(ApproximateTokenizer.countTokens(chunk) <= 40);
+		}
+		assertEquals(List.of("short text"), ApproximateTokenizer.split("short text", 40, 10));
+	}
+}
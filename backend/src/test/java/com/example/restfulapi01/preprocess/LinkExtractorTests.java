@@ -0,0 +1,26 @@
+package com.example.restfulapi01.preprocess;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LinkExtractorTests {
+
+	@Test
+	void extractsLinksFromTextAndHtmlDedupedByHost() {
+		String body = "<p>Verify now: <a href=\"https://Secure-PayPal.example.com/login?id=1&amp;t=2\">click</a></p>"
+				+ " or visit https://secure-paypal.example.com/other, www.shop.example.org."
+				+ " Also http://user@203.0.113.7:8080/x and (http://tracker.example.net/p)."
+				+ " Not a link: email@example.com, nohttp://x.example.com";
+
+		List<LinkExtractor.Link> links = LinkExtractor.extract(body, 10);
+
+		assertEquals(List.of("secure-paypal.example.com", "www.shop.example.org", "203.0.113.7", "tracker.example.net"),
+				links.stream().map(LinkExtractor.Link::host).toList());
+		assertEquals("https://Secure-PayPal.example.com/login?id=1&t=2", links.get(0).url());
+		assertEquals("http://tracker.example.net/p", links.get(3).url());
+		assertEquals(2, LinkExtractor.extract(body, 2).size());
+	}
+}
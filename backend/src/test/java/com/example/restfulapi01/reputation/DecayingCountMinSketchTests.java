@@ -0,0 +1,40 @@
+package com.example.restfulapi01.reputation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DecayingCountMinSketchTests {
+
+	private static final long HALF_LIFE = 1_000;
+
+	@Test
+	void countsPerKeyAndLabelDecayByHalfLife() {
+		DecayingCountMinSketch sketch = new DecayingCountMinSketch(4, 10, 3, HALF_LIFE, 0);
+		for (int i = 0; i < 8; i++) {
+			sketch.add("bad@phish.example", 1, 0);
+		}
+		sketch.add("bad@phish.example", 2, 0);
+		for (int i = 0; i < 500; i++) {
+			sketch.add("user" + i + "@mail.example", i % 3, 0);
+		}
+
+		double[] now = sketch.estimate("bad@phish.example", 0);
+		assertTrue(now[1] >= 8 && now[1] < 8.5, "count-min never underestimates, conservative update keeps noise low");
+		assertTrue(now[0] < 0.5);
+
+		double[] later = sketch.estimate("bad@phish.example", HALF_LIFE);
+		assertEquals(now[1] / 2, later[1], 1e-6);
+	}
+
+	@Test
+	void rescalingKeepsDecayedCounts() {
+		DecayingCountMinSketch sketch = new DecayingCountMinSketch(2, 8, 1, HALF_LIFE, 0);
+		sketch.add("a@x.example", 0, 0);
+		// Vượt 64 chu kỳ bán rã -> chia lại mọi ô và dời epoch
+		sketch.add("a@x.example", 0, 70 * HALF_LIFE);
+		assertEquals(1.0, sketch.estimate("a@x.example", 70 * HALF_LIFE)[0], 1e-6);
+		assertEquals(0.5, sketch.estimate("a@x.example", 71 * HALF_LIFE)[0], 1e-6);
+	}
+}
@@ -0,0 +1,75 @@
+package com.example.restfulapi01.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTests {
+
+	@Test
+	void opensOnFailureRateAndClosesAfterSuccessfulProbes() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker("test", 10, 0.5, 4, 20, 2);
+		for (int i = 0; i < 4; i++) {
+			long permit = breaker.tryAcquire();
+			assertNotEquals(CircuitBreaker.REJECTED, permit);
+			breaker.onFailure(permit);
+		}
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+
+		Thread.sleep(30);
+		// HALF_OPEN: chỉ cho đúng 2 lời gọi thử
+		long probe1 = breaker.tryAcquire();
+		long probe2 = breaker.tryAcquire();
+		assertNotEquals(CircuitBreaker.REJECTED, probe1);
+		assertNotEquals(CircuitBreaker.REJECTED, probe2);
+		assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+		breaker.onSuccess(probe1);
+		breaker.onSuccess(probe2);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertNotEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+	}
+
+	@Test
+	void ignoresLateResultsOfCallsAdmittedBeforeHalfOpen() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker("test", 10, 0.5, 2, 20, 1);
+		// Lời gọi chậm được cho phép khi còn CLOSED, kết thúc sau khi breaker đã sang HALF_OPEN
+		long slowSuccess = breaker.tryAcquire();
+		long slowFailure = breaker.tryAcquire();
+		for (int i = 0; i < 2; i++) {
+			breaker.onFailure(breaker.tryAcquire());
+		}
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+		Thread.sleep(30);
+		long probe = breaker.tryAcquire();
+		assertNotEquals(CircuitBreaker.REJECTED, probe);
+		assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+
+		// Không phải lượt thử: không được đóng breaker, cũng không được mở lại
+		breaker.onSuccess(slowSuccess);
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+		assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+		breaker.onFailure(slowFailure);
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+		breaker.onSuccess(probe);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	void limiterRejectsAboveLimitAndBacksOffOnDrops() {
+		AimdLimiter limiter = new AimdLimiter(2, 1, 10, 0.5, 2.0);
+		assertTrue(limiter.tryAcquire());
+		assertTrue(limiter.tryAcquire());
+		assertFalse(limiter.tryAcquire()); // vượt giới hạn: từ chối ngay, không xếp hàng
+
+		limiter.onDropped();
+		limiter.onDropped();
+		assertEquals(1, limiter.getLimit());
+		assertEquals(0, limiter.getInFlight());
+	}
+}
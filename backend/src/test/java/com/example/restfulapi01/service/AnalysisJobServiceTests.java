@@ -0,0 +1,135 @@
+package com.example.restfulapi01.service;
+
+import com.example.restfulapi01.payload.AnalysisJob;
+import com.example.restfulapi01.payload.EmailAnalyzeRequest;
+import com.example.restfulapi01.payload.EmailAnalyzeResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnalysisJobServiceTests {
+
+	private final CountDownLatch started = new CountDownLatch(1);
+	private final CountDownLatch release = new CountDownLatch(1);
+	private AnalysisJobService jobs;
+
+	@AfterEach
+	void tearDown() {
+		release.countDown();
+		if (jobs != null) {
+			jobs.shutdown();
+		}
+	}
+
+	@Test
+	void rejectsWhenQueueIsFullAndMovesJobsThroughStates() throws Exception {
+		jobs = service(1, 1, 5);
+
+		AnalysisJob first = jobs.submit(1L, request("first")).orElseThrow();
+		assertEquals(AnalysisJobService.PENDING, first.getStatus());
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		assertEquals(AnalysisJobService.RUNNING, jobs.find(1L, first.getJobId()).orElseThrow().getStatus());
+
+		AnalysisJob queued = jobs.submit(1L, request("second")).orElseThrow();
+		assertEquals(AnalysisJobService.PENDING, jobs.find(1L, queued.getJobId()).orElseThrow().getStatus());
+		// Một worker đang bận, hàng đợi (1) đã đầy: từ chối ngay, controller trả 503
+		assertTrue(jobs.submit(1L, request("third")).isEmpty());
+
+		release.countDown();
+		AnalysisJob done = awaitFinished(1L, first.getJobId());
+		assertEquals(AnalysisJobService.DONE, done.getStatus());
+		assertEquals("first", done.getResult().getSubject());
+		assertTrue(done.getCompletedAt() != null);
+		assertEquals(AnalysisJobService.DONE, awaitFinished(1L, queued.getJobId()).getStatus());
+	}
+
+	@Test
+	void recordsFailuresAndHidesJobsOfOtherUsers() throws Exception {
+		jobs = service(1, 4, 5);
+		release.countDown();
+
+		AnalysisJob job = jobs.submit(1L, request("boom")).orElseThrow();
+		AnalysisJob failed = awaitFinished(1L, job.getJobId());
+		assertEquals(AnalysisJobService.FAILED, failed.getStatus());
+		assertEquals("IllegalStateException: upstream exploded", failed.getError());
+
+		assertTrue(jobs.find(2L, job.getJobId()).isEmpty());
+		assertTrue(jobs.find(1L, "missing").isEmpty());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void closesOldestStreamBeyondPerUserLimit() {
+		jobs = service(1, 4, 2);
+
+		SseEmitter oldest = jobs.subscribe(1L);
+		SseEmitter second = jobs.subscribe(1L);
+		SseEmitter newest = jobs.subscribe(1L);
+		jobs.subscribe(2L);
+
+		Map<Long, List<SseEmitter>> streams = (Map<Long, List<SseEmitter>>) ReflectionTestUtils.getField(jobs, "streams");
+		assertEquals(List.of(second, newest), streams.get(1L));
+		assertEquals(1, streams.get(2L).size());
+		// Stream bị loại đã complete nên không gửi thêm được
+		assertThrows(IllegalStateException.class, () -> oldest.send("late"));
+	}
+
+	private AnalysisJobService service(int threads, int queueSize, int maxStreamsPerUser) {
+		return new AnalysisJobService(new StubAnalysisService(), new AnalysisMetrics(new SimpleMeterRegistry()),
+				threads, queueSize, 100, 30, 30, maxStreamsPerUser, false);
+	}
+
+	private AnalysisJob awaitFinished(Long userId, String jobId) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (System.nanoTime() < deadline) {
+			AnalysisJob job = jobs.find(userId, jobId).orElseThrow();
+			if (AnalysisJobService.DONE.equals(job.getStatus()) || AnalysisJobService.FAILED.equals(job.getStatus())) {
+				return job;
+			}
+			Thread.sleep(10);
+		}
+		throw new AssertionError("job " + jobId + " did not finish");
+	}
+
+	private static EmailAnalyzeRequest request(String subject) {
+		EmailAnalyzeRequest request = new EmailAnalyzeRequest();
+		request.setSender("a@b.example");
+		request.setSubject(subject);
+		request.setBody("body");
+		return request;
+	}
+
+	// Thay cho pipeline thật: chặn tới khi test cho phép, "boom" thì ném lỗi
+	private class StubAnalysisService extends EmailAnalysisService {
+
+		StubAnalysisService() {
+			super(null, "org/model", 1000, null, null, null, null, null, null, null, null, null, null, null);
+		}
+
+		@Override
+		public EmailAnalyzeResponse analyze(Long userId, EmailAnalyzeRequest request) {
+			started.countDown();
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if ("boom".equals(request.getSubject())) {
+				throw new IllegalStateException("upstream exploded");
+			}
+			return new EmailAnalyzeResponse(request.getSender(), request.getSubject(), request.getBody(), "HAM", 0.9,
+					List.of(), "Email analysis complete.", "MODEL");
+		}
+	}
+}
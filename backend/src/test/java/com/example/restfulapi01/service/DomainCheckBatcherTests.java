@@ -0,0 +1,142 @@
+package com.example.restfulapi01.service;
+
+import com.example.restfulapi01.payload.LabelScore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DomainCheckBatcherTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final List<Object> receivedInputs = new CopyOnWriteArrayList<>();
+	private HttpServer server;
+	private HuggingFaceInferenceClient client;
+	private DomainCheckBatcher batcher;
+
+	@AfterEach
+	void tearDown() {
+		if (batcher != null) {
+			batcher.shutdown();
+		}
+		if (client != null) {
+			client.shutdown();
+		}
+		if (server != null) {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void sendsBatchAsListAndSlicesResultsBackToEachCaller() throws Exception {
+		start(0);
+
+		List<CompletableFuture<List<LabelScore>>> results = new ArrayList<>();
+		for (String input : List.of("a.example", "b.example", "c.example")) {
+			results.add(batcher.submit(input));
+		}
+
+		for (int i = 0; i < results.size(); i++) {
+			List<LabelScore> scores = results.get(i).get(5, TimeUnit.SECONDS);
+			assertEquals(List.of(new LabelScore("echo:" + (char) ('a' + i) + ".example", 0.9)), scores);
+		}
+		assertEquals(List.of(List.of("a.example", "b.example", "c.example")), receivedInputs);
+	}
+
+	@Test
+	void sendsSingleInputAsPlainString() throws Exception {
+		start(0);
+
+		assertEquals(List.of(new LabelScore("echo:solo.example", 0.9)),
+				batcher.submit("solo.example").get(5, TimeUnit.SECONDS));
+		assertEquals(List.of("solo.example"), receivedInputs);
+	}
+
+	@Test
+	void retriesEachInputOnItsOwnWhenResponseSizeDoesNotMatchBatch() throws Exception {
+		start(1);
+
+		List<CompletableFuture<List<LabelScore>>> results = List.of(
+				batcher.submit("a.example"), batcher.submit("b.example"), batcher.submit("c.example"));
+
+		for (int i = 0; i < results.size(); i++) {
+			assertEquals(List.of(new LabelScore("echo:" + (char) ('a' + i) + ".example", 0.9)),
+					results.get(i).get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(List.of("a.example", "b.example", "c.example"), receivedInputs.get(0));
+		assertEquals(Set.of("a.example", "b.example", "c.example"), Set.copyOf(receivedInputs.subList(1, 4)));
+	}
+
+	@Test
+	void badInputFailsOnlyItsOwnCaller() throws Exception {
+		start(0);
+
+		CompletableFuture<List<LabelScore>> good1 = batcher.submit("a.example");
+		CompletableFuture<List<LabelScore>> bad = batcher.submit("bad");
+		CompletableFuture<List<LabelScore>> good2 = batcher.submit("c.example");
+
+		assertEquals(List.of(new LabelScore("echo:a.example", 0.9)), good1.get(5, TimeUnit.SECONDS));
+		assertEquals(List.of(new LabelScore("echo:c.example", 0.9)), good2.get(5, TimeUnit.SECONDS));
+		ExecutionException error = assertThrows(ExecutionException.class, () -> bad.get(5, TimeUnit.SECONDS));
+		assertInstanceOf(WebClientResponseException.BadRequest.class, error.getCause());
+		assertEquals(4, receivedInputs.size());
+	}
+
+	// Model giả: mỗi input nhận một kết quả "echo:<input>"; với lô (list) thì bớt đi dropResults phần tử cuối
+	// để giả lập phản hồi lệch lô; request có input "bad" bị trả 400
+	private void start(int dropResults) throws Exception {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/models/", exchange -> {
+			Object inputs = objectMapper.readValue(exchange.getRequestBody().readAllBytes(), Map.class).get("inputs");
+			receivedInputs.add(inputs);
+			List<Object> batch = inputs instanceof List<?> list ? new ArrayList<>(list) : List.of(inputs);
+			if (batch.contains("bad")) {
+				exchange.sendResponseHeaders(400, -1);
+				exchange.close();
+				return;
+			}
+			int drop = inputs instanceof List<?> ? dropResults : 0;
+			List<List<Map<String, Object>>> response = new ArrayList<>();
+			for (Object input : batch.subList(0, batch.size() - drop)) {
+				response.add(List.of(Map.of("label", "echo:" + input, "score", 0.9)));
+			}
+			byte[] body = objectMapper.writeValueAsBytes(response);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			exchange.getResponseBody().write(body);
+			exchange.close();
+		});
+		server.start();
+
+		client = new HuggingFaceInferenceClient(WebClient.builder(), objectMapper, new SimpleMeterRegistry(),
+				"http://127.0.0.1:" + server.getAddress().getPort() + "/models", "test-token",
+				4, 10, 1000, 30000, 300000, 1000);
+		batcher = new DomainCheckBatcher(client);
+		ReflectionTestUtils.setField(batcher, "huggingFaceModelId", "url-model");
+		ReflectionTestUtils.setField(batcher, "batchingEnabled", true);
+		// Cửa sổ đủ rộng để các submit liên tiếp trong test chắc chắn vào cùng một lô
+		ReflectionTestUtils.setField(batcher, "batchWindowMs", 200L);
+		ReflectionTestUtils.setField(batcher, "maxBatchSize", 32);
+		ReflectionTestUtils.setField(batcher, "responseTimeoutMs", 5000L);
+		batcher.init();
+	}
+}
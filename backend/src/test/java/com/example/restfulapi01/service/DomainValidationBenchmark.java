@@ -0,0 +1,30 @@
+package com.example.restfulapi01.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// Regex kiểm tra URL/domain trước khi gửi sang model, với input ngắn, URL dài và input không hợp lệ
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DomainValidationBenchmark {
+
+	@Param({
+			"example.com",
+			"https://login.accounts.secure-paypal.example.co.uk/signin/v2/challenge?continue=https%3A%2F%2Fmail.example.com&flowName=GlifWebSignIn#section",
+			"not a domain at all, just some text"
+	})
+	public String input;
+
+	@Benchmark
+	public boolean isValidUrlOrDomain() {
+		return DomainCheckService.isValidUrlOrDomain(input);
+	}
+}
@@ -0,0 +1,45 @@
+package com.example.restfulapi01.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class DomainVerdictCacheTests {
+
+	// {input, khóa mong đợi}
+	private static final String[][] KEYS = {
+			{"example.com", "example.com"},
+			{"  Example.COM  ", "example.com"},
+			{"HTTPS://Example.COM/", "https://example.com"},
+			{"https://example.com:443/a", "https://example.com/a"},
+			{"http://example.com:80", "http://example.com"},
+			{"https://example.com:80/", "https://example.com:80"},
+			{"http://example.com:8080/x", "http://example.com:8080/x"},
+			{"https://example.com./path/", "https://example.com/path"},
+			{"https://example.com///", "https://example.com"},
+			{"https://example.com#top", "https://example.com"},
+			{"https://example.com/a?Token=AbC#frag", "https://example.com/a?Token=AbC"},
+			{"EXAMPLE.com?Q=1", "example.com?Q=1"},
+			{"https://Example.com/Path/To/Login", "https://example.com/Path/To/Login"},
+	};
+
+	@Test
+	void normalizesSchemeHostPortAndTrailingParts() {
+		for (String[] row : KEYS) {
+			assertEquals(row[1], DomainVerdictCache.normalizeKey(row[0]), row[0]);
+		}
+	}
+
+	@Test
+	void keepsDistinctUrlsApart() {
+		assertNotEquals(DomainVerdictCache.normalizeKey("https://example.com/Login"),
+				DomainVerdictCache.normalizeKey("https://example.com/login"));
+		assertNotEquals(DomainVerdictCache.normalizeKey("http://example.com"),
+				DomainVerdictCache.normalizeKey("https://example.com"));
+		assertNotEquals(DomainVerdictCache.normalizeKey("https://example.com:8443"),
+				DomainVerdictCache.normalizeKey("https://example.com"));
+		assertNotEquals(DomainVerdictCache.normalizeKey("https://example.com/a?id=1"),
+				DomainVerdictCache.normalizeKey("https://example.com/a?id=2"));
+	}
+}
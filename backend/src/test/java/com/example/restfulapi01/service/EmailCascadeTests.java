@@ -0,0 +1,29 @@
+package com.example.restfulapi01.service;
+
+import com.example.restfulapi01.config.EmailTaxonomyProperties;
+import com.example.restfulapi01.payload.ZeroShotResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EmailCascadeTests {
+
+	private final List<EmailTaxonomyProperties.Branch> branches = new EmailTaxonomyProperties().getBranches();
+
+	@Test
+	void evaluatesOnlyTheWinningBranchUnlessItIsClose() {
+		ZeroShotResult clearlyMalicious = new ZeroShotResult(
+				List.of("fraudulent or malicious email", "commercial or marketing email", "legitimate personal or business email"),
+				List.of(0.8, 0.15, 0.05), "MODEL");
+		assertEquals(List.of("spam email", "phishing attempt", "suspicious email"),
+				EmailAnalysisService.selectFineLabels(branches, clearlyMalicious, 0.15));
+
+		ZeroShotResult closeCall = new ZeroShotResult(
+				List.of("commercial or marketing email", "fraudulent or malicious email", "legitimate personal or business email"),
+				List.of(0.5, 0.42, 0.08), "MODEL");
+		assertEquals(List.of("spam email", "phishing attempt", "promotional offer", "newsletter", "suspicious email"),
+				EmailAnalysisService.selectFineLabels(branches, closeCall, 0.15));
+	}
+}
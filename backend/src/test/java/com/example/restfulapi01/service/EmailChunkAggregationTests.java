@@ -0,0 +1,42 @@
+package com.example.restfulapi01.service;
+
+import com.example.restfulapi01.payload.ZeroShotResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class EmailChunkAggregationTests {
+
+	private static ZeroShotResult result(double phishing, double newsletter) {
+		// Thứ tự nhãn khác nhau giữa các đoạn, như model trả về (đã sắp theo điểm)
+		return phishing > newsletter
+				? new ZeroShotResult(List.of("phishing attempt", "newsletter"), List.of(phishing, newsletter), "MODEL")
+				: new ZeroShotResult(List.of("newsletter", "phishing attempt"), List.of(newsletter, phishing), "MODEL");
+	}
+
+	private static double score(ZeroShotResult result, String label) {
+		return result.getScores().get(result.getLabels().indexOf(label));
+	}
+
+	@Test
+	void maxKeepsTheStrongestChunkAndMeanWeighsByTokens() {
+		List<EmailAnalysisService.ChunkResult> chunks = List.of(
+				new EmailAnalysisService.ChunkResult(result(0.1, 0.9), 300),
+				new EmailAnalysisService.ChunkResult(result(0.9, 0.2), 100));
+
+		ZeroShotResult max = EmailAnalysisService.aggregateChunks(chunks, true);
+		assertEquals(EmailAnalysisService.CANDIDATE_LABELS, max.getLabels());
+		assertEquals(0.9, score(max, "phishing attempt"), 1e-9);
+		assertEquals(0.9, score(max, "newsletter"), 1e-9);
+		assertEquals(0.0, score(max, "spam email"), 1e-9);
+
+		ZeroShotResult mean = EmailAnalysisService.aggregateChunks(chunks, false);
+		assertEquals((0.1 * 300 + 0.9 * 100) / 400, score(mean, "phishing attempt"), 1e-9);
+		assertEquals((0.9 * 300 + 0.2 * 100) / 400, score(mean, "newsletter"), 1e-9);
+
+		assertNull(EmailAnalysisService.aggregateChunks(List.of(), true));
+	}
+}
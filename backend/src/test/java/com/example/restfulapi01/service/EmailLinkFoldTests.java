@@ -0,0 +1,32 @@
+package com.example.restfulapi01.service;
+
+import com.example.restfulapi01.payload.EmailAnalyzeResponse;
+import com.example.restfulapi01.payload.EmailPrediction;
+import com.example.restfulapi01.payload.LinkCheckResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EmailLinkFoldTests {
+
+	@Test
+	void maliciousLinkOverridesBenignContentVerdict() {
+		EmailAnalyzeResponse response = new EmailAnalyzeResponse("a@b.example", "Invoice", "...", "TRANSACTIONAL", 0.8,
+				new ArrayList<>(List.of(new EmailPrediction("TRANSACTIONAL", 0.8))), "Email analysis complete.", "MODEL");
+		List<LinkCheckResult> links = List.of(
+				new LinkCheckResult("b.example", "https://b.example", "SAFE", 0.99),
+				new LinkCheckResult("evil.example", "https://evil.example/pay", "MALICIOUS", 0.93));
+
+		EmailAnalysisService.withLinks(response, links);
+
+		assertEquals("PHISHING", response.getPrimaryPredictionLabel());
+		assertEquals(0.93, response.getPrimaryPredictionScore());
+		assertEquals(EmailAnalysisService.LINK_CHECK_SOURCE, response.getVerdictSource());
+		assertEquals(List.of(new EmailPrediction("PHISHING", 0.93), new EmailPrediction("TRANSACTIONAL", 0.8)),
+				response.getDetailedPredictions());
+		assertEquals(links, response.getLinks());
+	}
+}
@@ -0,0 +1,54 @@
+package com.example.restfulapi01.service;
+
+import com.example.restfulapi01.payload.EmailAnalyzeRequest;
+import com.example.restfulapi01.payload.EmailAnalyzeResponse;
+import com.example.restfulapi01.payload.EmailLabel;
+import com.example.restfulapi01.payload.ZeroShotResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Hậu xử lý kết quả zero-shot: map theo nhãn, sắp xếp, ánh xạ nhãn và lọc theo ngưỡng
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EmailPostProcessingBenchmark {
+
+	private EmailAnalyzeRequest request;
+	private ZeroShotResult result;
+	private String[] zeroShotLabels;
+
+	@Setup
+	public void setup() {
+		request = new EmailAnalyzeRequest();
+		request.setSender("security@paypa1-support.com");
+		request.setSubject("Your account has been limited");
+		request.setBody("We noticed unusual activity. Verify your password within 24 hours to restore access.");
+		// Hugging Face trả nhãn đã sắp xếp giảm dần; hai nhãn đầu vượt ngưỡng 0.4
+		result = new ZeroShotResult(
+				List.of("phishing attempt", "suspicious email", "spam email", "promotional offer", "legitimate communication"),
+				List.of(0.71, 0.46, 0.12, 0.04, 0.01),
+				"MODEL");
+		zeroShotLabels = EmailAnalysisService.CANDIDATE_LABELS.toArray(new String[0]);
+	}
+
+	@Benchmark
+	public EmailAnalyzeResponse buildResponse() {
+		return EmailAnalysisService.buildResponse(request, result);
+	}
+
+	@Benchmark
+	public void mapZeroShotLabels(Blackhole blackhole) {
+		for (String label : zeroShotLabels) {
+			blackhole.consume(EmailLabel.fromZeroShotLabel(label));
+		}
+	}
+}
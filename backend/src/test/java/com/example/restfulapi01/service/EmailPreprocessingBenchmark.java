@@ -0,0 +1,44 @@
+package com.example.restfulapi01.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+// Tiền xử lý một email marketing HTML khoảng 36 KB (đoạn văn lặp lại, link có tham số theo dõi)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EmailPreprocessingBenchmark {
+
+	private EmailTextPreprocessor preprocessor;
+	private String subject;
+	private String body;
+
+	@Setup
+	public void setup() {
+		preprocessor = new EmailTextPreprocessor();
+		ReflectionTestUtils.setField(preprocessor, "enabled", true);
+		ReflectionTestUtils.setField(preprocessor, "maxTokens", 512);
+		subject = "Spring sale: up to 70% off everything";
+		StringBuilder html = new StringBuilder("<html><head><style>td{padding:0}</style></head><body><table>");
+		for (int i = 0; i < 150; i++) {
+			html.append("<tr><td><p style=\"font-family:Arial\">Deal #").append(i)
+					.append(": save big on shoes, bags &amp; accessories this weekend only.</p>")
+					.append("<a href=\"https://shop.example/deal/").append(i)
+					.append("?utm_source=newsletter&amp;utm_medium=email&amp;utm_campaign=spring\">Shop now</a></td></tr>");
+		}
+		body = html.append("</table></body></html>").toString();
+	}
+
+	@Benchmark
+	public String prepare() {
+		return preprocessor.prepare(subject, body);
+	}
+}
@@ -0,0 +1,63 @@
+package com.example.restfulapi01.service;
+
+import com.example.restfulapi01.dto.HistoryEmailDTO;
+import com.example.restfulapi01.model.HistoryEmailCreated;
+import com.example.restfulapi01.model.User;
+import com.example.restfulapi01.payload.EmailAnalyzeResponse;
+import com.example.restfulapi01.payload.EmailPrediction;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// JSON của detailedPredictions: ghi khi lưu lịch sử và đọc lại khi chuyển entity sang DTO
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HistoryDtoBenchmark {
+
+	private HistoryEmailService historyEmailService;
+	private EmailAnalyzeResponse response;
+	private HistoryEmailCreated entity;
+
+	@Setup
+	public void setup() throws JsonProcessingException {
+		historyEmailService = new HistoryEmailService();
+		ReflectionTestUtils.setField(historyEmailService, "objectMapper", Jackson2ObjectMapperBuilder.json().build());
+		ReflectionTestUtils.setField(historyEmailService, "analysisMetrics", new AnalysisMetrics(new SimpleMeterRegistry()));
+		historyEmailService.initPredictionCodecs();
+
+		response = new EmailAnalyzeResponse("security@paypa1-support.com", "Your account has been limited",
+				"We noticed unusual activity. Verify your password within 24 hours to restore access.",
+				"PHISHING", 0.71,
+				List.of(new EmailPrediction("PHISHING", 0.71), new EmailPrediction("SUSPICIOUS", 0.46)),
+				"Email analysis complete.", "MODEL");
+
+		User user = new User();
+		user.setId(1L);
+		entity = new HistoryEmailCreated(user, response.getSender(), response.getSubject(), response.getBody(),
+				response.getPrimaryPredictionLabel(), response.getPrimaryPredictionScore(),
+				historyEmailService.serializePredictions(response));
+		entity.setId(42L);
+	}
+
+	@Benchmark
+	public String serializePredictions() throws JsonProcessingException {
+		return historyEmailService.serializePredictions(response);
+	}
+
+	@Benchmark
+	public HistoryEmailDTO convertToDto() {
+		return historyEmailService.convertToDto(entity);
+	}
+}
@@ -0,0 +1,180 @@
+package com.example.restfulapi01.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistoryWriteBehindServiceTests {
+
+	private final StubJdbcTemplate jdbc = new StubJdbcTemplate();
+	private HistoryWriteBehindService writer;
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		if (writer != null) {
+			writer.shutdown();
+		}
+	}
+
+	@Test
+	void writesQueuedRowsInBatches() throws Exception {
+		writer = service(100, 3);
+		// Nhận vào hàng đợi trước khi thread ghi chạy để các lô có kích thước xác định
+		ReflectionTestUtils.setField(writer, "running", true);
+		for (int i = 0; i < 7; i++) {
+			writer.enqueue(history("s" + i));
+		}
+		writer.start();
+
+		awaitWritten(7);
+		assertEquals(List.of(3, 3, 1), jdbc.batchSizes);
+		assertEquals(0, writer.getWrittenByCallerCount());
+	}
+
+	@Test
+	void callerWritesDirectlyWhenQueueIsFull() {
+		writer = service(2, 10);
+		ReflectionTestUtils.setField(writer, "running", true);
+
+		writer.enqueue(history("a"));
+		writer.enqueue(history("b"));
+		writer.enqueue(history("c"));
+
+		assertEquals(2, writer.getQueueSize());
+		assertEquals(1, writer.getWrittenByCallerCount());
+		assertEquals(List.of("c"), jdbc.batchRows);
+	}
+
+	@Test
+	void retriesRowByRowWhenBatchFails() throws Exception {
+		writer = service(100, 10);
+		jdbc.failBatches = true;
+		ReflectionTestUtils.setField(writer, "running", true);
+		writer.enqueue(history("ok1"));
+		writer.enqueue(history("bad"));
+		writer.enqueue(history("ok2"));
+
+		writer.shutdown();
+		HistoryWriteBehindService stopped = writer;
+		writer = null;
+
+		// Lô lỗi được ghi lại từng dòng: chỉ dòng lỗi bị bỏ
+		assertEquals(List.of("ok1", "ok2"), jdbc.singleRows);
+		assertEquals(2, stopped.getWrittenCount());
+		assertEquals(1, stopped.getFailedCount());
+	}
+
+	@Test
+	void shutdownFlushesQueueWithoutInterruptingWriter() throws Exception {
+		writer = service(100, 2);
+		jdbc.slowBatch = true;
+		writer.start();
+		writer.enqueue(history("in-flight"));
+		assertTrue(jdbc.inBatch.await(5, TimeUnit.SECONDS));
+		for (int i = 0; i < 3; i++) {
+			writer.enqueue(history("queued" + i));
+		}
+
+		writer.shutdown();
+		HistoryWriteBehindService stopped = writer;
+		writer = null;
+
+		assertFalse(jdbc.interrupted.get(), "writer was interrupted while writing a batch");
+		assertEquals(4, stopped.getWrittenCount());
+		assertEquals(0, stopped.getFailedCount());
+		assertEquals(0, stopped.getQueueSize());
+	}
+
+	private HistoryWriteBehindService service(int capacity, int batchSize) {
+		return new HistoryWriteBehindService(jdbc, new AnalysisMetrics(new SimpleMeterRegistry()), capacity, batchSize, 20, 10);
+	}
+
+	private void awaitWritten(long rows) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (writer.getWrittenCount() < rows) {
+			assertTrue(System.nanoTime() < deadline, "rows were not written");
+			Thread.sleep(5);
+		}
+	}
+
+	private static HistoryWriteBehindService.PendingHistory history(String subject) {
+		return new HistoryWriteBehindService.PendingHistory(1L, "a@b.example", subject, "body", "HAM", 0.9, "[]",
+				LocalDateTime.now(), "MODEL");
+	}
+
+	// Thay cho JDBC thật: ghi nhận các lô/dòng được ghi, có thể làm lỗi lô, lỗi dòng "bad" hoặc ghi lô chậm
+	private static class StubJdbcTemplate extends JdbcTemplate {
+		private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+		private final List<String> batchRows = new CopyOnWriteArrayList<>();
+		private final List<String> singleRows = new CopyOnWriteArrayList<>();
+		private final CountDownLatch inBatch = new CountDownLatch(1);
+		private final AtomicBoolean interrupted = new AtomicBoolean();
+		private volatile boolean failBatches;
+		private volatile boolean slowBatch;
+
+		@Override
+		public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize, ParameterizedPreparedStatementSetter<T> pss) {
+			if (failBatches) {
+				throw new DataAccessResourceFailureException("batch rejected");
+			}
+			if (slowBatch) {
+				inBatch.countDown();
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException e) {
+					interrupted.set(true);
+					throw new DataAccessResourceFailureException("interrupted during connection acquisition", e);
+				}
+			}
+			batchSizes.add(batchArgs.size());
+			for (T row : batchArgs) {
+				batchRows.add(((HistoryWriteBehindService.PendingHistory) row).getSubject());
+			}
+			return new int[0][];
+		}
+
+		@Override
+		public int update(String sql, PreparedStatementSetter pss) {
+			// PreparedStatement giả chỉ để đọc subject (tham số thứ 3) mà bind() đặt vào
+			String[] subject = new String[1];
+			PreparedStatement ps = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+						if (method.getName().equals("setString") && (int) args[0] == 3) {
+							subject[0] = (String) args[1];
+						}
+						return null;
+					});
+			try {
+				pss.setValues(ps);
+			} catch (SQLException e) {
+				throw new IllegalStateException(e);
+			}
+			if ("bad".equals(subject[0])) {
+				throw new DataIntegrityViolationException("Data too long for column 'subject'");
+			}
+			singleRows.add(subject[0]);
+			return 1;
+		}
+	}
+}
@@ -0,0 +1,226 @@
+package com.example.restfulapi01.service;
+
+import com.example.restfulapi01.payload.InferenceClientStatsResponse;
+import com.example.restfulapi01.payload.ModelLatencyStats;
+import com.example.restfulapi01.resilience.UpstreamOverloadedException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HuggingFaceInferenceClientTests {
+
+	private HttpServer server;
+	private HuggingFaceInferenceClient client;
+
+	@AfterEach
+	void tearDown() {
+		if (client != null) {
+			client.shutdown();
+		}
+		if (server != null) {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void sendsInputsWithPreSerializedParametersAndRecordsLatency() throws Exception {
+		AtomicReference<String> receivedBody = new AtomicReference<>();
+		AtomicReference<String> receivedAuth = new AtomicReference<>();
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/models/", exchange -> {
+			receivedBody.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+			receivedAuth.set(exchange.getRequestHeaders().getFirst("Authorization"));
+			byte[] response = "{\"labels\":[\"spam email\"],\"scores\":[0.9]}".getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, response.length);
+			exchange.getResponseBody().write(response);
+			exchange.close();
+		});
+		server.start();
+
+		ObjectMapper objectMapper = new ObjectMapper();
+		client = new HuggingFaceInferenceClient(WebClient.builder(), objectMapper, new SimpleMeterRegistry(),
+				"http://127.0.0.1:" + server.getAddress().getPort() + "/models", "test-token",
+				4, 10, 1000, 30000, 300000, 1000);
+		byte[] parameters = client.parametersFragment(Map.of("multi_label", true));
+
+		Map<String, Object> result = client.infer("org/model", "Hi \"there\"", parameters, Duration.ofSeconds(5),
+				new ParameterizedTypeReference<Map<String, Object>>() {}).block();
+
+		assertEquals(List.of("spam email"), result.get("labels"));
+		assertEquals(Map.of("inputs", "Hi \"there\"", "parameters", Map.of("multi_label", true)),
+				objectMapper.readValue(receivedBody.get(), Map.class));
+		assertEquals("Bearer test-token", receivedAuth.get());
+
+		InferenceClientStatsResponse stats = client.stats();
+		assertEquals(1, stats.getModels().size());
+		assertEquals("org/model", stats.getModels().get(0).getModelId());
+		assertEquals(1, stats.getModels().get(0).getRequests());
+	}
+
+	@Test
+	void retriesAfterTooManyRequestsHonoringRetryAfter() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/models/", exchange -> {
+			exchange.getRequestBody().readAllBytes();
+			if (calls.incrementAndGet() == 1) {
+				exchange.getResponseHeaders().add("Retry-After", "0");
+				exchange.sendResponseHeaders(429, -1);
+			} else {
+				byte[] response = "[[{\"label\":\"SAFE\",\"score\":0.99}]]".getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().add("Content-Type", "application/json");
+				exchange.sendResponseHeaders(200, response.length);
+				exchange.getResponseBody().write(response);
+			}
+			exchange.close();
+		});
+		server.start();
+
+		client = new HuggingFaceInferenceClient(WebClient.builder(), new ObjectMapper(), new SimpleMeterRegistry(),
+				"http://127.0.0.1:" + server.getAddress().getPort() + "/models/", "test-token",
+				4, 10, 1000, 30000, 300000, 1000);
+
+		List<?> result = client.infer("url-model", "example.com", null, Duration.ofSeconds(5),
+				new ParameterizedTypeReference<List<Object>>() {}).block();
+
+		assertEquals(1, result.size());
+		assertEquals(2, calls.get());
+		assertEquals(1, client.stats().getModels().get(0).getRetries());
+	}
+
+	@Test
+	void parksRequestsOnSharedReadinessWhileModelIsLoading() throws Exception {
+		AtomicInteger coldRequestCalls = new AtomicInteger();
+		AtomicLong loadedAt = new AtomicLong();
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(Executors.newFixedThreadPool(8));
+		server.createContext("/models/", exchange -> {
+			String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+			loadedAt.compareAndSet(0, System.currentTimeMillis() + 400);
+			byte[] response;
+			if (System.currentTimeMillis() < loadedAt.get()) {
+				if (!body.contains("probe")) {
+					coldRequestCalls.incrementAndGet();
+				}
+				response = "{\"error\":\"Model url-model is currently loading\",\"estimated_time\":0.1}".getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().add("Content-Type", "application/json");
+				exchange.sendResponseHeaders(503, response.length);
+			} else {
+				response = "[[{\"label\":\"SAFE\",\"score\":0.99}]]".getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().add("Content-Type", "application/json");
+				exchange.sendResponseHeaders(200, response.length);
+			}
+			exchange.getResponseBody().write(response);
+			exchange.close();
+		});
+		server.start();
+
+		client = new HuggingFaceInferenceClient(WebClient.builder(), new ObjectMapper(), new SimpleMeterRegistry(),
+				"http://127.0.0.1:" + server.getAddress().getPort() + "/models/", "test-token",
+				8, 10, 1000, 30000, 300000, 1000);
+		client.registerWarmupProbe("url-model", "probe", null, Duration.ofSeconds(5));
+		ParameterizedTypeReference<List<Object>> type = new ParameterizedTypeReference<>() {};
+
+		List<CompletableFuture<List<Object>>> results = new ArrayList<>();
+		results.add(client.infer("url-model", "first.example", null, Duration.ofSeconds(5), type).toFuture());
+		// Sau 503 đầu tiên model được đánh dấu đang nạp: các request tới sau chờ, không gọi model
+		long deadline = System.currentTimeMillis() + 2000;
+		while (client.stats().getModels().isEmpty() || client.stats().getModels().get(0).isReady()) {
+			assertTrue(System.currentTimeMillis() < deadline, "model was never marked as loading");
+			Thread.sleep(5);
+		}
+		for (int i = 0; i < 5; i++) {
+			results.add(client.infer("url-model", "site" + i + ".example", null, Duration.ofSeconds(5), type).toFuture());
+		}
+
+		for (CompletableFuture<List<Object>> result : results) {
+			assertEquals(1, result.get(5, TimeUnit.SECONDS).size());
+		}
+		assertEquals(1, coldRequestCalls.get());
+		ModelLatencyStats stats = client.stats().getModels().get(0);
+		assertTrue(stats.isReady());
+		assertEquals(6, stats.getParked());
+	}
+
+	@Test
+	void rejectsRequestsBeyondParkedCapWhileModelIsLoading() throws Exception {
+		AtomicLong loadedAt = new AtomicLong();
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(Executors.newFixedThreadPool(8));
+		server.createContext("/models/", exchange -> {
+			exchange.getRequestBody().readAllBytes();
+			loadedAt.compareAndSet(0, System.currentTimeMillis() + 800);
+			byte[] response;
+			if (System.currentTimeMillis() < loadedAt.get()) {
+				response = "{\"error\":\"Model url-model is currently loading\",\"estimated_time\":0.1}".getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().add("Content-Type", "application/json");
+				exchange.sendResponseHeaders(503, response.length);
+			} else {
+				response = "[[{\"label\":\"SAFE\",\"score\":0.99}]]".getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().add("Content-Type", "application/json");
+				exchange.sendResponseHeaders(200, response.length);
+			}
+			exchange.getResponseBody().write(response);
+			exchange.close();
+		});
+		server.start();
+
+		client = new HuggingFaceInferenceClient(WebClient.builder(), new ObjectMapper(), new SimpleMeterRegistry(),
+				"http://127.0.0.1:" + server.getAddress().getPort() + "/models/", "test-token",
+				8, 10, 1000, 30000, 300000, 1000);
+		ReflectionTestUtils.setField(client, "maxParked", 3);
+		client.registerWarmupProbe("url-model", "probe", null, Duration.ofSeconds(5));
+		ParameterizedTypeReference<List<Object>> type = new ParameterizedTypeReference<>() {};
+
+		CompletableFuture<List<Object>> first = client.infer("url-model", "first.example", null, Duration.ofSeconds(5), type).toFuture();
+		long deadline = System.currentTimeMillis() + 2000;
+		while (client.stats().getModels().isEmpty() || client.stats().getModels().get(0).getParked() == 0) {
+			assertTrue(System.currentTimeMillis() < deadline, "first request never parked");
+			Thread.sleep(5);
+		}
+		List<CompletableFuture<List<Object>>> later = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			later.add(client.infer("url-model", "site" + i + ".example", null, Duration.ofSeconds(5), type).toFuture());
+		}
+
+		// Request đầu + 2 request kế tiếp chờ; 4 request còn lại bị từ chối ngay, trước khi model nạp xong
+		int rejected = 0;
+		for (CompletableFuture<List<Object>> result : later.subList(2, later.size())) {
+			ExecutionException error = assertThrows(ExecutionException.class, () -> result.get(300, TimeUnit.MILLISECONDS));
+			assertInstanceOf(UpstreamOverloadedException.class, error.getCause());
+			rejected++;
+		}
+		assertEquals(4, rejected);
+		assertEquals(1, first.get(5, TimeUnit.SECONDS).size());
+		assertEquals(1, later.get(0).get(5, TimeUnit.SECONDS).size());
+		assertEquals(1, later.get(1).get(5, TimeUnit.SECONDS).size());
+		ModelLatencyStats stats = client.stats().getModels().get(0);
+		assertEquals(3, stats.getParked());
+		assertEquals(4, stats.getRejected());
+	}
+}
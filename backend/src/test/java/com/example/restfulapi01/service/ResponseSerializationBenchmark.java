@@ -0,0 +1,42 @@
+package com.example.restfulapi01.service;
+
+import com.example.restfulapi01.payload.EmailAnalyzeResponse;
+import com.example.restfulapi01.payload.EmailPrediction;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Ghi EmailAnalyzeResponse ra JSON như khi trả về từ controller (ObjectMapper cấu hình giống Spring Boot)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ResponseSerializationBenchmark {
+
+	private ObjectMapper objectMapper;
+	private EmailAnalyzeResponse response;
+
+	@Setup
+	public void setup() {
+		objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		response = new EmailAnalyzeResponse("security@paypa1-support.com", "Your account has been limited",
+				"We noticed unusual activity. Verify your password within 24 hours to restore access.",
+				"PHISHING", 0.71,
+				List.of(new EmailPrediction("PHISHING", 0.71), new EmailPrediction("SUSPICIOUS", 0.46)),
+				"Email analysis complete.", "MODEL");
+	}
+
+	@Benchmark
+	public byte[] writeValueAsBytes() throws JsonProcessingException {
+		return objectMapper.writeValueAsBytes(response);
+	}
+}
@@ -0,0 +1,67 @@
+package com.example.restfulapi01.service;
+
+import com.example.restfulapi01.payload.EmailAnalyzeResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SenderReputationServiceTests {
+
+	private SenderReputationService reputation;
+
+	@BeforeEach
+	void setUp() {
+		reputation = new SenderReputationService(null, 4, 14, 30, 100_000, 20_000, 3,
+				List.of("PHISHING", "SPAM"), List.of("gmail.com"));
+		ReflectionTestUtils.setField(reputation, "enabled", true);
+		ReflectionTestUtils.setField(reputation, "senderMinSamples", 5.0);
+		ReflectionTestUtils.setField(reputation, "domainMinSamples", 20.0);
+		ReflectionTestUtils.setField(reputation, "minShare", 0.9);
+		ReflectionTestUtils.setField(reputation, "admitAfter", 2.0);
+	}
+
+	@Test
+	void saturatedSketchDoesNotProduceVerdictsForUnseenSenders() {
+		// 200k người gửi, mỗi người 3 kết luận, 90% PHISHING: sketch 2^14 x 4 bão hòa hoàn toàn
+		for (int i = 0; i < 200_000; i++) {
+			String label = i % 10 == 0 ? "HAM" : "PHISHING";
+			for (int j = 0; j < 3; j++) {
+				record(i * 3L + j, "sender" + i + "@domain" + i + ".example", label);
+			}
+		}
+		for (int i = 0; i < 1_000; i++) {
+			assertTrue(reputation.lookup("fresh" + i + "@unseen" + i + ".example").isEmpty());
+		}
+
+		for (long user = 1; user <= 6; user++) {
+			record(user, "bad@phish.example", "PHISHING");
+		}
+		assertEquals(SenderReputationService.SOURCE,
+				reputation.lookup("Billing <bad@phish.example>").orElseThrow().getSource());
+		assertTrue(reputation.stats().getTrackedSenders() <= 100_000);
+	}
+
+	@Test
+	void oneUserCannotPoisonAnotherSendersReputation() {
+		for (int i = 0; i < 20; i++) {
+			record(1L, "ceo@bank.example", "PHISHING");
+		}
+		assertFalse(reputation.lookup("ceo@bank.example").isPresent());
+
+		record(2L, "ceo@bank.example", "PHISHING");
+		assertFalse(reputation.lookup("ceo@bank.example").isPresent());
+		record(3L, "ceo@bank.example", "PHISHING");
+		assertTrue(reputation.lookup("ceo@bank.example").isPresent());
+	}
+
+	private void record(long userId, String sender, String label) {
+		reputation.record(userId, new EmailAnalyzeResponse(sender, "s", "b", label, 0.9, List.of(),
+				"Email analysis complete.", "MODEL"));
+	}
+}
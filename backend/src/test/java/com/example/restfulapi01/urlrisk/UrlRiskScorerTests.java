@@ -0,0 +1,99 @@
+package com.example.restfulapi01.urlrisk;
+
+import com.example.restfulapi01.payload.DomainCheckResponse;
+import com.example.restfulapi01.service.UrlRiskEngine;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UrlRiskScorerTests {
+
+	@Test
+	void extractsHostAndPathFeatures() {
+		UrlFeatures f = UrlFeatureExtractor.extract("HTTP://paypal.com@secure-login.example.tk:8080/a//b/verify?x=1&y=2#frag");
+
+		assertTrue(f.isParsed());
+		assertTrue(f.isUserInfo());
+		assertTrue(f.isExplicitPort());
+		assertFalse(f.isHttps());
+		assertEquals("secure-login.example.tk", f.getHost());
+		assertEquals("tk", f.getTld());
+		assertEquals(3, f.getLabelCount());
+		assertTrue(f.isDoubleSlashInPath());
+		assertEquals(1, f.getSuspiciousTokens());
+		assertEquals(2, f.getQueryParams());
+	}
+
+	@Test
+	void detectsIpLiteralsPunycodeAndBrandsOutsideRegisteredDomain() {
+		assertTrue(UrlFeatureExtractor.extract("http://192.168.10.5/login").isIpLiteral());
+		assertTrue(UrlFeatureExtractor.extract("http://0x7f000001/").isIpLiteral());
+		assertTrue(UrlFeatureExtractor.extract("xn--pypal-4ve.com").isPunycode());
+		assertTrue(UrlFeatureExtractor.extract("https://pаypal.com").isNonAsciiHost()); // 'а' Cyrillic
+		assertTrue(UrlFeatureExtractor.extract("paypal.com.account-check.info").isBrandInSubdomain());
+		assertTrue(UrlFeatureExtractor.extract("paypal-secure.com").isBrandInSubdomain());
+		assertFalse(UrlFeatureExtractor.extract("https://www.paypal.com/signin").isBrandInSubdomain());
+		assertFalse(UrlFeatureExtractor.extract("https://mail.google.com.vn").isBrandInSubdomain());
+		assertTrue(UrlFeatureExtractor.extract("secure-apple.login.example").isBrandInSubdomain());
+		// Thương hiệu chỉ là chuỗi con của một từ khác, không phải token riêng
+		assertFalse(UrlFeatureExtractor.extract("https://purchase-portal.example").isBrandInSubdomain());
+		assertFalse(UrlFeatureExtractor.extract("https://pineapple-shop.example").isBrandInSubdomain());
+		assertFalse(UrlFeatureExtractor.extract("https://shop.pineapple.example").isBrandInSubdomain());
+		assertFalse(UrlFeatureExtractor.extract("https://purchase.store-front.example").isBrandInSubdomain());
+	}
+
+	@Test
+	void separatesClearCasesFromAmbiguousOnes() {
+		assertTrue(risk("https://github.com/spring-projects") < 0.02);
+		assertTrue(risk("http://paypal.com.secure-login.example.tk/webscr/verify") > 0.9);
+		assertTrue(risk("http://203.0.113.7/account/login") > 0.9);
+		double ambiguous = risk("https://secure-update.example.xyz");
+		assertTrue(ambiguous > 0.02 && ambiguous < 0.9);
+	}
+
+	@Test
+	void flagsTyposquatsAndHostKeywords() {
+		assertTrue(UrlFeatureExtractor.extract("paypa1.com").isBrandLookalike());
+		assertTrue(UrlFeatureExtractor.extract("https://rnicrosoft.com/").isBrandLookalike());
+		assertTrue(UrlFeatureExtractor.extract("g00gle.com").isBrandLookalike());
+		assertTrue(UrlFeatureExtractor.extract("amazzon.com").isBrandLookalike());
+		assertTrue(UrlFeatureExtractor.extract("secure.app1e.com").isBrandLookalike());
+		assertFalse(UrlFeatureExtractor.extract("paypal.com").isBrandLookalike());
+		assertFalse(UrlFeatureExtractor.extract("https://mail.google.com").isBrandLookalike());
+		assertFalse(UrlFeatureExtractor.extract("https://github.com/spring-projects").isBrandLookalike());
+		assertFalse(UrlFeatureExtractor.extract("apply.example.com").isBrandLookalike());
+		assertEquals(2, UrlFeatureExtractor.extract("secure-login.example.com").getHostSuspiciousTokens());
+
+		double clean = risk("example.com");
+		for (String typosquat : new String[]{"paypa1.com", "rnicrosoft.com", "g00gle.com"}) {
+			assertTrue(risk(typosquat) > clean + 0.2, typosquat);
+		}
+	}
+
+	@Test
+	void answersSafeLocallyOnlyForTrustedDomains() {
+		UrlRiskEngine engine = new UrlRiskEngine(List.of("github.com", "paypal.com"));
+		ReflectionTestUtils.setField(engine, "enabled", true);
+		ReflectionTestUtils.setField(engine, "maliciousThreshold", 0.9);
+		ReflectionTestUtils.setField(engine, "safeThreshold", 0.02);
+
+		for (String typosquat : new String[]{"paypa1.com", "rnicrosoft.com", "g00gle.com", "https://paypa1.com/",
+				"example.com"}) {
+			Optional<DomainCheckResponse> verdict = engine.tryLocalVerdict(typosquat);
+			assertTrue(verdict.map(v -> !"SAFE".equals(v.getStatus())).orElse(true), typosquat);
+		}
+		assertEquals("SAFE", engine.tryLocalVerdict("https://github.com/spring-projects").orElseThrow().getStatus());
+		assertEquals("SAFE", engine.tryLocalVerdict("https://www.paypal.com").orElseThrow().getStatus());
+	}
+
+	private static double risk(String url) {
+		return UrlRiskScorer.score(UrlFeatureExtractor.extract(url)).getRisk();
+	}
+
+}